@@ -0,0 +1,60 @@
+package com.enzoic.client.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.enzoic.client.utilities.Hashing;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks the encoding helpers used on every CheckCredentials call - decoding the Argon2 hash from base64 and
+ * converting it to hex.
+ * <p>
+ * Run with the GC profiler to see allocations per operation alongside the timings:
+ * <pre>
+ * java -jar target/benchmarks.jar EncodingBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodingBenchmark {
+
+    // a 20 byte Argon2 credential hash, and a SHA512 digest
+    @Param({"20", "64"})
+    public int length;
+
+    private byte[] bytes;
+    private String base64;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        base64 = Hashing.encodeBase64(bytes);
+    }
+
+    @Benchmark
+    public String bytesToHex() {
+        return Hashing.bytesToHex(bytes);
+    }
+
+    @Benchmark
+    public byte[] decodeBase64() {
+        return Hashing.decodeBase64(base64);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncodingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
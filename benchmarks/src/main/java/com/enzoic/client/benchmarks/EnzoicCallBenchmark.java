@@ -0,0 +1,136 @@
+package com.enzoic.client.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.enzoic.client.CheckPasswordExResponse;
+import com.enzoic.client.Enzoic;
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.LatencyDistribution;
+import com.enzoic.client.simulator.SyntheticDataset;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks complete Enzoic calls - request, JSON parsing and hashing - against an EnzoicSimulator on a loopback port,
+ * so that transport, JSON and hashing changes can be judged by their effect on the real call path.  Each call is for a
+ * random user of a synthetic dataset, and the response caches are left disabled, so every call does the full work.
+ * <p>
+ * The benchmarks come in pairs: sampled latency from a single thread, and throughput from one thread per processor.
+ * The simulator responds immediately by default, so the results are the cost of the client alone; add e.g.
+ * {@code -p simulatedLatencyMs=20} to see how they behave with network latency.  Run with the GC profiler to see
+ * allocations per call:
+ * <pre>
+ * java -jar target/benchmarks.jar EnzoicCallBenchmark -prof gc
+ * </pre>
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnzoicCallBenchmark {
+
+    private static final int USERS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class CredentialsState {
+        // the password hash specifications in each account response, as "total/BCrypt" - BCrypt is by far the most
+        // expensive type, so its count is varied separately
+        @Param({"0/0", "5/0", "5/1", "20/0", "20/1", "50/0", "50/3"})
+        public String hashSpecs;
+
+        @Param({"0"})
+        public double simulatedLatencyMs;
+
+        SyntheticDataset dataset;
+        EnzoicSimulator simulator;
+        Enzoic enzoic;
+
+        @Setup
+        public void setUp() throws IOException {
+            String[] specs = hashSpecs.split("/");
+            dataset = new SyntheticDataset(USERS, Integer.parseInt(specs[0]), Integer.parseInt(specs[1]), 0.1, 42);
+            simulator = new EnzoicSimulator(dataset).start();
+            simulator.setLatency(LatencyDistribution.fixed(simulatedLatencyMs));
+            enzoic = new Enzoic("benchmark", "benchmark", simulator.getBaseURL());
+        }
+
+        @TearDown
+        public void tearDown() {
+            simulator.stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PasswordsState {
+        @Param({"0"})
+        public double simulatedLatencyMs;
+
+        SyntheticDataset dataset;
+        EnzoicSimulator simulator;
+        Enzoic enzoic;
+
+        @Setup
+        public void setUp() throws IOException {
+            // half the passwords are compromised, so both the match and the miss paths are measured
+            dataset = new SyntheticDataset(USERS, 0, 0, 0.5, 42);
+            simulator = new EnzoicSimulator(dataset).start();
+            simulator.setLatency(LatencyDistribution.fixed(simulatedLatencyMs));
+            enzoic = new Enzoic("benchmark", "benchmark", simulator.getBaseURL());
+        }
+
+        @TearDown
+        public void tearDown() {
+            simulator.stop();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public boolean checkCredentialsEx(final CredentialsState state) throws IOException {
+        return checkCredentials(state);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(Threads.MAX)
+    public boolean checkCredentialsExThroughput(final CredentialsState state) throws IOException {
+        return checkCredentials(state);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public CheckPasswordExResponse checkPasswordEx(final PasswordsState state) throws IOException {
+        return checkPassword(state);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(Threads.MAX)
+    public CheckPasswordExResponse checkPasswordExThroughput(final PasswordsState state) throws IOException {
+        return checkPassword(state);
+    }
+
+    private static boolean checkCredentials(final CredentialsState state) throws IOException {
+        int user = ThreadLocalRandom.current().nextInt(USERS);
+        return state.enzoic.CheckCredentialsEx(state.dataset.getUsername(user), state.dataset.getPassword(user),
+                null, null);
+    }
+
+    private static CheckPasswordExResponse checkPassword(final PasswordsState state) throws IOException {
+        return state.enzoic.CheckPasswordEx(state.dataset.getPassword(ThreadLocalRandom.current().nextInt(USERS)));
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EnzoicCallBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,291 @@
+package com.enzoic.client.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.enzoic.client.utilities.Hashing;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks every password hash Enzoic.CalcPasswordHash dispatches to, plus the Argon2 credential hash.  The salts are
+ * realistic for each algorithm, and the iterated algorithms are also parameterized by their work factor.  See
+ * EncodingBenchmark for the encoding helpers.
+ * <p>
+ * Run with the GC profiler to see allocations per operation alongside the timings:
+ * <pre>
+ * java -jar target/benchmarks.jar HashingBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashingBenchmark {
+
+    private static final String ITOA64 = "./0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    @Param({"8", "16", "64"})
+    public int passwordLength;
+
+    private String password;
+
+    @Setup
+    public void setUp() {
+        password = randomPassword(passwordLength);
+    }
+
+    @State(Scope.Thread)
+    public static class BCryptState {
+        @Param({"10", "12"})
+        public int cost;
+
+        String salt;
+
+        @Setup
+        public void setUp() {
+            salt = String.format("$2a$%02d$2bULeXwv2H34SXkT1giCZe", cost);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Phpbb3State {
+        // log2 of the MD5 rounds - phpBB3 itself uses 11
+        @Param({"11", "13", "16"})
+        public int log2Rounds;
+
+        String salt;
+
+        @Setup
+        public void setUp() {
+            salt = "$H$" + ITOA64.charAt(log2Rounds) + "3WP3hbz";
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ShaCryptState {
+        // 5000 is the default when the salt does not specify rounds
+        @Param({"5000", "50000"})
+        public int rounds;
+
+        String sha256Salt;
+        String sha512Salt;
+
+        @Setup
+        public void setUp() {
+            sha256Salt = "$5$rounds=" + rounds + "$GX7BopJZJxPc/KEK";
+            sha512Salt = "$6$rounds=" + rounds + "$52450745";
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Argon2State {
+        // the parameters Enzoic uses for credential hashes, and a heavier argon2i specification
+        @Param({"default", "argon2i_m4096_t2_p4"})
+        public String parameters;
+
+        String salt;
+
+        @Setup
+        public void setUp() {
+            salt = "default".equals(parameters) ? "saltysaltsaltysalt" : "$argon2i$v=19$m=4096,t=2,p=4,l=32$c29tZXNhbHQ";
+        }
+    }
+
+    @Benchmark
+    public String md5() {
+        return Hashing.md5(password);
+    }
+
+    @Benchmark
+    public String sha1() {
+        return Hashing.sha1(password);
+    }
+
+    @Benchmark
+    public String sha256() {
+        return Hashing.sha256(password);
+    }
+
+    @Benchmark
+    public String sha384() {
+        return Hashing.sha384(password);
+    }
+
+    @Benchmark
+    public String sha512() {
+        return Hashing.sha512(password);
+    }
+
+    @Benchmark
+    public String crc32() {
+        return Hashing.crc32(password);
+    }
+
+    @Benchmark
+    public String ntlm() {
+        return Hashing.ntlm(password);
+    }
+
+    @Benchmark
+    public String myBB() {
+        return Hashing.myBB(password, ";;!_X");
+    }
+
+    @Benchmark
+    public String vBulletin() {
+        return Hashing.vBulletin(password, "]G@");
+    }
+
+    @Benchmark
+    public String bCrypt(final BCryptState state) {
+        return Hashing.bCrypt(password, state.salt);
+    }
+
+    @Benchmark
+    public String phpbb3(final Phpbb3State state) {
+        return Hashing.phpbb3(password, state.salt);
+    }
+
+    @Benchmark
+    public String customAlgorithm1() {
+        return Hashing.customAlgorithm1(password, "00new00");
+    }
+
+    @Benchmark
+    public String customAlgorithm2() {
+        return Hashing.customAlgorithm2(password, "123");
+    }
+
+    @Benchmark
+    public String md5Crypt() {
+        return Hashing.md5Crypt(password, "$1$4d3c09ea");
+    }
+
+    @Benchmark
+    public String customAlgorithm4(final BCryptState state) {
+        return Hashing.customAlgorithm4(password, state.salt);
+    }
+
+    @Benchmark
+    public String customAlgorithm5() {
+        return Hashing.customAlgorithm5(password, "123456");
+    }
+
+    @Benchmark
+    public String osCommerce_AEF() {
+        return Hashing.osCommerce_AEF(password, "123");
+    }
+
+    @Benchmark
+    public String desCrypt() {
+        return Hashing.desCrypt(password, "yD");
+    }
+
+    @Benchmark
+    public String mySQLPre4_1() {
+        return Hashing.mySQLPre4_1(password);
+    }
+
+    @Benchmark
+    public String mySQLPost4_1() {
+        return Hashing.mySQLPost4_1(password);
+    }
+
+    @Benchmark
+    public String peopleSoft() {
+        return Hashing.peopleSoft(password);
+    }
+
+    @Benchmark
+    public String punBB() {
+        return Hashing.punBB(password, "123");
+    }
+
+    @Benchmark
+    public String ave_DataLife_Diferior() {
+        return Hashing.ave_DataLife_Diferior(password);
+    }
+
+    @Benchmark
+    public String djangoMD5() {
+        return Hashing.djangoMD5(password, "c6218");
+    }
+
+    @Benchmark
+    public String djangoSHA1() {
+        return Hashing.djangoSHA1(password, "c6218");
+    }
+
+    @Benchmark
+    public String pliggCMS() {
+        return Hashing.pliggCMS(password, "123");
+    }
+
+    @Benchmark
+    public String runCMS_SMF1_1() {
+        return Hashing.runCMS_SMF1_1(password, "123");
+    }
+
+    @Benchmark
+    public String customAlgorithm7() {
+        return Hashing.customAlgorithm7(password, "123456");
+    }
+
+    @Benchmark
+    public String customAlgorithm9() {
+        return Hashing.customAlgorithm9(password, "6kpcxVSjagLgsNCUCr-D");
+    }
+
+    @Benchmark
+    public String sha256Crypt(final ShaCryptState state) {
+        return Hashing.sha256Crypt(password, state.sha256Salt);
+    }
+
+    @Benchmark
+    public String sha512Crypt(final ShaCryptState state) {
+        return Hashing.sha512Crypt(password, state.sha512Salt);
+    }
+
+    @Benchmark
+    public String customAlgorithm10() {
+        return Hashing.customAlgorithm10(password, "NqXCvAHUpAWAco3hVTG5Sg0FfmJRQPKi0LvcHwylzXHhSNuWwvYdMSSGzswi0ZdJ");
+    }
+
+    @Benchmark
+    public String hmacSHA1SaltAsKey() {
+        return Hashing.hmacSHA1SaltAsKey(password, "1234");
+    }
+
+    @Benchmark
+    public String authMeSHA256() {
+        return Hashing.authMeSHA256(password, "7218532375810603");
+    }
+
+    @Benchmark
+    public String argon2(final Argon2State state) {
+        return Hashing.argon2(password, state.salt);
+    }
+
+    static String randomPassword(final int length) {
+        // printable ASCII, seeded so every run hashes the same passwords
+        Random random = new Random(length);
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append((char) (33 + random.nextInt(94)));
+        }
+        return result.toString();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HashingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
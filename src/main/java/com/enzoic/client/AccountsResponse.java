@@ -1,5 +1,8 @@
 package com.enzoic.client;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Date;
 
 /**
@@ -28,4 +31,33 @@ class AccountsResponse {
     private String salt = "";
     private PasswordHashSpecification[] passwordHashesRequired = new PasswordHashSpecification[0];
     private Date lastBreachDate;
+
+    /**
+     * Compact binary encoding used when caching Accounts API responses
+     */
+    static final ResponseCache.Codec<AccountsResponse> CODEC = new ResponseCache.Codec<AccountsResponse>() {
+        @Override
+        public void write(final DataOutputStream out, final AccountsResponse value) throws IOException {
+            out.writeUTF(value.salt == null ? "" : value.salt);
+            ResponseCache.writeDate(out, value.lastBreachDate);
+            out.writeShort(value.passwordHashesRequired.length);
+            for (PasswordHashSpecification hashSpec : value.passwordHashesRequired) {
+                out.writeByte(hashSpec.getHashType() == null ? -1 : hashSpec.getHashType().getNumVal());
+                out.writeUTF(hashSpec.getSalt() == null ? "" : hashSpec.getSalt());
+            }
+        }
+
+        @Override
+        public AccountsResponse read(final DataInputStream in) throws IOException {
+            AccountsResponse result = new AccountsResponse();
+            result.salt = in.readUTF();
+            result.lastBreachDate = ResponseCache.readDate(in);
+            result.passwordHashesRequired = new PasswordHashSpecification[in.readUnsignedShort()];
+            for (int i = 0; i < result.passwordHashesRequired.length; i++) {
+                PasswordType hashType = PasswordType.fromNumVal(in.readByte());
+                result.passwordHashesRequired[i] = new PasswordHashSpecification(hashType, in.readUTF());
+            }
+            return result;
+        }
+    };
 }
@@ -0,0 +1,156 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of concurrent API requests made by an Enzoic instance, adapting the limit to how the API is
+ * coping - internal use only.
+ * <p>
+ * The limit follows additive-increase/multiplicative-decrease, as in TCP congestion control: each successful request
+ * made while at least half the limit is in use raises the limit by 1/limit (about +1 per round of requests), and each
+ * 429 response, 5xx response or timeout cuts it by BACKOFF_RATIO.  Latency is tracked with a fast and a slow moving
+ * average, and while the fast average is more than LATENCY_TOLERANCE times the slow one the API is queueing requests,
+ * so the limit stops growing.
+ * <p>
+ * A share of the limit is reserved for INTERACTIVE requests: NORMAL and BULK requests only take a slot while fewer than
+ * limit - reserved are in use and no higher priority request is waiting.
+ */
+class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double FAST_SMOOTHING = 0.2;
+    private static final double SLOW_SMOOTHING = 0.01;
+    private static final double INTERACTIVE_RESERVE = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    // guarded by this
+    private double limit;
+    private int inFlight;
+    private double fastLatency;
+    private double slowLatency;
+    private final int[] waiting = new int[RequestPriority.values().length];
+
+    AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Waits until a request can be made within the limit
+     *
+     * @throws SocketTimeoutException if the deadline passes first
+     */
+    synchronized void acquire(final RequestPriority priority, final Deadline deadline)
+            throws InterruptedIOException {
+        waiting[priority.ordinal()]++;
+        try {
+            while (true) {
+                // checked first, so a slot is never taken for a request which is already out of time
+                long remainingNanos = deadline == null ? 0 : deadline.getRemainingNanos();
+                if (deadline != null && remainingNanos <= 0) {
+                    throw new SocketTimeoutException("Time budget exhausted waiting for concurrency limit");
+                }
+                if (mayAcquire(priority)) {
+                    break;
+                }
+                if (deadline == null) {
+                    wait();
+                } else {
+                    TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for concurrency limit");
+        } finally {
+            waiting[priority.ordinal()]--;
+        }
+        inFlight++;
+    }
+
+    /**
+     * Takes a slot if one is free now, without waiting
+     *
+     * @return whether a slot was taken
+     */
+    synchronized boolean tryAcquire(final RequestPriority priority) {
+        if (!mayAcquire(priority)) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private boolean mayAcquire(final RequestPriority priority) {
+        int currentLimit = (int) limit;
+        if (priority == RequestPriority.INTERACTIVE) {
+            return inFlight < currentLimit;
+        }
+
+        // leave at least one slot for lower priority requests
+        int reserved = Math.min((int) (currentLimit * INTERACTIVE_RESERVE), currentLimit - 1);
+        if (inFlight >= currentLimit - reserved) {
+            return false;
+        }
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (waiting[i] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized void onSuccess(final long latencyInNanos) {
+        release();
+
+        if (slowLatency == 0) {
+            fastLatency = latencyInNanos;
+            slowLatency = latencyInNanos;
+        } else {
+            fastLatency += (latencyInNanos - fastLatency) * FAST_SMOOTHING;
+            slowLatency += (latencyInNanos - slowLatency) * SLOW_SMOOTHING;
+        }
+
+        // only grow when the limit is actually being used and latency isn't climbing
+        if ((inFlight + 1) * 2 >= limit && fastLatency <= slowLatency * LATENCY_TOLERANCE) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    synchronized void onFailure(final IOException ex) {
+        release();
+
+        boolean overloaded = ex instanceof SocketTimeoutException;
+        if (ex instanceof HttpStatusException) {
+            int status = ((HttpStatusException) ex).getStatus();
+            overloaded = status == 429 || status >= 500;
+        }
+        if (overloaded) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        }
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+}
@@ -0,0 +1,25 @@
+package com.enzoic.client;
+
+/**
+ * The Enzoic API endpoints called by this client
+ */
+public enum ApiEndpoint {
+    ACCOUNTS ("/accounts"),
+    CREDENTIALS ("/credentials"),
+    PASSWORDS ("/passwords"),
+    EXPOSURES ("/exposures");
+
+    private final String path;
+
+    ApiEndpoint(final String path) {
+        this.path = path;
+    }
+
+    /**
+     * The path of the endpoint, relative to the API base URL
+     * @return String
+     */
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,101 @@
+package com.enzoic.client;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The file format shared by RecordingTransport and ReplayTransport - internal use only.
+ * <p>
+ * A cassette is a gzip stream holding a magic number and version, then one record per exchange in the order they
+ * completed: a kind byte, the method and the path and query of the URL, the duration in nanoseconds, then for a response
+ * its status, headers and body, or for a failure its message.  Request headers, and so the API credentials, are never
+ * recorded.
+ */
+final class Cassette {
+
+    static final int MAGIC = 0x454E5A43; // "ENZC"
+    static final int VERSION = 1;
+
+    static final byte RESPONSE = 0;
+    static final byte TIMEOUT = 1;
+    static final byte ERROR = 2;
+
+    /**
+     * A single recorded exchange
+     */
+    static final class Exchange {
+        byte kind;
+        String method;
+        String path;
+        long durationNanos;
+        int status;
+        Map<String, String> headers;
+        byte[] body;
+        String message;
+    }
+
+    private Cassette() {
+    }
+
+    /**
+     * The path and query of a URL
+     */
+    static String path(final String url) throws MalformedURLException {
+        return new URL(url).getFile();
+    }
+
+    /**
+     * The key exchanges are matched on - the method and the path and query of the URL, so a cassette recorded against
+     * one host can be replayed with any base URL which has the same path
+     */
+    static String key(final String method, final String path) {
+        return method + " " + path;
+    }
+
+    static void write(final DataOutputStream out, final Exchange exchange) throws IOException {
+        out.writeByte(exchange.kind);
+        out.writeUTF(exchange.method);
+        out.writeUTF(exchange.path);
+        out.writeLong(exchange.durationNanos);
+        if (exchange.kind == RESPONSE) {
+            out.writeShort(exchange.status);
+            out.writeShort(exchange.headers.size());
+            for (Map.Entry<String, String> header : exchange.headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(header.getValue());
+            }
+            out.writeInt(exchange.body.length);
+            out.write(exchange.body);
+        } else {
+            out.writeUTF(exchange.message == null ? "" : exchange.message);
+        }
+    }
+
+    static Exchange read(final DataInputStream in) throws IOException {
+        Exchange exchange = new Exchange();
+        exchange.kind = in.readByte();
+        exchange.method = in.readUTF();
+        exchange.path = in.readUTF();
+        exchange.durationNanos = in.readLong();
+        if (exchange.kind == RESPONSE) {
+            exchange.status = in.readUnsignedShort();
+            int headerCount = in.readUnsignedShort();
+            exchange.headers = new LinkedHashMap<String, String>(headerCount * 2);
+            for (int i = 0; i < headerCount; i++) {
+                exchange.headers.put(in.readUTF(), in.readUTF());
+            }
+            exchange.body = new byte[in.readInt()];
+            in.readFully(exchange.body);
+        } else if (exchange.kind == TIMEOUT || exchange.kind == ERROR) {
+            exchange.message = in.readUTF();
+        } else {
+            throw new IOException("Unknown cassette record type " + exchange.kind);
+        }
+        return exchange;
+    }
+}
@@ -0,0 +1,253 @@
+package com.enzoic.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The response from the CheckCredentialsWithDiagnostics call.  In addition to whether the credentials are compromised,
+ * it records how that answer was reached: which password hash specifications were computed or skipped and why, how
+ * long each one took, the time spent on the network and how many candidate hashes were compared.
+ * <p>
+ * None of the values include the username, the password or hashes of either, so results can safely be logged.
+ */
+public class CheckCredentialsResult {
+
+    /**
+     * How the result of a credentials check was determined
+     */
+    public enum Outcome {
+        /**
+         * One of the calculated credential hashes matched a candidate returned by the Credentials API
+         */
+        COMPROMISED,
+
+        /**
+         * The Accounts API returned a 404 - the username is not in the Enzoic database
+         */
+        ACCOUNT_NOT_FOUND,
+
+        /**
+         * The lastCheckDate passed in was after the last breach affecting the account, so no hashes were calculated
+         */
+        NO_NEW_BREACHES,
+
+        /**
+         * Every password hash specification was skipped or failed, so no Credentials API call was made
+         */
+        NO_HASHES_COMPUTED,
+
+        /**
+         * The Credentials API was called but none of the candidate hashes matched
+         */
+        NOT_COMPROMISED,
+
+        /**
+         * The time budget for the check ran out before it could be completed, so the credentials may or may not be
+         * compromised.  If some hashes had been calculated they were still checked, and a match is reported as
+         * COMPROMISED.
+         */
+        UNKNOWN,
+
+        /**
+         * The circuit breaker for the Accounts or Credentials API was open with the FAIL_OPEN fallback, so the check
+         * was not completed and the credentials may or may not be compromised - see Enzoic.EnableCircuitBreaker
+         */
+        CIRCUIT_BREAKER_OPEN
+    }
+
+    /**
+     * Why a password hash specification was or was not used
+     */
+    public enum HashStatus {
+        /**
+         * The credential hash was calculated and included in the Credentials API call
+         */
+        COMPUTED,
+
+        /**
+         * The hash type was in the excludeHashTypes passed in
+         */
+        EXCLUDED,
+
+        /**
+         * The maximum number of BCrypt hashes per check (see Enzoic.SetMaxBCryptHashes) had already been calculated
+         */
+        BCRYPT_LIMIT,
+
+        /**
+         * The specification was beyond the maximum number of specifications considered per check
+         */
+        SPECIFICATION_LIMIT,
+
+        /**
+         * The specification had no hash type recognized by this version of the client
+         */
+        UNSUPPORTED,
+
+        /**
+         * The hash could not be calculated, usually because of a missing or invalid salt
+         */
+        FAILED,
+
+        /**
+         * The hash was not calculated because too little of the time budget for the check remained
+         */
+        DEADLINE_EXCEEDED
+    }
+
+    /**
+     * The handling of a single password hash specification returned by the Accounts API
+     */
+    public static class HashSpecificationResult {
+        private final PasswordType hashType;
+        private final HashStatus status;
+        private final long computeNanos;
+
+        HashSpecificationResult(final PasswordType hashType, final HashStatus status, final long computeNanos) {
+            this.hashType = hashType;
+            this.status = status;
+            this.computeNanos = computeNanos;
+        }
+
+        /**
+         * The hash algorithm of this specification
+         * @return PasswordType, or null if the type is not supported by this version of the client
+         */
+        public PasswordType getHashType() {
+            return hashType;
+        }
+
+        /**
+         * Whether the credential hash for this specification was calculated, and if not, why
+         * @return HashStatus
+         */
+        public HashStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * The time taken to calculate the password hash and the Argon2 credential hash for this specification
+         * @return nanoseconds, or 0 if nothing was calculated
+         */
+        public long getComputeNanos() {
+            return computeNanos;
+        }
+    }
+
+    private Outcome outcome;
+    private boolean accountsCacheHit;
+    private long accountsLookupNanos;
+    private long credentialsLookupNanos;
+    private long totalNanos;
+    private int candidatesCompared;
+    private final List<HashSpecificationResult> hashSpecifications = new ArrayList<HashSpecificationResult>();
+
+    CheckCredentialsResult() {
+    }
+
+    /**
+     * @return if true, then the credentials are known to be compromised
+     */
+    public boolean isCompromised() {
+        return outcome == Outcome.COMPROMISED;
+    }
+
+    /**
+     * How the result was determined
+     * @return Outcome
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Whether the account lookup was served from the accounts cache (see Enzoic.EnableAccountsCache)
+     * @return boolean
+     */
+    public boolean isAccountsCacheHit() {
+        return accountsCacheHit;
+    }
+
+    /**
+     * The time taken to look up the account, including the Accounts API call unless it was served from the cache
+     * @return nanoseconds
+     */
+    public long getAccountsLookupNanos() {
+        return accountsLookupNanos;
+    }
+
+    /**
+     * The time taken by the Credentials API call
+     * @return nanoseconds, or 0 if the call was not made
+     */
+    public long getCredentialsLookupNanos() {
+        return credentialsLookupNanos;
+    }
+
+    /**
+     * The time spent on all hash calculations - the sum of getComputeNanos for every specification
+     * @return nanoseconds
+     */
+    public long getComputeNanos() {
+        long result = 0;
+        for (HashSpecificationResult hashSpecification : hashSpecifications) {
+            result += hashSpecification.getComputeNanos();
+        }
+        return result;
+    }
+
+    /**
+     * The total time taken by the check
+     * @return nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * The number of candidate hashes returned by the Credentials API that were compared against the calculated
+     * credential hashes
+     * @return int
+     */
+    public int getCandidatesCompared() {
+        return candidatesCompared;
+    }
+
+    /**
+     * The handling of each password hash specification returned by the Accounts API, in the order they were returned.
+     * Empty if the account was not found or there were no new breaches since lastCheckDate.
+     * @return List of HashSpecificationResult
+     */
+    public List<HashSpecificationResult> getHashSpecifications() {
+        return Collections.unmodifiableList(hashSpecifications);
+    }
+
+    void setOutcome(final Outcome outcome) {
+        this.outcome = outcome;
+    }
+
+    void setAccountsCacheHit(final boolean accountsCacheHit) {
+        this.accountsCacheHit = accountsCacheHit;
+    }
+
+    void setAccountsLookupNanos(final long accountsLookupNanos) {
+        this.accountsLookupNanos = accountsLookupNanos;
+    }
+
+    void setCredentialsLookupNanos(final long credentialsLookupNanos) {
+        this.credentialsLookupNanos = credentialsLookupNanos;
+    }
+
+    void setTotalNanos(final long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    void setCandidatesCompared(final int candidatesCompared) {
+        this.candidatesCompared = candidatesCompared;
+    }
+
+    void addHashSpecification(final PasswordType hashType, final HashStatus status, final long computeNanos) {
+        hashSpecifications.add(new HashSpecificationResult(hashType, status, computeNanos));
+    }
+}
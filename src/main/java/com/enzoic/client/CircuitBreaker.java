@@ -0,0 +1,223 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The circuit breaker for a single API endpoint - internal use only.  See CircuitBreakerPolicy for how it behaves.
+ */
+class CircuitBreaker {
+
+    // the number of responses kept per endpoint for the SERVE_STALE fallback
+    private static final int MAX_STALE_RESPONSES = 10000;
+    // marks the requests whose responses contain a user's passwords, which are never kept
+    private static final String INCLUDE_PASSWORDS = "includePasswords=";
+
+    private final ApiEndpoint endpoint;
+    private final CircuitBreakerPolicy policy;
+    private final CircuitBreakerListener listener;
+    private final long slowCallThresholdNanos;
+    private final long openDurationNanos;
+    private final int failuresToOpen;
+    private final long staleResponseMaxAgeNanos;
+    private final Map<String, StaleResponse> staleResponses;
+
+    // all guarded by this
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+    private CircuitBreakerState state = CircuitBreakerState.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    CircuitBreaker(final ApiEndpoint endpoint, final CircuitBreakerPolicy policy,
+                   final CircuitBreakerListener listener) {
+        this.endpoint = endpoint;
+        this.policy = policy;
+        this.listener = listener;
+        this.slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(policy.getSlowCallThresholdInMs());
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(policy.getOpenDurationInMs());
+        this.failuresToOpen = Math.max(1, (int) Math.ceil(policy.getFailureRateThreshold() * policy.getWindowSize()));
+        this.window = new boolean[policy.getWindowSize()];
+        this.staleResponseMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(policy.getStaleResponseMaxAgeInMs());
+
+        if (policy.getFallback() == CircuitBreakerPolicy.Fallback.SERVE_STALE) {
+            this.staleResponses = new LinkedHashMap<String, StaleResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, StaleResponse> eldest) {
+                    return size() > MAX_STALE_RESPONSES ||
+                            System.nanoTime() - eldest.getValue().receivedAt > staleResponseMaxAgeNanos;
+                }
+            };
+        } else {
+            this.staleResponses = null;
+        }
+    }
+
+    synchronized CircuitBreakerState getState() {
+        return state;
+    }
+
+    /**
+     * Returns whether a request may be sent.  If it returns false, the request must be resolved with fallback instead.
+     */
+    boolean allowRequest() {
+        CircuitBreakerState previous = null;
+        boolean allowed;
+
+        synchronized (this) {
+            if (state == CircuitBreakerState.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                previous = state;
+                state = CircuitBreakerState.HALF_OPEN;
+                probesInFlight = 0;
+                probeSuccesses = 0;
+            }
+
+            if (state == CircuitBreakerState.CLOSED) {
+                allowed = true;
+            } else if (state == CircuitBreakerState.HALF_OPEN &&
+                    probesInFlight + probeSuccesses < policy.getHalfOpenProbes()) {
+                probesInFlight++;
+                allowed = true;
+            } else {
+                allowed = false;
+            }
+        }
+
+        notifyListener(previous, CircuitBreakerState.HALF_OPEN);
+        return allowed;
+    }
+
+    /**
+     * Records a successful request, and keeps its response for the SERVE_STALE fallback unless it contains passwords
+     */
+    void onSuccess(final String restUrl, final String response, final long durationInNanos) {
+        if (staleResponses != null && !restUrl.contains(INCLUDE_PASSWORDS)) {
+            StaleResponse stale = new StaleResponse(response);
+            synchronized (staleResponses) {
+                staleResponses.put(restUrl, stale);
+            }
+        }
+        record(durationInNanos > slowCallThresholdNanos);
+    }
+
+    /**
+     * Records a failed request.  Pass null for failures which say nothing about the health of the endpoint.
+     */
+    void onFailure(final IOException ex) {
+        if (ex instanceof HttpStatusException) {
+            int status = ((HttpStatusException) ex).getStatus();
+            if (status != 408 && status != 429 && status < 500) {
+                // e.g. a 401 - a problem with the request rather than the endpoint
+                record(null);
+                return;
+            }
+        }
+        record(ex == null ? null : Boolean.TRUE);
+    }
+
+    /**
+     * Resolves a request which was not allowed.  With FAIL_OPEN this also throws, with isFailOpen set, so that callers
+     * can tell that no request was made from the API not finding anything.
+     */
+    String fallback(final String restUrl)
+            throws CircuitBreakerOpenException {
+        switch (policy.getFallback()) {
+            case FAIL_OPEN:
+                throw new CircuitBreakerOpenException(endpoint, true);
+            case SERVE_STALE:
+                StaleResponse stale;
+                synchronized (staleResponses) {
+                    stale = staleResponses.get(restUrl);
+                    if (stale != null && System.nanoTime() - stale.receivedAt > staleResponseMaxAgeNanos) {
+                        staleResponses.remove(restUrl);
+                        stale = null;
+                    }
+                }
+                if (stale != null) {
+                    return stale.response;
+                }
+                break;
+            default:
+                break;
+        }
+        throw new CircuitBreakerOpenException(endpoint);
+    }
+
+    /**
+     * @param failed TRUE for a failure, FALSE for a success, null if the request should not be counted
+     */
+    private void record(final Boolean failed) {
+        CircuitBreakerState previous = null;
+        CircuitBreakerState current;
+
+        synchronized (this) {
+            if (state == CircuitBreakerState.CLOSED) {
+                if (failed != null) {
+                    if (windowCount == window.length) {
+                        if (window[windowPosition]) {
+                            windowFailures--;
+                        }
+                    } else {
+                        windowCount++;
+                    }
+                    window[windowPosition] = failed;
+                    if (failed) {
+                        windowFailures++;
+                    }
+                    windowPosition = (windowPosition + 1) % window.length;
+
+                    if (windowCount == window.length && windowFailures >= failuresToOpen) {
+                        previous = state;
+                        open();
+                    }
+                }
+            } else if (state == CircuitBreakerState.HALF_OPEN) {
+                if (probesInFlight > 0) {
+                    probesInFlight--;
+                }
+                if (failed == Boolean.TRUE) {
+                    previous = state;
+                    open();
+                } else if (failed == Boolean.FALSE && ++probeSuccesses >= policy.getHalfOpenProbes()) {
+                    previous = state;
+                    state = CircuitBreakerState.CLOSED;
+                    windowPosition = 0;
+                    windowCount = 0;
+                    windowFailures = 0;
+                }
+            }
+            current = state;
+        }
+
+        notifyListener(previous, current);
+    }
+
+    private void open() {
+        state = CircuitBreakerState.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void notifyListener(final CircuitBreakerState previous, final CircuitBreakerState current) {
+        if (previous != null && listener != null) {
+            try {
+                listener.onStateChange(endpoint, previous, current);
+            } catch (RuntimeException ex) {
+                // a faulty listener must not fail the request
+            }
+        }
+    }
+
+    private static final class StaleResponse {
+        final String response;
+        final long receivedAt = System.nanoTime();
+
+        StaleResponse(final String response) {
+            this.response = response;
+        }
+    }
+}
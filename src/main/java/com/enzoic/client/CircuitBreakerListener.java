@@ -0,0 +1,11 @@
+package com.enzoic.client;
+
+/**
+ * Receives notifications when the circuit breaker for an API endpoint changes state, e.g. to log or alert on Enzoic
+ * API degradation.  Notifications are delivered on the thread making the request which caused the change, so
+ * implementations should return quickly.
+ */
+public interface CircuitBreakerListener {
+
+    void onStateChange(ApiEndpoint endpoint, CircuitBreakerState previousState, CircuitBreakerState newState);
+}
@@ -0,0 +1,38 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of making a request when the circuit breaker for its endpoint is open and its fallback is
+ * FAIL_CLOSED, or SERVE_STALE with no stale response available
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ApiEndpoint endpoint;
+    private final boolean failOpen;
+
+    CircuitBreakerOpenException(final ApiEndpoint endpoint) {
+        this(endpoint, false);
+    }
+
+    CircuitBreakerOpenException(final ApiEndpoint endpoint, final boolean failOpen) {
+        super("Circuit breaker for " + endpoint.getPath() + " is open");
+        this.endpoint = endpoint;
+        this.failOpen = failOpen;
+    }
+
+    /**
+     * The endpoint whose circuit breaker is open
+     * @return ApiEndpoint
+     */
+    public ApiEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    // true if the breaker's fallback is FAIL_OPEN, so the caller should treat the request as not found
+    boolean isFailOpen() {
+        return failOpen;
+    }
+}
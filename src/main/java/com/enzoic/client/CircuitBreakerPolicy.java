@@ -0,0 +1,142 @@
+package com.enzoic.client;
+
+/**
+ * Controls when the circuit breaker for an API endpoint opens and how requests are resolved while it is open - see
+ * Enzoic.EnableCircuitBreaker.
+ * <p>
+ * Each endpoint's breaker tracks the outcome of its last windowSize requests.  A request counts against the endpoint if
+ * it fails with a timeout, a connection failure or a 408, 429 or 5xx response, or if it succeeds but takes longer than
+ * slowCallThresholdInMs.  Once the window is full and the fraction of such requests reaches failureRateThreshold, the
+ * breaker opens for openDurationInMs, then lets halfOpenProbes requests through: if they all succeed the breaker
+ * closes, otherwise it opens again.
+ */
+public class CircuitBreakerPolicy {
+
+    private static final long DEFAULT_STALE_RESPONSE_MAX_AGE_IN_MS = 600000;
+
+    /**
+     * How requests resolve while the circuit breaker is open
+     */
+    public enum Fallback {
+        /**
+         * Behave as if the API returned a 404, i.e. treat the password or credentials as not compromised and the
+         * user as having no exposures.  Keeps logins working during an outage at the cost of missed detections.
+         * CheckCredentialsWithDiagnostics reports such checks with the CIRCUIT_BREAKER_OPEN outcome rather than as
+         * not compromised.
+         */
+        FAIL_OPEN,
+
+        /**
+         * Throw a CircuitBreakerOpenException immediately instead of waiting for the request to time out
+         */
+        FAIL_CLOSED,
+
+        /**
+         * Return the last successful response to the same request, if this client has seen one within
+         * staleResponseMaxAgeInMs, otherwise throw a CircuitBreakerOpenException.  Responses which contain a user's
+         * passwords, i.e. those to GetUserPasswords and its variants, are never kept, so those requests always throw.
+         */
+        SERVE_STALE
+    }
+
+    private final Fallback fallback;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdInMs;
+    private final int windowSize;
+    private final long openDurationInMs;
+    private final int halfOpenProbes;
+    private final long staleResponseMaxAgeInMs;
+
+    /**
+     * Creates a policy which opens when half of the last 20 requests failed or took more than 2 seconds, stays open for
+     * 30 seconds and then sends 3 probe requests.  With SERVE_STALE, responses are served for up to 10 minutes.
+     *
+     * @param fallback How requests resolve while the breaker is open.
+     */
+    public CircuitBreakerPolicy(final Fallback fallback) {
+        this(fallback, 0.5, 2000, 20, 30000, 3);
+    }
+
+    /**
+     * Creates a policy which, with SERVE_STALE, serves responses for up to 10 minutes.
+     *
+     * @param fallback              How requests resolve while the breaker is open.
+     * @param failureRateThreshold  The fraction of failed or slow requests in the window, from 0 to 1, at which the
+     *                              breaker opens.
+     * @param slowCallThresholdInMs Successful requests which take longer than this, in milliseconds, count as failures.
+     * @param windowSize            The number of recent requests considered.
+     * @param openDurationInMs      How long the breaker stays open before probing, in milliseconds.
+     * @param halfOpenProbes        The number of probe requests which must succeed for the breaker to close.
+     */
+    public CircuitBreakerPolicy(final Fallback fallback, final double failureRateThreshold,
+                                final long slowCallThresholdInMs, final int windowSize, final long openDurationInMs,
+                                final int halfOpenProbes) {
+        this(fallback, failureRateThreshold, slowCallThresholdInMs, windowSize, openDurationInMs, halfOpenProbes,
+                DEFAULT_STALE_RESPONSE_MAX_AGE_IN_MS);
+    }
+
+    /**
+     * @param fallback                How requests resolve while the breaker is open.
+     * @param failureRateThreshold    The fraction of failed or slow requests in the window, from 0 to 1, at which the
+     *                                breaker opens.
+     * @param slowCallThresholdInMs   Successful requests which take longer than this, in milliseconds, count as
+     *                                failures.
+     * @param windowSize              The number of recent requests considered.
+     * @param openDurationInMs        How long the breaker stays open before probing, in milliseconds.
+     * @param halfOpenProbes          The number of probe requests which must succeed for the breaker to close.
+     * @param staleResponseMaxAgeInMs With SERVE_STALE, the age in milliseconds beyond which a kept response is no
+     *                                longer served.  Keep it no longer than the TTLs of any caches you have enabled.
+     */
+    public CircuitBreakerPolicy(final Fallback fallback, final double failureRateThreshold,
+                                final long slowCallThresholdInMs, final int windowSize, final long openDurationInMs,
+                                final int halfOpenProbes, final long staleResponseMaxAgeInMs) {
+        if (fallback == null) {
+            throw new IllegalArgumentException("Fallback cannot be null");
+        }
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Failure rate threshold must be greater than 0 and at most 1");
+        }
+        if (slowCallThresholdInMs <= 0 || windowSize <= 0 || openDurationInMs <= 0 || halfOpenProbes <= 0) {
+            throw new IllegalArgumentException("Thresholds, window size, open duration and probes must be greater than 0");
+        }
+        if (staleResponseMaxAgeInMs <= 0) {
+            throw new IllegalArgumentException("Stale response max age must be greater than 0");
+        }
+
+        this.fallback = fallback;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdInMs = slowCallThresholdInMs;
+        this.windowSize = windowSize;
+        this.openDurationInMs = openDurationInMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.staleResponseMaxAgeInMs = staleResponseMaxAgeInMs;
+    }
+
+    public Fallback getFallback() {
+        return fallback;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public long getSlowCallThresholdInMs() {
+        return slowCallThresholdInMs;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public long getOpenDurationInMs() {
+        return openDurationInMs;
+    }
+
+    public int getHalfOpenProbes() {
+        return halfOpenProbes;
+    }
+
+    public long getStaleResponseMaxAgeInMs() {
+        return staleResponseMaxAgeInMs;
+    }
+}
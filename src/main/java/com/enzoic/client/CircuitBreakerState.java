@@ -0,0 +1,23 @@
+package com.enzoic.client;
+
+/**
+ * The state of the circuit breaker for an API endpoint - see Enzoic.EnableCircuitBreaker
+ */
+public enum CircuitBreakerState {
+    /**
+     * Requests are sent normally
+     */
+    CLOSED,
+
+    /**
+     * Too many recent requests failed or were slow - requests are not sent and resolve immediately according to the
+     * circuit breaker's fallback
+     */
+    OPEN,
+
+    /**
+     * The open period has elapsed and a limited number of probe requests are being sent to test whether the endpoint
+     * has recovered
+     */
+    HALF_OPEN
+}
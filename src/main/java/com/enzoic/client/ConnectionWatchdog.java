@@ -0,0 +1,82 @@
+package com.enzoic.client;
+
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Aborts the API requests of interrupted threads - internal use only.
+ * <p>
+ * A thread blocked reading from a socket does not notice being interrupted, so a request whose caller has given up,
+ * e.g. through Future.cancel(true), would otherwise hold its thread and connection until the response arrived or the
+ * read timeout passed.  While requests are in flight, a single daemon thread polls the threads making them and
+ * disconnects the connections of interrupted ones, which makes the blocked read fail straight away.
+ */
+final class ConnectionWatchdog {
+
+    private static final long POLL_INTERVAL_MS = 10;
+    // the watchdog thread exits after this many polls with nothing in flight
+    private static final int IDLE_POLLS = 100;
+
+    private static final ConcurrentMap<HttpURLConnection, Thread> connections =
+            new ConcurrentHashMap<HttpURLConnection, Thread>();
+    private static final Object lock = new Object();
+    // guarded by lock
+    private static boolean running;
+
+    private ConnectionWatchdog() {
+    }
+
+    /**
+     * Watches a connection used by the current thread until unregister is called
+     */
+    static void register(final HttpURLConnection connection) {
+        connections.put(connection, Thread.currentThread());
+
+        synchronized (lock) {
+            if (!running) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        watch();
+                    }
+                }, "enzoic-connection-watchdog");
+                thread.setDaemon(true);
+                thread.start();
+                running = true;
+            }
+        }
+    }
+
+    static void unregister(final HttpURLConnection connection) {
+        connections.remove(connection);
+    }
+
+    private static void watch() {
+        int idlePolls = 0;
+        while (true) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException ex) {
+                // nobody else should interrupt us - keep watching
+            }
+
+            for (Map.Entry<HttpURLConnection, Thread> entry : connections.entrySet()) {
+                if (entry.getValue().isInterrupted() && connections.remove(entry.getKey(), entry.getValue())) {
+                    entry.getKey().disconnect();
+                }
+            }
+
+            synchronized (lock) {
+                if (!connections.isEmpty()) {
+                    idlePolls = 0;
+                } else if (++idlePolls >= IDLE_POLLS) {
+                    // register starts a new watchdog for anything added after this
+                    running = false;
+                    return;
+                }
+            }
+        }
+    }
+}
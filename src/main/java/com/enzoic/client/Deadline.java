@@ -0,0 +1,54 @@
+package com.enzoic.client;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time by which a call made up of several requests and hash calculations must complete - internal use only
+ */
+class Deadline {
+
+    private final long budgetNanos;
+    private final long expiresAtNanos;
+
+    Deadline(final long budgetInMs) {
+        if (budgetInMs <= 0) {
+            throw new IllegalArgumentException("Time budget must be greater than 0");
+        }
+
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetInMs);
+        this.expiresAtNanos = System.nanoTime() + budgetNanos;
+    }
+
+    long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    long getRemainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    boolean isExpired() {
+        return getRemainingNanos() <= 0;
+    }
+
+    /**
+     * Returns the connect and read timeout for a request: the remaining budget, rounded up to a whole millisecond, or
+     * the configured request timeout if that is shorter
+     *
+     * @throws SocketTimeoutException if the deadline has already passed
+     */
+    int getRequestTimeout(final int configuredTimeoutInMs)
+            throws SocketTimeoutException {
+        long remainingNanos = getRemainingNanos();
+        if (remainingNanos <= 0) {
+            throw new SocketTimeoutException("Time budget exhausted before request was sent");
+        }
+
+        long remainingMs = (remainingNanos + 999999) / 1000000;
+        if (configuredTimeoutInMs > 0 && configuredTimeoutInMs < remainingMs) {
+            return configuredTimeoutInMs;
+        }
+        return (int) Math.min(remainingMs, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,212 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes API requests between several base URLs for the same API, e.g. regional endpoints or reverse proxies - internal
+ * use only, see Enzoic.EnableEndpointRouting.
+ * <p>
+ * Each request goes to the route with the lowest exponentially weighted moving average latency, except for a small
+ * fraction sent to a random other route so that the averages of routes which are not currently preferred stay current.
+ * Routes with fewer than MIN_SAMPLES measurements are preferred, so each is measured early on, and they are averaged
+ * evenly so that one slow first request, e.g. on a cold connection, does not count against a route for long.
+ * <p>
+ * A route is ejected when a request to it fails with a connection error, a timeout or a 5xx response, and from then on
+ * is only sent background probes, at growing intervals, until one succeeds.  If every route is ejected, requests go to
+ * the one due to be probed first.
+ */
+class EndpointRouter {
+
+    /**
+     * Checks whether a base URL is reachable
+     */
+    interface Prober {
+        /**
+         * @throws IOException the base URL did not respond, or responded with a 5xx status
+         */
+        void probe(String baseURL) throws IOException;
+    }
+
+    // the weight of each new latency sample in the moving average
+    private static final double EWMA_ALPHA = 0.2;
+    private static final int MIN_SAMPLES = 5;
+    private static final double EXPLORE_FRACTION = 0.01;
+    private static final long PROBE_INTERVAL_MS = 500;
+    private static final long MIN_EJECTION_MS = 1000;
+    private static final long MAX_EJECTION_MS = 30000;
+
+    static final class Route {
+        final String baseURL;
+        // guarded by this, but read without locking by select
+        volatile double ewmaNanos;
+        volatile boolean measured;
+        volatile boolean ejected;
+        volatile long probeAt;
+        private int samples;
+        private int ejections;
+
+        Route(final String baseURL) {
+            this.baseURL = baseURL;
+        }
+
+        synchronized void onSuccess(final long durationInNanos) {
+            samples++;
+            double alpha = Math.max(EWMA_ALPHA, 1.0 / samples);
+            ewmaNanos = alpha * durationInNanos + (1 - alpha) * ewmaNanos;
+            measured = samples >= MIN_SAMPLES;
+            ejections = 0;
+            ejected = false;
+        }
+
+        synchronized void eject() {
+            // each ejection in a row doubles the wait before the next probe
+            long ejectionMs = Math.min(MAX_EJECTION_MS, MIN_EJECTION_MS << Math.min(ejections, 16));
+            ejections++;
+            probeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ejectionMs);
+            ejected = true;
+        }
+
+        synchronized void reinstate() {
+            // measured afresh, as the latency before it failed says little about the latency now
+            ewmaNanos = 0;
+            samples = 0;
+            measured = false;
+            ejected = false;
+        }
+    }
+
+    private final Route[] routes;
+    private final Prober prober;
+    private final ScheduledExecutorService probeExecutor;
+
+    EndpointRouter(final String[] baseURLs, final Prober prober) {
+        if (baseURLs == null || baseURLs.length == 0) {
+            throw new IllegalArgumentException("At least one API base URL is required");
+        }
+
+        this.routes = new Route[baseURLs.length];
+        for (int i = 0; i < baseURLs.length; i++) {
+            if (baseURLs[i] == null || baseURLs[i].length() == 0) {
+                throw new IllegalArgumentException("API base URLs cannot be null or empty");
+            }
+            routes[i] = new Route(baseURLs[i]);
+        }
+        this.prober = prober;
+
+        this.probeExecutor = Executors.newSingleThreadScheduledExecutor(
+                new WorkScheduler.DaemonThreadFactory("enzoic-route-probe"));
+        probeExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                probeEjectedRoutes();
+            }
+        }, PROBE_INTERVAL_MS, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Chooses the route for a request
+     */
+    Route select() {
+        Route best = null;
+        Route soonestProbed = null;
+        int available = 0;
+        for (Route route : routes) {
+            if (route.ejected) {
+                if (soonestProbed == null || route.probeAt - soonestProbed.probeAt < 0) {
+                    soonestProbed = route;
+                }
+            } else {
+                available++;
+                if (best == null || (!route.measured && best.measured) ||
+                        (route.measured == best.measured && route.ewmaNanos < best.ewmaNanos)) {
+                    best = route;
+                }
+            }
+        }
+
+        if (best == null) {
+            return soonestProbed;
+        }
+        if (available > 1 && ThreadLocalRandom.current().nextDouble() < EXPLORE_FRACTION) {
+            // pick uniformly among the other available routes
+            int skip = ThreadLocalRandom.current().nextInt(available - 1);
+            for (Route route : routes) {
+                if (!route.ejected && route != best && skip-- == 0) {
+                    return route;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Whether there is another route to fail over to after the given one was ejected
+     */
+    boolean hasAlternative(final Route failed) {
+        for (Route route : routes) {
+            if (route != failed && !route.ejected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void onSuccess(final Route route, final long durationInNanos) {
+        route.onSuccess(durationInNanos);
+    }
+
+    /**
+     * Ejects the route if the failure says something about its health
+     *
+     * @return whether the route was ejected
+     */
+    boolean onFailure(final Route route, final IOException ex) {
+        if (!isRouteFailure(ex)) {
+            return false;
+        }
+        route.eject();
+        return true;
+    }
+
+    int size() {
+        return routes.length;
+    }
+
+    Route[] getRoutes() {
+        return routes.clone();
+    }
+
+    void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+
+    private void probeEjectedRoutes() {
+        for (Route route : routes) {
+            if (route.ejected && System.nanoTime() - route.probeAt >= 0) {
+                try {
+                    prober.probe(route.baseURL);
+                    route.reinstate();
+                } catch (IOException ex) {
+                    route.eject();
+                } catch (RuntimeException ex) {
+                    route.eject();
+                }
+            }
+        }
+    }
+
+    static boolean isRouteFailure(final IOException ex) {
+        if (ex instanceof HttpStatusException) {
+            // 4xx responses, including 429s, are about the request or the account rather than the route
+            return ((HttpStatusException) ex).getStatus() >= 500;
+        }
+        // a cancellation is the caller giving up, but a timeout counts
+        return !(ex instanceof InterruptedIOException) || ex instanceof SocketTimeoutException;
+    }
+}
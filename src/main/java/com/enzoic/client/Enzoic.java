@@ -1,13 +1,19 @@
 package com.enzoic.client;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.lang.management.ManagementFactory;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import com.google.gson.Gson;
-import org.apache.commons.io.IOUtils;
 import com.enzoic.client.utilities.Hashing;
 
 /**
@@ -18,17 +24,48 @@ import com.enzoic.client.utilities.Hashing;
  */
 public class Enzoic {
 
-    private static final String CREDENTIALS_API_PATH = "/credentials";
-    private static final String PASSWORDS_API_PATH = "/passwords";
-    private static final String EXPOSURES_API_PATH = "/exposures";
-    private static final String ACCOUNTS_API_PATH = "/accounts";
     private static final String ALERTS_SERVICE_PATH = "/alert-subscriptions";
 
+    // Accounts responses are small - entries which encode to more than this are simply not cached
+    static final int ACCOUNTS_CACHE_MAX_VALUE_LENGTH = 512;
+    static final int EXPOSURE_DETAILS_CACHE_MAX_VALUE_LENGTH = 1024;
+    static final int USER_PASSWORDS_CACHE_MAX_VALUE_LENGTH = 4096;
+
+    static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+    private static final int DEFAULT_MAX_BCRYPT_HASHES = 3;
+    // for endpoint routing probes when no request timeout is set
+    private static final int DEFAULT_PROBE_TIMEOUT = 5000;
+    // enough calls for the JIT to compile each hash's code, within a time limit per type
+    private static final int WARM_UP_ITERATIONS = 200;
+    private static final long WARM_UP_NANOS_PER_TYPE = TimeUnit.MILLISECONDS.toNanos(20);
+
     private String apiKey;
     private String secret;
     private String authString;
+    private Map<String, String> requestHeaders;
     private String apiBaseURL;
-    private Integer requestTimeout = 0;
+    private volatile Integer requestTimeout = 0;
+    private volatile int maxBCryptHashes = DEFAULT_MAX_BCRYPT_HASHES;
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private ObjectName mbeanName;
+    private volatile EnzoicMetrics metrics = EnzoicMetrics.NONE;
+    private volatile Transport transport = Transport.DEFAULT;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private volatile RequestHedging hedging;
+    private volatile CircuitBreaker[] circuitBreakers;
+    private volatile EndpointRouter router;
+    private volatile TokenBucket rateLimiter;
+    private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private volatile ResponseCache<AccountsResponse> accountsCache;
+    private volatile ResponseCache<ExposureDetails> exposureDetailsCache;
+    private volatile ResponseCache<UserPasswords> userPasswordsCache;
+    private volatile SharedCache sharedCache;
+    private final WorkScheduler requestScheduler;
+    private final WorkScheduler.Tenant requestTenant;
+    private final WorkScheduler hashScheduler;
+    private final WorkScheduler.Tenant hashTenant;
+    // whether the schedulers belong to an EnzoicTenantPool rather than to this instance
+    private final boolean sharedSchedulers;
 
     /**
      * Creates a new instance of Enzoic
@@ -48,6 +85,15 @@ public class Enzoic {
      * @param apiBaseURL override the default base API URL with an alternate - typically not necessary
      */
     public Enzoic(final String apiKey, final String secret, final String apiBaseURL) {
+        this(apiKey, secret, apiBaseURL, null, null);
+    }
+
+    /**
+     * Creates an instance which runs its work on the given schedulers, shared with other instances, or on its own
+     * schedulers if they are null
+     */
+    Enzoic(final String apiKey, final String secret, final String apiBaseURL,
+           final WorkScheduler requestScheduler, final WorkScheduler hashScheduler) {
         if (apiKey == null || apiKey.length() == 0) {
             throw new IllegalArgumentException("API Key cannot be null or empty");
         }
@@ -65,6 +111,19 @@ public class Enzoic {
         this.secret = secret;
         this.apiBaseURL = baseURL;
         this.authString = CalcAuthString(apiKey, secret);
+
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Accept", "application/json");
+        headers.put("Authorization", authString);
+        this.requestHeaders = Collections.unmodifiableMap(headers);
+
+        this.sharedSchedulers = requestScheduler != null;
+        this.requestScheduler = sharedSchedulers ? requestScheduler :
+                new WorkScheduler("enzoic-request", DEFAULT_MAX_CONCURRENT_REQUESTS);
+        this.hashScheduler = sharedSchedulers ? hashScheduler :
+                new WorkScheduler("enzoic-hash", Runtime.getRuntime().availableProcessors());
+        this.requestTenant = this.requestScheduler.newTenant();
+        this.hashTenant = this.hashScheduler.newTenant();
     }
 
     /**
@@ -85,6 +144,584 @@ public class Enzoic {
         return this.requestTimeout;
     }
 
+    /**
+     * Sets the metrics implementation which will receive timings for each API request and each phase of CheckCredentials
+     * calls.  HistogramMetrics is a built-in implementation.
+     *
+     * @param metrics The metrics implementation, or null to stop collecting metrics.
+     */
+    public void SetMetrics(final EnzoicMetrics metrics) {
+        this.metrics = metrics == null ? EnzoicMetrics.NONE : metrics;
+    }
+
+    /**
+     * Gets the metrics implementation in use.
+     *
+     * @return The metrics implementation.  EnzoicMetrics.NONE if metrics are not being collected.
+     */
+    public EnzoicMetrics GetMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Sets the transport which sends HTTP requests to the Enzoic API, e.g. a RecordingTransport to capture API exchanges
+     * or a ReplayTransport to serve captured ones back without a network.
+     *
+     * @param transport The transport, or null to use the default HttpURLConnection transport.
+     */
+    public void SetTransport(final Transport transport) {
+        this.transport = transport == null ? Transport.DEFAULT : transport;
+    }
+
+    /**
+     * Gets the transport which sends HTTP requests to the Enzoic API.
+     *
+     * @return The transport.  Transport.DEFAULT unless another has been set.
+     */
+    public Transport GetTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Sets the policy for retrying API requests which fail with a transient error, such as an HTTP 503 or a timeout.
+     * Only GET requests are retried.  By default requests are not retried.
+     *
+     * @param retryPolicy The retry policy, or null to stop retrying.
+     */
+    public void SetRetryPolicy(final RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+    }
+
+    /**
+     * Gets the policy for retrying API requests.
+     *
+     * @return The retry policy.  RetryPolicy.NONE if requests are not retried.
+     */
+    public RetryPolicy GetRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * Enables hedged requests to reduce tail latency.  When a GET request has not completed within the given
+     * percentile of the recent latency of its endpoint, an identical request is sent and whichever response arrives
+     * first is used.  With a percentile of 95, at most about 5% of requests are duplicated.
+     * <p>
+     * Requests to an endpoint are not hedged until a baseline of at least 20 successful requests has been seen.
+     * Requests made while hedging is enabled run on a separate pool of daemon threads.
+     *
+     * @param latencyPercentile The percentile of recent latency after which a request is hedged, e.g. 95.
+     */
+    public void EnableHedgedRequests(final double latencyPercentile) {
+        RequestHedging previous = this.hedging;
+        this.hedging = new RequestHedging(latencyPercentile);
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Disables hedged requests, and stops the threads they ran on.
+     */
+    public void DisableHedgedRequests() {
+        RequestHedging previous = this.hedging;
+        this.hedging = null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Limits the rate of requests this instance makes to the Enzoic API, e.g. to stay within a contractual request
+     * rate.  Requests beyond the rate wait rather than failing.  When the limit is reached, waiting requests are
+     * released by priority (see SetThreadPriority): part of the burst is held back for INTERACTIVE requests, and less
+     * of it for NORMAL ones, so they go ahead of BULK work.  Requests of the same priority are released in no
+     * particular order.  Waits count against the time budget of calls which have one.
+     *
+     * @param requestsPerSecond The sustained request rate.
+     * @param burst             The number of requests which may be made at once after a quiet period.
+     */
+    public void SetRateLimit(final double requestsPerSecond, final int burst) {
+        this.rateLimiter = new TokenBucket(requestsPerSecond, burst);
+    }
+
+    /**
+     * Removes the request rate limit.
+     */
+    public void DisableRateLimit() {
+        this.rateLimiter = null;
+    }
+
+    /**
+     * Enables an adaptive limit on the number of concurrent requests this instance makes to the Enzoic API, shared by
+     * interactive calls and bulk calls alike.  The limit grows while requests succeed at steady latency and shrinks
+     * quickly on 429 responses, 5xx responses and timeouts, so throughput stays high without provoking throttling.
+     * Requests beyond the limit wait for a slot.
+     *
+     * @param initialLimit The starting limit.
+     * @param minLimit     The limit never falls below this.
+     * @param maxLimit     The limit never rises above this.
+     */
+    public void EnableAdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+    }
+
+    /**
+     * Disables the adaptive concurrency limit.
+     */
+    public void DisableAdaptiveConcurrencyLimit() {
+        this.concurrencyLimiter = null;
+    }
+
+    /**
+     * Gets the current adaptive concurrency limit.
+     *
+     * @return The number of concurrent requests currently allowed, or 0 if the limit is not enabled.
+     */
+    public int GetConcurrencyLimit() {
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+        return limiter == null ? 0 : limiter.getLimit();
+    }
+
+    /**
+     * Enables a circuit breaker for each API endpoint.  When too many recent requests to an endpoint have failed or
+     * been slow, the breaker opens and requests to that endpoint resolve immediately according to the policy's
+     * fallback - treating the check as not compromised, throwing a CircuitBreakerOpenException, or serving the last
+     * response seen for the same request - instead of each waiting for the request timeout.  After a while a few probe
+     * requests are let through, and the breaker closes again once they succeed.
+     * <p>
+     * Retries (see SetRetryPolicy) stop as soon as the breaker opens.
+     *
+     * @param policy   When the breakers open and how requests resolve while they are open.
+     * @param listener Notified of every breaker state change.  Can be null.
+     */
+    public void EnableCircuitBreaker(final CircuitBreakerPolicy policy, final CircuitBreakerListener listener) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy cannot be null");
+        }
+
+        CircuitBreaker[] breakers = new CircuitBreaker[ApiEndpoint.values().length];
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            breakers[endpoint.ordinal()] = new CircuitBreaker(endpoint, policy, listener);
+        }
+        this.circuitBreakers = breakers;
+    }
+
+    /**
+     * Disables the circuit breakers, so all requests are sent normally.
+     */
+    public void DisableCircuitBreaker() {
+        this.circuitBreakers = null;
+    }
+
+    /**
+     * Routes API requests between several base URLs for the API, e.g. regional endpoints or reverse proxies, in place of
+     * the base URL passed to the constructor.  Each request goes to the base URL with the lowest recent latency, so
+     * requests settle on the nearest healthy region.
+     * <p>
+     * A base URL is taken out of rotation when a request to it fails with a connection error, a timeout or a 5xx
+     * response, and the request is immediately sent to the next best base URL instead - this failover does not count
+     * against the retry policy.  Base URLs taken out of rotation are probed in the background and put back once they
+     * respond.
+     *
+     * @param apiBaseURLs The base URLs to route between, e.g. "https://api.enzoic.com/v1".
+     */
+    public void EnableEndpointRouting(final String... apiBaseURLs) {
+        EndpointRouter previous = this.router;
+        this.router = new EndpointRouter(apiBaseURLs, new EndpointRouter.Prober() {
+            @Override
+            public void probe(final String baseURL) throws IOException {
+                Integer configuredTimeout = requestTimeout;
+                int timeout = configuredTimeout == null || configuredTimeout == 0 ?
+                        DEFAULT_PROBE_TIMEOUT : configuredTimeout;
+                // any response short of a server error shows the base URL is back
+                TransportResponse response = transport.send(
+                        new TransportRequest(null, "GET", baseURL, requestHeaders, timeout, null));
+                if (response.getStatus() >= 500) {
+                    throw new HttpStatusException(response.getStatus(), "Probe of " + baseURL +
+                            " failed. HTTP error code: " + response.getStatus());
+                }
+            }
+        });
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Stops routing requests between several base URLs, so all requests go to the base URL passed to the constructor.
+     */
+    public void DisableEndpointRouting() {
+        EndpointRouter previous = this.router;
+        this.router = null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Gets the state of the circuit breaker for an endpoint.
+     *
+     * @param endpoint The API endpoint.
+     * @return The breaker state.  CLOSED if circuit breakers are not enabled.
+     */
+    public CircuitBreakerState GetCircuitBreakerState(final ApiEndpoint endpoint) {
+        CircuitBreaker[] breakers = this.circuitBreakers;
+        return breakers == null ? CircuitBreakerState.CLOSED : breakers[endpoint.ordinal()].getState();
+    }
+
+    /**
+     * Sets the maximum number of API requests that bulk calls, such as GetExposureDetailsForUsers, will make in parallel.
+     *
+     * For an instance from an EnzoicTenantPool, this limits the tenant's share of the pool's request threads instead.
+     *
+     * @param maxConcurrentRequests The maximum number of concurrent requests.  Defaults to 16, or for a pooled instance
+     *                              to the pool's limit.
+     */
+    public void SetMaxConcurrentRequests(final int maxConcurrentRequests) {
+        if (sharedSchedulers) {
+            requestScheduler.setConcurrency(requestTenant, maxConcurrentRequests);
+        } else {
+            requestScheduler.setConcurrency(maxConcurrentRequests);
+        }
+    }
+
+    /**
+     * Gets the maximum number of API requests that bulk calls will make in parallel.
+     *
+     * @return The maximum number of concurrent requests.
+     */
+    public int GetMaxConcurrentRequests() {
+        return requestScheduler.getConcurrency(requestTenant);
+    }
+
+    /**
+     * Sets the priority of the calls made on the current thread, for all Enzoic instances.  Calls made at INTERACTIVE
+     * priority, such as credential checks on a login path, are served ahead of NORMAL and BULK work when request
+     * threads, hash threads, the rate limit or the concurrency limit are contended, and a share of each is reserved for
+     * them.  Work the call hands off to other threads keeps its priority.
+     * <p>
+     * Without a priority set, multi-user calls such as GetExposureDetailsForUsers and GetUserPasswordsForUsers run at
+     * BULK priority and everything else at NORMAL.
+     *
+     * @param priority The priority for calls made on the current thread, or null to go back to the defaults.
+     */
+    public static void SetThreadPriority(final RequestPriority priority) {
+        PriorityContext.set(priority);
+    }
+
+    /**
+     * Gets the priority set for the current thread by SetThreadPriority.
+     *
+     * @return The priority, or null if none is set.
+     */
+    public static RequestPriority GetThreadPriority() {
+        return PriorityContext.get();
+    }
+
+    /**
+     * Sets the maximum number of password hash calculations that calls such as CheckPasswordReuse will run in parallel.
+     *
+     * For an instance from an EnzoicTenantPool, this limits the tenant's share of the pool's hash threads instead.
+     *
+     * @param maxConcurrentHashes The maximum number of concurrent hash calculations.  Defaults to the number of processors,
+     *                            or for a pooled instance to the pool's limit.
+     */
+    public void SetMaxConcurrentHashes(final int maxConcurrentHashes) {
+        if (sharedSchedulers) {
+            hashScheduler.setConcurrency(hashTenant, maxConcurrentHashes);
+        } else {
+            hashScheduler.setConcurrency(maxConcurrentHashes);
+        }
+    }
+
+    /**
+     * Gets the maximum number of password hash calculations that will run in parallel.
+     *
+     * @return The maximum number of concurrent hash calculations.
+     */
+    public int GetMaxConcurrentHashes() {
+        return hashScheduler.getConcurrency(hashTenant);
+    }
+
+    /**
+     * Sets the maximum number of BCrypt hashes CheckCredentials and CheckCredentialsEx will calculate for a single check.
+     * BCrypt is expensive by design, and a few accounts have accumulated many BCrypt hashes, so further BCrypt hashes
+     * for an account are skipped once this many have been calculated.
+     *
+     * @param maxBCryptHashes The maximum number of BCrypt hashes per check, 0 to skip BCrypt entirely.  Defaults to 3.
+     */
+    public void SetMaxBCryptHashes(final int maxBCryptHashes) {
+        if (maxBCryptHashes < 0) {
+            throw new IllegalArgumentException("Max BCrypt hashes cannot be negative");
+        }
+        this.maxBCryptHashes = maxBCryptHashes;
+    }
+
+    /**
+     * Gets the maximum number of BCrypt hashes calculated for a single credentials check.
+     *
+     * @return The maximum number of BCrypt hashes per check.
+     */
+    public int GetMaxBCryptHashes() {
+        return this.maxBCryptHashes;
+    }
+
+    /**
+     * Warms up the code paths used by API calls so that the first calls after startup are not slowed down by class
+     * loading and interpreted code - see WarmUp(boolean).  Makes no network requests.
+     */
+    public void WarmUp() {
+        try {
+            WarmUp(false);
+        } catch (IOException ex) {
+            // only preconnecting can fail
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Warms up the code paths used by API calls so that the first calls after startup are not slowed down by class
+     * loading and interpreted code, e.g. from a readiness probe.  Each PasswordType supported by CheckCredentials is
+     * calculated repeatedly with synthetic input and low work factors, Argon2 is calculated once to load its native
+     * library, and the JSON adapters for every API response are built.  This typically takes under a second.
+     *
+     * @param preconnect Whether to also open connections to the API base URL, or to each routed base URL - as many
+     *                   as the request concurrency and HttpURLConnection's keep-alive pool (the http.maxConnections
+     *                   system property) allow - so the first API calls do not wait for TCP and TLS handshakes.
+     *                   Ignored when a Transport other than the default has been set.
+     * @throws IOException preconnect was requested and the API could not be reached.  The rest of the warm-up has
+     *                     still been done.
+     */
+    public void WarmUp(final boolean preconnect) throws IOException {
+        List<Future<Void>> connections = new ArrayList<Future<Void>>();
+        if (preconnect && transport == Transport.DEFAULT) {
+            // in parallel, as HttpURLConnection only opens another connection when the pooled ones are all in use
+            int count = Math.min(GetMaxConcurrentRequests(), Integer.getInteger("http.maxConnections", 5));
+            Integer configuredTimeout = this.requestTimeout;
+            final int timeout = configuredTimeout == null ? 0 : configuredTimeout;
+            EndpointRouter router = this.router;
+            List<String> baseURLs = new ArrayList<String>();
+            if (router == null) {
+                baseURLs.add(apiBaseURL);
+            } else {
+                // any of them could end up preferred
+                for (EndpointRouter.Route route : router.getRoutes()) {
+                    baseURLs.add(route.baseURL);
+                }
+            }
+            for (final String baseURL : baseURLs) {
+                for (int i = 0; i < count; i++) {
+                    connections.add(requestScheduler.submit(requestTenant, RequestPriority.NORMAL, new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            HttpURLConnectionTransport.preconnect(baseURL, timeout);
+                            return null;
+                        }
+                    }));
+                }
+            }
+        }
+
+        for (PasswordType passwordType : PasswordType.values()) {
+            String salt = WarmUpSalt(passwordType);
+            // the slow types are iterated hashes, whose loops get compiled within the first few calls anyway
+            long stop = System.nanoTime() + WARM_UP_NANOS_PER_TYPE;
+            for (int i = 0; i < WARM_UP_ITERATIONS && (i == 0 || System.nanoTime() < stop); i++) {
+                try {
+                    CalcPasswordHash(passwordType, "warm-up-" + i, salt);
+                } catch (CancellationException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    // as in CalcCredentialHash, a type which cannot be calculated is skipped
+                    break;
+                }
+            }
+        }
+
+        // Argon2 normally runs in a native library, so only needs loading rather than running repeatedly
+        String argon2Hash = Hashing.argon2("warm-up$" + Hashing.sha256("warm-up"), "warm-up-salt");
+        Hashing.bytesToHex(Hashing.decodeBase64(argon2Hash.substring(argon2Hash.lastIndexOf('$') + 1)));
+
+        for (Class<?> responseClass : new Class<?>[] {AccountsResponse.class, CheckCredentialsPartialHashesResponse.class,
+                CheckPasswordPartialHashesResponse.class, ExposuresResponse.class, ExposureDetails.class,
+                UserPasswords.class, UserPasswordsByPartialHashCandidates.class,
+                UserPasswordsWithExposureDetails.class}) {
+            gson.fromJson("{}", responseClass);
+        }
+
+        try {
+            for (Future<Void> connection : connections) {
+                connection.get();
+            }
+        } catch (InterruptedException ex) {
+            CancelAll(connections);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted opening connections to the Enzoic API");
+        } catch (ExecutionException ex) {
+            CancelAll(connections);
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Registers an EnzoicMXBean for this instance with the platform MBean server under the name
+     * com.enzoic.client:type=Enzoic,name=(instanceName).  It exposes in-flight requests, thread pool usage and cache
+     * statistics, and allows the request timeout, concurrency limits, BCrypt budget and cache TTLs to be changed at
+     * runtime without a redeploy.
+     *
+     * @param instanceName A name distinguishing this instance from any others in the same JVM.
+     * @return The name the MBean was registered under.
+     */
+    public synchronized ObjectName RegisterMBean(final String instanceName) {
+        if (mbeanName != null) {
+            throw new IllegalStateException("MBean is already registered as " + mbeanName);
+        }
+
+        try {
+            ObjectName name = new ObjectName("com.enzoic.client:type=Enzoic,name=" + ObjectName.quote(instanceName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new EnzoicManagement(this), name);
+            mbeanName = name;
+            return name;
+        } catch (JMException ex) {
+            throw new RuntimeException("Could not register Enzoic MBean", ex);
+        }
+    }
+
+    /**
+     * Unregisters the MBean registered by RegisterMBean, if any.
+     */
+    public synchronized void UnregisterMBean() {
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException ex) {
+                // already unregistered by someone else
+            }
+            mbeanName = null;
+        }
+    }
+
+    /**
+     * Enables an in-process cache of the account lookups made by CheckCredentials and CheckCredentialsEx.  Entries are
+     * keyed by the SHA-256 hash of the username and held off-heap in a compact binary form, so large caches do not add
+     * to GC pressure.  When the cache is full, entries which have not been read recently are evicted first.
+     * <p>
+     * Note that a cached entry will not reflect new breaches of that account until it expires, so the TTL should be
+     * kept relatively short (e.g. minutes to hours).
+     *
+     * @param maxEntries The maximum number of accounts to cache.  Each entry reserves roughly 750 bytes of off-heap memory.
+     * @param ttlInMs    The time in milliseconds after which a cached entry expires.
+     */
+    public void EnableAccountsCache(final int maxEntries, final long ttlInMs) {
+        ResponseCache<AccountsResponse> cache = new ResponseCache<AccountsResponse>("accounts", maxEntries,
+                ACCOUNTS_CACHE_MAX_VALUE_LENGTH, ttlInMs, AccountsResponse.CODEC);
+        cache.setSharedCache(sharedCache);
+        this.accountsCache = cache;
+    }
+
+    /**
+     * Disables the account lookup cache and releases its entries.
+     */
+    public void DisableAccountsCache() {
+        this.accountsCache = null;
+    }
+
+    /**
+     * Enables an in-process cache of Exposure details, used by GetExposureDetails and the calls built on it.  Exposure
+     * details are not typically expected to change over time, so they can be cached for long periods, e.g. up to 30 days.
+     * Entries are held off-heap in a compact binary form.
+     *
+     * @param maxEntries The maximum number of Exposures to cache.  Each entry reserves roughly 1.4KB of off-heap memory.
+     * @param ttlInMs    The time in milliseconds after which a cached entry expires.
+     */
+    public void EnableExposureDetailsCache(final int maxEntries, final long ttlInMs) {
+        ResponseCache<ExposureDetails> cache = new ResponseCache<ExposureDetails>("exposure-details", maxEntries,
+                EXPOSURE_DETAILS_CACHE_MAX_VALUE_LENGTH, ttlInMs, ExposureDetails.CODEC);
+        cache.setSharedCache(sharedCache);
+        this.exposureDetailsCache = cache;
+    }
+
+    /**
+     * Disables the Exposure details cache and releases its entries.
+     */
+    public void DisableExposureDetailsCache() {
+        this.exposureDetailsCache = null;
+    }
+
+    /**
+     * Enables an in-process cache of the results of GetUserPasswords (exact username matching only), which is also
+     * used by CheckPasswordReuse.  This allows repeated checks against the same account, e.g. during a password change,
+     * to be made without any further API calls.  Entries are held off-heap in a compact binary form.
+     *
+     * @param maxEntries The maximum number of users to cache.  Each entry reserves roughly 5.5KB of off-heap memory.
+     * @param ttlInMs    The time in milliseconds after which a cached entry expires.
+     */
+    public void EnableUserPasswordsCache(final int maxEntries, final long ttlInMs) {
+        ResponseCache<UserPasswords> cache = new ResponseCache<UserPasswords>("user-passwords", maxEntries,
+                USER_PASSWORDS_CACHE_MAX_VALUE_LENGTH, ttlInMs, UserPasswords.CODEC);
+        cache.setSharedCache(sharedCache);
+        this.userPasswordsCache = cache;
+    }
+
+    /**
+     * Disables the user passwords cache and releases its entries.
+     */
+    public void DisableUserPasswordsCache() {
+        this.userPasswordsCache = null;
+    }
+
+    /**
+     * Sets a cache shared with other Enzoic instances, e.g. on other nodes, as a second level behind each enabled
+     * in-process cache.  On a miss the in-process caches look in the shared cache before calling the API, and every
+     * response they cache is also written to the shared cache, so a fleet of nodes warms one cache between them.
+     * Shared cache failures are treated as misses.  The shared cache is only used by the caches which are enabled.
+     * <pre>
+     * enzoic.EnableAccountsCache(100000, TimeUnit.MINUTES.toMillis(10));
+     * enzoic.SetSharedCache(new MappedFileSharedCache(new File("/dev/shm/enzoic.cache"), 100000, 4096));
+     * </pre>
+     *
+     * @param sharedCache The shared cache, or null to stop using one.
+     */
+    public void SetSharedCache(final SharedCache sharedCache) {
+        this.sharedCache = sharedCache;
+        SetSharedCache(accountsCache, sharedCache);
+        SetSharedCache(exposureDetailsCache, sharedCache);
+        SetSharedCache(userPasswordsCache, sharedCache);
+    }
+
+    /**
+     * Gets the cache shared with other Enzoic instances.
+     *
+     * @return The shared cache, or null if none is set.
+     */
+    public SharedCache GetSharedCache() {
+        return this.sharedCache;
+    }
+
+    void SetAccountsCache(final ResponseCache<AccountsResponse> cache) {
+        SetSharedCache(cache, sharedCache);
+        this.accountsCache = cache;
+    }
+
+    void SetExposureDetailsCache(final ResponseCache<ExposureDetails> cache) {
+        SetSharedCache(cache, sharedCache);
+        this.exposureDetailsCache = cache;
+    }
+
+    void SetUserPasswordsCache(final ResponseCache<UserPasswords> cache) {
+        SetSharedCache(cache, sharedCache);
+        this.userPasswordsCache = cache;
+    }
+
+    private static void SetSharedCache(final ResponseCache<?> cache, final SharedCache sharedCache) {
+        if (cache != null) {
+            cache.setSharedCache(sharedCache);
+        }
+    }
+
     /**
      * Calls the Enzoic CheckCredentials API in a secure fashion to check whether the provided username and password
      * are known to be compromised.
@@ -139,6 +776,87 @@ public class Enzoic {
     public boolean CheckCredentialsEx(final String username, final String password, final Date lastCheckDate,
                                       final PasswordType excludeHashTypes[])
             throws IOException, RuntimeException {
+        return CheckCredentialsWithDiagnostics(username, password, lastCheckDate, excludeHashTypes).isCompromised();
+    }
+
+    /**
+     * Performs the same check as CheckCredentialsEx, but returns a CheckCredentialsResult describing how the result
+     * was reached: whether the account was found or served from the cache, which password hash specifications were
+     * calculated or skipped and why, per-specification calculation times, network times and the number of candidate
+     * hashes compared.  This is intended for tuning excludeHashTypes and hashing budgets against real traffic.
+     *
+     * @param username         the username to check
+     * @param password         the password to check
+     * @param lastCheckDate    The timestamp for the last check you performed for this user - see CheckCredentialsEx.
+     *                         Can be set to null.
+     * @param excludeHashTypes An array of PasswordTypes to ignore when calculating hashes - see CheckCredentialsEx.
+     *                         Can be set to null.
+     * @return CheckCredentialsResult - call isCompromised() for the same value CheckCredentialsEx would return
+     * @throws IOException      Could not communicate with Enzoic server.
+     * @throws RuntimeException Runtime errors indicated by message
+     * @see <a href="https://www.enzoic.com/docs/credentials-api">https://www.enzoic.com/docs/credentials-api</a>
+     */
+    public CheckCredentialsResult CheckCredentialsWithDiagnostics(final String username, final String password,
+                                                                  final Date lastCheckDate,
+                                                                  final PasswordType excludeHashTypes[])
+            throws IOException, RuntimeException {
+        return CheckCredentialsWithDiagnostics(username, password, lastCheckDate, excludeHashTypes, null);
+    }
+
+    /**
+     * Performs the same check as CheckCredentialsWithDiagnostics within a total time budget, for callers with a hard
+     * latency target such as a login SLA.  The budget covers the Accounts API request, hash calculation and the
+     * Credentials API request together: each request's timeout is reduced to whatever remains of the budget (or the
+     * request timeout, if that is shorter), and hash calculation stops once less than a quarter of the budget remains,
+     * leaving that for the Credentials API request.
+     * <p>
+     * If the budget runs out, the result's outcome is UNKNOWN rather than an exception being thrown.  Hashes which were
+     * calculated before hash calculation stopped are still checked, so a match is reported as COMPROMISED.
+     *
+     * @param username         the username to check
+     * @param password         the password to check
+     * @param lastCheckDate    The timestamp for the last check you performed for this user - see CheckCredentialsEx.
+     *                         Can be set to null.
+     * @param excludeHashTypes An array of PasswordTypes to ignore when calculating hashes - see CheckCredentialsEx.
+     *                         Can be set to null.
+     * @param timeBudgetInMs   The total time in milliseconds the check may take.
+     * @return CheckCredentialsResult
+     * @throws IOException      Could not communicate with Enzoic server.
+     * @throws RuntimeException Runtime errors indicated by message
+     * @see <a href="https://www.enzoic.com/docs/credentials-api">https://www.enzoic.com/docs/credentials-api</a>
+     */
+    public CheckCredentialsResult CheckCredentialsWithDiagnostics(final String username, final String password,
+                                                                  final Date lastCheckDate,
+                                                                  final PasswordType excludeHashTypes[],
+                                                                  final long timeBudgetInMs)
+            throws IOException, RuntimeException {
+        return CheckCredentialsWithDiagnostics(username, password, lastCheckDate, excludeHashTypes,
+                new Deadline(timeBudgetInMs));
+    }
+
+    private CheckCredentialsResult CheckCredentialsWithDiagnostics(final String username, final String password,
+                                                                   final Date lastCheckDate,
+                                                                   final PasswordType excludeHashTypes[],
+                                                                   final Deadline deadline)
+            throws IOException {
+
+        CheckCredentialsResult result = new CheckCredentialsResult();
+        long callStart = System.nanoTime();
+        try {
+            result.setOutcome(CheckCredentialsCore(username, password, lastCheckDate, excludeHashTypes, deadline,
+                    result));
+        } finally {
+            result.setTotalNanos(System.nanoTime() - callStart);
+        }
+        return result;
+    }
+
+    private CheckCredentialsResult.Outcome CheckCredentialsCore(final String username, final String password,
+                                                                final Date lastCheckDate,
+                                                                final PasswordType excludeHashTypes[],
+                                                                final Deadline deadline,
+                                                                final CheckCredentialsResult result)
+            throws IOException {
 
         PasswordType[] excludedHashTypes = excludeHashTypes;
         if (excludedHashTypes == null) {
@@ -147,77 +865,143 @@ public class Enzoic {
 
         Date lastCheckedDate = lastCheckDate == null ? new Date(0) : lastCheckDate;
 
-        String response = MakeRestCall(
-                apiBaseURL + ACCOUNTS_API_PATH + "?username=" +
-                        URLEncoder.encode(Hashing.sha256(username.toLowerCase()), "UTF-8"),
-                "GET", null);
+        long phaseStart = System.nanoTime();
+        AccountsResponse accountsResponse;
+        try {
+            accountsResponse = GetAccountsResponse(username, deadline, result);
+        } catch (CircuitBreakerOpenException ex) {
+            if (ex.isFailOpen()) {
+                return CheckCredentialsResult.Outcome.CIRCUIT_BREAKER_OPEN;
+            }
+            throw ex;
+        } catch (SocketTimeoutException ex) {
+            if (deadline != null && deadline.isExpired()) {
+                result.setAccountsLookupNanos(System.nanoTime() - phaseStart);
+                return CheckCredentialsResult.Outcome.UNKNOWN;
+            }
+            throw ex;
+        }
+        long phaseNanos = System.nanoTime() - phaseStart;
+        metrics.recordPhase(EnzoicMetrics.Phase.ACCOUNTS_LOOKUP, null, phaseNanos);
+        result.setAccountsLookupNanos(phaseNanos);
 
-        if (response.equals("404")) {
+        if (accountsResponse == null) {
             // this is all we needed to check for this - email wasn't even in the DB
-            return false;
+            return CheckCredentialsResult.Outcome.ACCOUNT_NOT_FOUND;
         }
 
-        // deserialize response
-        AccountsResponse accountsResponse = new Gson().fromJson(response, AccountsResponse.class);
-
         // see if the lastCheckDate was later than the lastBreachDate - if so bail out
         if (lastCheckedDate.after(accountsResponse.getLastBreachDate())) {
-            return false;
+            return CheckCredentialsResult.Outcome.NO_NEW_BREACHES;
         }
 
         // loop through the hashes required
-        ArrayList<PasswordHashSpecification> hashesRequired = new ArrayList<PasswordHashSpecification>();
-        hashesRequired.addAll(Arrays.asList(accountsResponse.getPasswordHashesRequired()));
+        PasswordHashSpecification[] hashesRequired = accountsResponse.getPasswordHashesRequired();
 
-        //String queryString = "";
         int bcryptCount = 0;
+        // with a deadline, stop calculating hashes while there's still time for the credentials request
+        long hashingReserveNanos = deadline == null ? 0 : deadline.getBudgetNanos() / 4;
+        boolean partial = false;
 
         ArrayList<String> credentialHashes = new ArrayList<String>();
         StringBuilder queryString = new StringBuilder();
-        for (int i = 0; i < Math.min(50, hashesRequired.size()); i++) {
-            PasswordHashSpecification hashSpec = hashesRequired.get(i);
+        for (int i = 0; i < hashesRequired.length; i++) {
+            PasswordHashSpecification hashSpec = hashesRequired[i];
+
+            if (i >= 50) {
+                result.addHashSpecification(hashSpec.getHashType(),
+                        CheckCredentialsResult.HashStatus.SPECIFICATION_LIMIT, 0);
+                continue;
+            }
 
             if (Arrays.asList(excludedHashTypes).contains(hashSpec.getHashType())) {
                 // skip this one
+                result.addHashSpecification(hashSpec.getHashType(), CheckCredentialsResult.HashStatus.EXCLUDED, 0);
                 continue;
             }
 
             // bcrypt gets far too expensive for good response time if there are many of them to calculate.
             // some mostly garbage accounts have accumulated a number of them in our DB and if we happen to hit one it
-            // kills performance, so short circuit out after at most 2 BCrypt hashes
-            if (hashSpec.getHashType() != PasswordType.BCrypt || bcryptCount <= 2) {
-                if (hashSpec.getHashType() == PasswordType.BCrypt) bcryptCount++;
-
-                if (hashSpec.getHashType() != null) {
-                    String credentialHash = CalcCredentialHash(username, password, accountsResponse.getSalt(), hashSpec);
-
-                    if (credentialHash != null) {
-                        credentialHashes.add(credentialHash);
-                        if (queryString.length() == 0)
-                            queryString.append("?partialHashes=").append(URLEncoder.encode(credentialHash.substring(0, 10), "UTF-8"));
-                        else
-                            queryString.append("&partialHashes=").append(URLEncoder.encode(credentialHash.substring(0, 10), "UTF-8"));
-                    }
-                }
+            // kills performance, so short circuit out after at most maxBCryptHashes BCrypt hashes
+            if (hashSpec.getHashType() == PasswordType.BCrypt && bcryptCount >= maxBCryptHashes) {
+                result.addHashSpecification(hashSpec.getHashType(), CheckCredentialsResult.HashStatus.BCRYPT_LIMIT, 0);
+                continue;
             }
-        }
+            if (hashSpec.getHashType() == PasswordType.BCrypt) bcryptCount++;
 
-        if (queryString.length() > 0) {
-            String credsResponse = MakeRestCall(
-                    apiBaseURL + CREDENTIALS_API_PATH + queryString, "GET", null);
+            if (hashSpec.getHashType() == null) {
+                result.addHashSpecification(null, CheckCredentialsResult.HashStatus.UNSUPPORTED, 0);
+                continue;
+            }
 
-            if (!credsResponse.equals("404")) {
-                CheckCredentialsPartialHashesResponse parsedResponse =
-                        new Gson().fromJson(credsResponse, CheckCredentialsPartialHashesResponse.class);
+            if (deadline != null && deadline.getRemainingNanos() < hashingReserveNanos) {
+                result.addHashSpecification(hashSpec.getHashType(),
+                        CheckCredentialsResult.HashStatus.DEADLINE_EXCEEDED, 0);
+                partial = true;
+                continue;
+            }
 
-                for (int i = 0; i < parsedResponse.candidateHashes().length; i++) {
-                    if (credentialHashes.contains(parsedResponse.candidateHashes()[i])) {
-                        return true;
-                    }
+            phaseStart = System.nanoTime();
+            String credentialHash;
+            try {
+                credentialHash = CalcCredentialHash(username, password, accountsResponse.getSalt(), hashSpec);
+            } catch (CancellationException ex) {
+                InterruptedIOException cancelled = new InterruptedIOException("Interrupted calculating credential hashes");
+                cancelled.initCause(ex);
+                throw cancelled;
+            }
+            phaseNanos = System.nanoTime() - phaseStart;
+
+            if (credentialHash != null) {
+                result.addHashSpecification(hashSpec.getHashType(), CheckCredentialsResult.HashStatus.COMPUTED,
+                        phaseNanos);
+                credentialHashes.add(credentialHash);
+                if (queryString.length() == 0)
+                    queryString.append("?partialHashes=").append(URLEncoder.encode(credentialHash.substring(0, 10), "UTF-8"));
+                else
+                    queryString.append("&partialHashes=").append(URLEncoder.encode(credentialHash.substring(0, 10), "UTF-8"));
+            } else {
+                result.addHashSpecification(hashSpec.getHashType(), CheckCredentialsResult.HashStatus.FAILED,
+                        phaseNanos);
+            }
+        }
+
+        if (queryString.length() == 0) {
+            return partial ? CheckCredentialsResult.Outcome.UNKNOWN : CheckCredentialsResult.Outcome.NO_HASHES_COMPUTED;
+        }
+
+        phaseStart = System.nanoTime();
+        String credsResponse;
+        try {
+            credsResponse = MakeRestCall(ApiEndpoint.CREDENTIALS, queryString.toString(), "GET", null, deadline);
+        } catch (CircuitBreakerOpenException ex) {
+            if (ex.isFailOpen()) {
+                return CheckCredentialsResult.Outcome.CIRCUIT_BREAKER_OPEN;
+            }
+            throw ex;
+        } catch (SocketTimeoutException ex) {
+            if (deadline != null && deadline.isExpired()) {
+                result.setCredentialsLookupNanos(System.nanoTime() - phaseStart);
+                return CheckCredentialsResult.Outcome.UNKNOWN;
+            }
+            throw ex;
+        }
+        phaseNanos = System.nanoTime() - phaseStart;
+        metrics.recordPhase(EnzoicMetrics.Phase.CREDENTIALS_LOOKUP, null, phaseNanos);
+        result.setCredentialsLookupNanos(phaseNanos);
+
+        if (!credsResponse.equals("404")) {
+            CheckCredentialsPartialHashesResponse parsedResponse =
+                    FromJson(credsResponse, CheckCredentialsPartialHashesResponse.class);
+
+            for (int i = 0; i < parsedResponse.candidateHashes().length; i++) {
+                result.setCandidatesCompared(i + 1);
+                if (credentialHashes.contains(parsedResponse.candidateHashes()[i])) {
+                    return CheckCredentialsResult.Outcome.COMPROMISED;
                 }
             }
         }
-        return false;
+        return partial ? CheckCredentialsResult.Outcome.UNKNOWN : CheckCredentialsResult.Outcome.NOT_COMPROMISED;
     }
 
     /**
@@ -252,8 +1036,7 @@ public class Enzoic {
         String sha1 = Hashing.sha1(password);
         String sha256 = Hashing.sha256(password);
 
-        String response = MakeRestCall(
-                apiBaseURL + PASSWORDS_API_PATH +
+        String response = MakeRestCall(ApiEndpoint.PASSWORDS,
                         "?partial_md5=" + md5.substring(0, 10) +
                         "&partial_sha1=" + sha1.substring(0, 10) +
                         "&partial_sha256=" + sha256.substring(0, 10),
@@ -261,7 +1044,7 @@ public class Enzoic {
 
         if (!response.equals("404")) {
             CheckPasswordPartialHashesResponse parsedResponse =
-                    new Gson().fromJson(response, CheckPasswordPartialHashesResponse.class);
+                    FromJson(response, CheckPasswordPartialHashesResponse.class);
 
             for (int i = 0; i < parsedResponse.candidates().length; i++) {
                 if (parsedResponse.candidates()[i].md5().equals(md5) ||
@@ -289,7 +1072,7 @@ public class Enzoic {
             throws IOException {
         ExposuresResponse result;
 
-        String response = MakeRestCall(apiBaseURL + EXPOSURES_API_PATH + "?username=" + URLEncoder.encode(Hashing.sha256(username.toLowerCase()), "UTF-8"),
+        String response = MakeRestCall(ApiEndpoint.EXPOSURES, "?username=" + URLEncoder.encode(Hashing.sha256(username.toLowerCase()), "UTF-8"),
                 "GET", null);
 
         if (response.equals("404")) {
@@ -297,7 +1080,7 @@ public class Enzoic {
             result = new ExposuresResponse();
         } else {
             // deserialize response
-            result = new Gson().fromJson(response, ExposuresResponse.class);
+            result = FromJson(response, ExposuresResponse.class);
         }
 
         return result;
@@ -317,17 +1100,89 @@ public class Enzoic {
             throws IOException {
         ExposureDetails result = null;
 
-        String response = MakeRestCall(apiBaseURL + EXPOSURES_API_PATH + "?id=" + URLEncoder.encode(exposureID, "UTF-8"),
+        ResponseCache<ExposureDetails> cache = this.exposureDetailsCache;
+        byte[] cacheKey = null;
+        if (cache != null) {
+            cacheKey = Hashing.sha256Binary(exposureID);
+            result = cache.get(cacheKey);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        String response = MakeRestCall(ApiEndpoint.EXPOSURES, "?id=" + URLEncoder.encode(exposureID, "UTF-8"),
                 "GET", null);
 
         if (!response.equals("404")) {
             // deserialize response
-            result = new Gson().fromJson(response, ExposureDetails.class);
+            result = FromJson(response, ExposureDetails.class);
+
+            if (cache != null) {
+                cache.put(cacheKey, result);
+            }
         }
 
         return result;
     }
 
+    /**
+     * Returns the details of every credentials Exposure found for each of a set of users.  This is equivalent to calling
+     * GetExposuresForUser for each user and then GetExposureDetails for each of their Exposure IDs, but is far more
+     * efficient for large batches: the users' Exposures are looked up in parallel, and since most Exposures are shared
+     * by many users, the details of each unique Exposure are only retrieved once per batch (or once per TTL if
+     * EnableExposureDetailsCache has been called).
+     * <p>
+     * The number of requests made in parallel is limited by SetMaxConcurrentRequests.
+     *
+     * @param usernames The usernames or email addresses of the users to check
+     * @return A map from each username to the details of the Exposures found for that user.  Users with no Exposures
+     * map to an empty array.
+     * @throws IOException Could not communicate with Enzoic server.
+     * @see <a href="https://www.enzoic.com/docs/exposures-api">https://www.enzoic.com/docs/exposures-api</a>
+     */
+    public Map<String, ExposureDetails[]> GetExposureDetailsForUsers(final Collection<String> usernames)
+            throws IOException {
+        Map<String, Future<ExposuresResponse>> exposuresByUser = new LinkedHashMap<String, Future<ExposuresResponse>>();
+        ConcurrentMap<String, Future<ExposureDetails>> detailsByID = new ConcurrentHashMap<String, Future<ExposureDetails>>();
+        RequestPriority priority = PriorityContext.current(RequestPriority.BULK);
+
+        try {
+            for (final String username : usernames) {
+                if (!exposuresByUser.containsKey(username)) {
+                    exposuresByUser.put(username, requestScheduler.submit(requestTenant, priority, new Callable<ExposuresResponse>() {
+                        @Override
+                        public ExposuresResponse call() throws IOException {
+                            return GetExposuresForUser(username);
+                        }
+                    }));
+                }
+            }
+
+            // queue up a details lookup for each Exposure ID the first time we see it
+            Map<String, String[]> exposureIDsByUser = new LinkedHashMap<String, String[]>();
+            for (Map.Entry<String, Future<ExposuresResponse>> entry : exposuresByUser.entrySet()) {
+                String[] exposureIDs = AwaitResult(entry.getValue()).getExposures();
+                exposureIDsByUser.put(entry.getKey(), exposureIDs);
+
+                for (String exposureID : exposureIDs) {
+                    FetchExposureDetailsOnce(exposureID, detailsByID);
+                }
+            }
+
+            // join the details back to each user
+            Map<String, ExposureDetails[]> result = new LinkedHashMap<String, ExposureDetails[]>();
+            for (Map.Entry<String, String[]> entry : exposureIDsByUser.entrySet()) {
+                result.put(entry.getKey(), AwaitExposureDetails(entry.getValue(), detailsByID));
+            }
+
+            return result;
+        } finally {
+            // no-ops on success - on failure, don't leave the rest of the batch running
+            CancelAll(exposuresByUser.values());
+            CancelAll(detailsByID.values());
+        }
+    }
+
     /**
      * Returns a list of passwords that Enzoic has found for a specific user.  This call must be enabled for your account or you will
      * receive a rejection when attempting to call it.*
@@ -336,20 +1191,129 @@ public class Enzoic {
      * @throws IOException Could not communicate with Enzoic server.
      * @see <a href="https://www.enzoic.com/docs-raw-passwords-api">https://www.enzoic.com/docs-raw-passwords-api</a>
      */
-    public UserPasswords GetUserPasswords(final String username)
+    public UserPasswords GetUserPasswords(final String username)
+            throws IOException {
+        UserPasswords result = null;
+        byte[] usernameHash = Hashing.sha256Binary(username.toLowerCase());
+
+        ResponseCache<UserPasswords> cache = this.userPasswordsCache;
+        if (cache != null) {
+            result = cache.get(usernameHash);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        String response = MakeRestCall(ApiEndpoint.ACCOUNTS,
+                "?username=" + URLEncoder.encode(Hashing.bytesToHex(usernameHash), "UTF-8") + "&includePasswords=1",
+        "GET", null);
+
+        if (!response.equals("404")) {
+            // deserialize response
+            result = FromJson(response, UserPasswords.class);
+
+            if (cache != null) {
+                cache.put(usernameHash, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether a password is one of the passwords Enzoic has found for a specific user, e.g. to prevent a user
+     * from changing their password to one that has already been exposed.  The user's passwords are retrieved using
+     * GetUserPasswords (and so can be cached using EnableUserPasswordsCache) and the comparison is then made locally -
+     * see CheckPasswordAgainstUserPasswords.
+     * This call must be enabled for your account or you will receive a rejection when attempting to call it.
+     *
+     * @param username The username to check passwords for
+     * @param password The password to check
+     * @return If true, the password is one of the user's exposed passwords
+     * @throws IOException Could not communicate with Enzoic server.
+     * @see <a href="https://www.enzoic.com/docs-raw-passwords-api">https://www.enzoic.com/docs-raw-passwords-api</a>
+     */
+    public boolean CheckPasswordReuse(final String username, final String password)
             throws IOException {
-        UserPasswords result = null;
+        UserPasswords userPasswords = GetUserPasswords(username);
+        try {
+            return userPasswords != null && CheckPasswordAgainstUserPasswords(userPasswords, password);
+        } catch (CancellationException ex) {
+            InterruptedIOException cancelled = new InterruptedIOException("Interrupted calculating password hashes");
+            cancelled.initCause(ex);
+            throw cancelled;
+        }
+    }
 
-        String response = MakeRestCall(apiBaseURL + ACCOUNTS_API_PATH +
-                "?username=" + URLEncoder.encode(Hashing.sha256(username.toLowerCase()), "UTF-8") + "&includePasswords=1",
-        "GET", null);
+    /**
+     * Checks locally whether a password matches any of the passwords in a GetUserPasswords result, without making any
+     * API calls.  Plaintext entries are compared directly.  For hashed entries, the password is hashed using the
+     * entry's hash type and salt and compared to the hash.  Hashes are calculated in parallel and all comparisons are
+     * made in constant time.
+     *
+     * @param userPasswords The result of a GetUserPasswords call
+     * @param password      The password to check
+     * @return If true, the password matches one of the user's passwords
+     * @throws CancellationException The calling thread was interrupted while the hashes were being calculated.  The
+     *                               thread's interrupt status remains set.
+     */
+    public boolean CheckPasswordAgainstUserPasswords(final UserPasswords userPasswords, final String password) {
+        if (userPasswords.getPasswords() == null) {
+            return false;
+        }
 
-        if (!response.equals("404")) {
-            // deserialize response
-            result = new Gson().fromJson(response, UserPasswords.class);
+        ArrayList<UserPasswordDetails> toHash = new ArrayList<UserPasswordDetails>();
+        for (UserPasswordDetails userPassword : userPasswords.getPasswords()) {
+            if (userPassword.getHashType() == null || userPassword.getPassword() == null) {
+                continue;
+            }
+
+            if (userPassword.getHashType() == PasswordType.Plaintext) {
+                if (ConstantTimeEquals(password, userPassword.getPassword())) {
+                    return true;
+                }
+            } else {
+                toHash.add(userPassword);
+            }
         }
 
-        return result;
+        if (toHash.size() == 1) {
+            // not worth handing off a single hash
+            return PasswordMatchesHash(password, toHash.get(0));
+        }
+
+        ArrayList<Future<Boolean>> checks = new ArrayList<Future<Boolean>>(toHash.size());
+        RequestPriority priority = PriorityContext.current(RequestPriority.NORMAL);
+        try {
+            for (final UserPasswordDetails userPassword : toHash) {
+                checks.add(hashScheduler.submit(hashTenant, priority, new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return PasswordMatchesHash(password, userPassword);
+                    }
+                }));
+            }
+
+            for (Future<Boolean> check : checks) {
+                try {
+                    if (check.get()) {
+                        return true;
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted waiting for password hashes");
+                } catch (ExecutionException ex) {
+                    // PasswordMatchesHash only throws if it is interrupted
+                    if (ex.getCause() instanceof CancellationException) {
+                        throw (CancellationException) ex.getCause();
+                    }
+                    throw new RuntimeException(ex.getCause());
+                }
+            }
+            return false;
+        } finally {
+            CancelAll(checks);
+        }
     }
 
 
@@ -373,28 +1337,217 @@ public class Enzoic {
 
         String fullUsernameHash = Hashing.sha256(username.toLowerCase());
 
-        String response = MakeRestCall(apiBaseURL + ACCOUNTS_API_PATH +
-                        "?partialUsernameHash=" + URLEncoder.encode(fullUsernameHash.substring(0, 8), "UTF-8") + "&includePasswords=1",
+        // find the matching candidate, if any
+        for (UserPasswordsByPartialHash candidate : GetUserPasswordsCandidates(fullUsernameHash.substring(0, 8))) {
+            if (candidate.getUsernameHash().equals(fullUsernameHash)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the passwords that Enzoic has found for each of a set of users.  This is equivalent to calling
+     * GetUserPasswords for each user, but the requests are made in parallel, limited by SetMaxConcurrentRequests.
+     * This call must be enabled for your account or you will receive a rejection when attempting to call it.
+     * <p>
+     * When usePartialHashMatching is true, users are grouped by the first 8 characters of the SHA-256 hash of their
+     * username.  Each group is only requested once and the candidates returned are matched to every user in the group,
+     * so large batches make far fewer calls to this slower variant of the API.
+     *
+     * @param usernames              The usernames to return passwords for
+     * @param usePartialHashMatching If true, this call will pass the first 8 characters of the SHA-256 hash of each
+     *                               username, rather than the full hash.
+     * @return A map from each username to its passwords.  Usernames which could not be found map to null.
+     * @throws IOException Could not communicate with Enzoic server.
+     * @see <a href="https://www.enzoic.com/docs-raw-passwords-api">https://www.enzoic.com/docs-raw-passwords-api</a>
+     */
+    public Map<String, UserPasswords> GetUserPasswordsForUsers(final Collection<String> usernames,
+                                                               final boolean usePartialHashMatching)
+            throws IOException {
+        Map<String, UserPasswords> result = new LinkedHashMap<String, UserPasswords>();
+        RequestPriority priority = PriorityContext.current(RequestPriority.BULK);
+
+        if (!usePartialHashMatching) {
+            Map<String, Future<UserPasswords>> fetches = new LinkedHashMap<String, Future<UserPasswords>>();
+            try {
+                for (final String username : usernames) {
+                    if (!fetches.containsKey(username)) {
+                        fetches.put(username, requestScheduler.submit(requestTenant, priority, new Callable<UserPasswords>() {
+                            @Override
+                            public UserPasswords call() throws IOException {
+                                return GetUserPasswords(username);
+                            }
+                        }));
+                    }
+                }
+
+                for (Map.Entry<String, Future<UserPasswords>> fetch : fetches.entrySet()) {
+                    result.put(fetch.getKey(), AwaitResult(fetch.getValue()));
+                }
+                return result;
+            } finally {
+                CancelAll(fetches.values());
+            }
+        }
+
+        // group the users into buckets by partial hash - different usernames can also share a full hash
+        // since usernames are lower-cased before hashing
+        Map<String, Map<String, List<String>>> usernamesByBucket = new LinkedHashMap<String, Map<String, List<String>>>();
+        for (String username : usernames) {
+            String fullUsernameHash = Hashing.sha256(username.toLowerCase());
+            String bucket = fullUsernameHash.substring(0, 8);
+
+            Map<String, List<String>> usernamesByHash = usernamesByBucket.get(bucket);
+            if (usernamesByHash == null) {
+                usernamesByHash = new HashMap<String, List<String>>();
+                usernamesByBucket.put(bucket, usernamesByHash);
+            }
+            List<String> matchingUsernames = usernamesByHash.get(fullUsernameHash);
+            if (matchingUsernames == null) {
+                matchingUsernames = new ArrayList<String>(1);
+                usernamesByHash.put(fullUsernameHash, matchingUsernames);
+            }
+            matchingUsernames.add(username);
+
+            // preserve the input order in the result
+            result.put(username, null);
+        }
+
+        Map<String, Future<UserPasswordsByPartialHash[]>> fetches =
+                new LinkedHashMap<String, Future<UserPasswordsByPartialHash[]>>();
+        try {
+            for (final String bucket : usernamesByBucket.keySet()) {
+                fetches.put(bucket, requestScheduler.submit(requestTenant, priority, new Callable<UserPasswordsByPartialHash[]>() {
+                    @Override
+                    public UserPasswordsByPartialHash[] call() throws IOException {
+                        return GetUserPasswordsCandidates(bucket);
+                    }
+                }));
+            }
+
+            // route each candidate to every user it matches
+            for (Map.Entry<String, Future<UserPasswordsByPartialHash[]>> fetch : fetches.entrySet()) {
+                Map<String, List<String>> usernamesByHash = usernamesByBucket.get(fetch.getKey());
+                for (UserPasswordsByPartialHash candidate : AwaitResult(fetch.getValue())) {
+                    List<String> matchingUsernames = usernamesByHash.get(candidate.getUsernameHash());
+                    if (matchingUsernames != null) {
+                        for (String username : matchingUsernames) {
+                            result.put(username, candidate);
+                        }
+                    }
+                }
+            }
+            return result;
+        } finally {
+            CancelAll(fetches.values());
+        }
+    }
+
+    private UserPasswordsByPartialHash[] GetUserPasswordsCandidates(final String partialUsernameHash)
+            throws IOException {
+        String response = MakeRestCall(ApiEndpoint.ACCOUNTS,
+                        "?partialUsernameHash=" + URLEncoder.encode(partialUsernameHash, "UTF-8") + "&includePasswords=1",
                 "GET", null);
 
         if (!response.equals("404")) {
             // deserialize response
-            UserPasswordsByPartialHashCandidates candidates = new Gson().fromJson(response, UserPasswordsByPartialHashCandidates.class);
+            UserPasswordsByPartialHashCandidates candidates = FromJson(response, UserPasswordsByPartialHashCandidates.class);
+            if (candidates.getCandidates() != null) {
+                return candidates.getCandidates();
+            }
+        }
+
+        return new UserPasswordsByPartialHash[0];
+    }
+
+    /**
+     * Returns a list of passwords that Enzoic has found for a specific user, including full exposure details.  This is
+     * the replacement for the deprecated GetUserPasswordsWithExposureDetails: it calls GetUserPasswords and then looks
+     * up the details of each Exposure client-side, in parallel, using GetExposureDetails.  Each unique Exposure is only
+     * looked up once per call, and calling EnableExposureDetailsCache avoids repeat lookups across calls.
+     * This call must be enabled for your account or you will receive a rejection when attempting to call it.
+     *
+     * @param username               The username to return passwords for
+     * @param lazyExposureDetails    If true, the details for each password's Exposures are not looked up until
+     *                               getExposures() is first called on it.  This saves requests for callers which only
+     *                               read some of the returned passwords.  In this case getExposures() throws an
+     *                               UncheckedIOException if the lookup fails, and retries it when next called.
+     * @return The response body contains a list of the user's passwords or null if the username could not be found.
+     * @throws IOException Could not communicate with Enzoic server.
+     * @see <a href="https://www.enzoic.com/docs-raw-passwords-api">https://www.enzoic.com/docs-raw-passwords-api</a>
+     */
+    public UserPasswordsWithExposureDetails GetUserPasswordsWithExposureDetailsEx(final String username,
+                                                                                  final boolean lazyExposureDetails)
+            throws IOException {
+        UserPasswords userPasswords = GetUserPasswords(username);
+        if (userPasswords == null) {
+            return null;
+        }
+
+        UserPasswordDetails[] passwords = userPasswords.getPasswords() == null ? new UserPasswordDetails[0] :
+                userPasswords.getPasswords();
+        UserPasswordDetailsWithExposureDetails[] result = new UserPasswordDetailsWithExposureDetails[passwords.length];
+
+        // passwords for the same user frequently share Exposures, so share lookups between them
+        final ConcurrentMap<String, Future<ExposureDetails>> detailsByID =
+                new ConcurrentHashMap<String, Future<ExposureDetails>>();
+
+        if (lazyExposureDetails) {
+            LazyUserPasswordDetailsWithExposureDetails.Resolver resolver =
+                    new LazyUserPasswordDetailsWithExposureDetails.Resolver() {
+                        @Override
+                        public ExposureDetails[] resolve(final String[] exposureIDs) throws IOException {
+                            for (String exposureID : exposureIDs) {
+                                FetchExposureDetailsOnce(exposureID, detailsByID);
+                            }
+                            try {
+                                return AwaitExposureDetails(exposureIDs, detailsByID);
+                            } catch (IOException ex) {
+                                // forget the finished lookups, so that calling getExposures again retries the failed ones
+                                for (String exposureID : exposureIDs) {
+                                    Future<ExposureDetails> fetch = detailsByID.get(exposureID);
+                                    if (fetch != null && fetch.isDone()) {
+                                        detailsByID.remove(exposureID, fetch);
+                                    }
+                                }
+                                throw ex;
+                            }
+                        }
+                    };
+
+            for (int i = 0; i < passwords.length; i++) {
+                result[i] = new LazyUserPasswordDetailsWithExposureDetails(passwords[i], resolver);
+            }
+        } else {
+            try {
+                for (UserPasswordDetails password : passwords) {
+                    if (password.getExposures() != null) {
+                        for (String exposureID : password.getExposures()) {
+                            FetchExposureDetailsOnce(exposureID, detailsByID);
+                        }
+                    }
+                }
 
-            // find the matching candidate, if any
-            for (UserPasswordsByPartialHash candidate : candidates.getCandidates()) {
-                if (candidate.getUsernameHash().equals(fullUsernameHash)) {
-                    return candidate;
+                for (int i = 0; i < passwords.length; i++) {
+                    String[] exposureIDs = passwords[i].getExposures() == null ? new String[0] : passwords[i].getExposures();
+                    result[i] = new UserPasswordDetailsWithExposureDetails(passwords[i].getHashType(),
+                            passwords[i].getPassword(), passwords[i].getSalt(),
+                            AwaitExposureDetails(exposureIDs, detailsByID));
                 }
+            } finally {
+                CancelAll(detailsByID.values());
             }
         }
 
-        return null;
+        return new UserPasswordsWithExposureDetails(userPasswords.getLastBreachDate(), result);
     }
 
     /**
      * NOTE: THIS CALL IS DEPRECATED DUE TO SEVERE PERFORMANCE ISSUES AND WILL BE REMOVED IN A FUTURE RELEASE.<br>
-     * INSTEAD, USE GetUserPasswords AND LOOKUP EXPOSURE DETAILS AS NECESSARY USING GetExposureDetails.<br><br>
+     * INSTEAD, USE GetUserPasswordsWithExposureDetailsEx, OR GetUserPasswords AND LOOKUP EXPOSURE DETAILS AS NECESSARY
+     * USING GetExposureDetails.<br><br>
      * Returns a list of passwords that Enzoic has found for a specific user, including full exposure details inline.
      * This call must be enabled for your account or you will receive a rejection when attempting to call it.
      * @param username The username to return passwords for
@@ -407,50 +1560,438 @@ public class Enzoic {
             throws IOException {
         UserPasswordsWithExposureDetails result = null;
 
-        String response = MakeRestCall(apiBaseURL + ACCOUNTS_API_PATH +
+        String response = MakeRestCall(ApiEndpoint.ACCOUNTS,
                         "?username=" + URLEncoder.encode(Hashing.sha256(username.toLowerCase()), "UTF-8") + "&includePasswords=1&includeExposureDetails=1",
                 "GET", null);
 
         if (!response.equals("404")) {
             // deserialize response
-            result = new Gson().fromJson(response, UserPasswordsWithExposureDetails.class);
+            result = FromJson(response, UserPasswordsWithExposureDetails.class);
+        }
+
+        return result;
+    }
+
+    private AccountsResponse GetAccountsResponse(final String username, final Deadline deadline,
+                                                 final CheckCredentialsResult diagnostics)
+            throws IOException {
+        byte[] usernameHash = Hashing.sha256Binary(username.toLowerCase());
+
+        ResponseCache<AccountsResponse> cache = this.accountsCache;
+        if (cache != null) {
+            AccountsResponse cached = cache.get(usernameHash);
+            if (cached != null) {
+                diagnostics.setAccountsCacheHit(true);
+                return cached;
+            }
+        }
+
+        String response = MakeRestCall(ApiEndpoint.ACCOUNTS,
+                "?username=" +
+                        URLEncoder.encode(Hashing.bytesToHex(usernameHash), "UTF-8"),
+                "GET", null, deadline);
+
+        if (response.equals("404")) {
+            return null;
+        }
+
+        // deserialize response
+        AccountsResponse result = FromJson(response, AccountsResponse.class);
+
+        if (cache != null) {
+            cache.put(usernameHash, result);
         }
 
         return result;
     }
 
-    private String MakeRestCall(final String restUrl, final String method, final String body)
+    private String MakeRestCall(final ApiEndpoint endpoint, final String queryString, final String method,
+                                final String body)
+            throws IOException, RuntimeException {
+        try {
+            return MakeRestCall(endpoint, queryString, method, body, null);
+        } catch (CircuitBreakerOpenException ex) {
+            if (ex.isFailOpen()) {
+                return "404";
+            }
+            throw ex;
+        }
+    }
+
+    // package-private so that tests can pass a Deadline.  Unlike the overload above, this throws a
+    // CircuitBreakerOpenException for the FAIL_OPEN fallback, so that credentials checks can report it
+    String MakeRestCall(final ApiEndpoint endpoint, final String queryString, final String method,
+                        final String body, final Deadline deadline)
             throws IOException, RuntimeException {
 
-        URL url = new URL(restUrl);
+        // identifies the request to the circuit breaker whichever base URL it is routed to
+        String restUrl = apiBaseURL + endpoint.getPath() + queryString;
+        // only GETs are idempotent, so nothing else is retried or hedged
+        boolean idempotent = "GET".equals(method);
+        RetryPolicy policy = idempotent ? this.retryPolicy : RetryPolicy.NONE;
+        CircuitBreaker[] breakers = this.circuitBreakers;
+        CircuitBreaker breaker = breakers == null ? null : breakers[endpoint.ordinal()];
+        EndpointRouter router = this.router;
+        int failovers = 0;
+
+        long delay;
+        for (int attempt = 1; ; attempt++) {
+            // checked before the breaker, as a half-open breaker only lets a few probes through
+            if (deadline != null && deadline.isExpired()) {
+                throw new SocketTimeoutException("Time budget exhausted before request was sent");
+            }
+            if (breaker != null && !breaker.allowRequest()) {
+                return breaker.fallback(restUrl);
+            }
 
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setConnectTimeout(this.requestTimeout);
-        conn.setReadTimeout(this.requestTimeout);
-        conn.setRequestMethod(method);
-        conn.setRequestProperty("Accept", "application/json");
-        conn.setRequestProperty("Authorization", authString);
+            EndpointRouter.Route route = router == null ? null : router.select();
+            String requestUrl = route == null ? restUrl : route.baseURL + endpoint.getPath() + queryString;
 
-        int responseStatus = conn.getResponseCode();
+            AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+            try {
+                RequestPriority priority = PriorityContext.current(RequestPriority.NORMAL);
+                TokenBucket rateLimiter = this.rateLimiter;
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(priority, deadline);
+                }
+                if (limiter != null) {
+                    limiter.acquire(priority, deadline);
+                }
+            } catch (IOException ex) {
+                if (breaker != null) {
+                    breaker.onFailure(null);
+                }
+                throw ex;
+            }
 
-        if (responseStatus == 200) {
-            return IOUtils.toString(conn.getInputStream(), conn.getContentEncoding());
-        } else if (responseStatus == 404) {
-            return "404";
-        } else {
-            throw new RuntimeException("API Call to " + restUrl + " failed. HTTP error code: " + conn.getResponseCode() + " Message: " + conn.getContent().toString());
+            // with a deadline, each attempt gets whatever is left of the budget
+            Integer configuredTimeout = this.requestTimeout;
+            int timeout = configuredTimeout == null ? 0 : configuredTimeout;
+            if (deadline != null) {
+                try {
+                    timeout = deadline.getRequestTimeout(timeout);
+                } catch (SocketTimeoutException ex) {
+                    // the deadline passed while waiting for the limits - give back the slot and probe without blame
+                    if (limiter != null) {
+                        limiter.onFailure(null);
+                    }
+                    if (breaker != null) {
+                        breaker.onFailure(null);
+                    }
+                    throw ex;
+                }
+            }
+
+            long start = System.nanoTime();
+            try {
+                String response = MakeHedgedRestCall(endpoint, requestUrl, method, timeout, deadline, idempotent);
+                long latency = System.nanoTime() - start;
+                if (route != null) {
+                    router.onSuccess(route, latency);
+                }
+                if (limiter != null) {
+                    limiter.onSuccess(latency);
+                }
+                if (breaker != null) {
+                    breaker.onSuccess(restUrl, response, latency);
+                }
+                return response;
+            } catch (IOException ex) {
+                if (limiter != null) {
+                    limiter.onFailure(ex);
+                }
+                boolean outOfTime = deadline != null && deadline.isExpired();
+                if (breaker != null) {
+                    // running out of our own budget or being cancelled says nothing about the health of the endpoint
+                    breaker.onFailure(outOfTime || IsCancellation(ex) ? null : ex);
+                }
+                if (route != null && !outOfTime && router.onFailure(route, ex) && idempotent &&
+                        failovers < router.size() - 1 && router.hasAlternative(route)) {
+                    // fail over to the next best base URL straight away, without using up a retry
+                    failovers++;
+                    attempt--;
+                    continue;
+                }
+                if (outOfTime || attempt >= policy.getMaxAttempts() || !IsRetryable(policy, ex)) {
+                    throw ex;
+                }
+
+                delay = policy.getDelay(attempt);
+                if (deadline != null && TimeUnit.MILLISECONDS.toNanos(delay) >= deadline.getRemainingNanos()) {
+                    // no time left for another attempt
+                    throw ex;
+                }
+            } catch (RuntimeException ex) {
+                if (limiter != null) {
+                    limiter.onFailure(null);
+                }
+                if (breaker != null) {
+                    breaker.onFailure(null);
+                }
+                throw ex;
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting to retry Enzoic API request");
+            }
         }
     }
 
-    private static ResourceBundle resource = ResourceBundle.getBundle("enzoic");
+    private static boolean IsCancellation(final IOException ex) {
+        return ex instanceof InterruptedIOException && !(ex instanceof SocketTimeoutException);
+    }
 
-    private String GetProperty(final String key, final String defaultValue) {
-        String result = resource.getString(key);
-        if (result == null)
-            result = defaultValue;
+    private static boolean IsRetryable(final RetryPolicy policy, final IOException ex) {
+        if (ex instanceof HttpStatusException) {
+            return policy.isRetryable(((HttpStatusException) ex).getStatus());
+        }
+        return policy.isRetryable(ex);
+    }
+
+    private String MakeHedgedRestCall(final ApiEndpoint endpoint, final String restUrl, final String method,
+                                      final int timeout, final Deadline deadline, final boolean idempotent)
+            throws IOException {
+        RequestHedging hedging = this.hedging;
+        if (hedging == null || !idempotent) {
+            return SendRestRequest(endpoint, restUrl, method, timeout, deadline);
+        }
+
+        final RequestPriority priority = PriorityContext.current(RequestPriority.NORMAL);
+        return hedging.execute(endpoint, new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return SendRestRequest(endpoint, restUrl, method, timeout, deadline);
+            }
+        }, new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return SendHedgeRequest(endpoint, restUrl, method, timeout, deadline, priority);
+            }
+        });
+    }
+
+    /**
+     * Sends a hedged copy of a request if the concurrency limit and the rate limit have room for it right now - a hedge
+     * is only worth sending when it doesn't add to an overload
+     */
+    private String SendHedgeRequest(final ApiEndpoint endpoint, final String restUrl, final String method,
+                                    final int timeout, final Deadline deadline, final RequestPriority priority)
+            throws IOException {
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+        TokenBucket rateLimiter = this.rateLimiter;
+        // the slot first, as it can be given back if there is no token
+        if (limiter != null && !limiter.tryAcquire(priority)) {
+            throw new RequestHedging.Declined();
+        }
+        if (rateLimiter != null && !rateLimiter.tryAcquire(priority)) {
+            if (limiter != null) {
+                limiter.onFailure(null);
+            }
+            throw new RequestHedging.Declined();
+        }
+
+        long start = System.nanoTime();
+        try {
+            String response = SendRestRequest(endpoint, restUrl, method, timeout, deadline);
+            if (limiter != null) {
+                limiter.onSuccess(System.nanoTime() - start);
+            }
+            return response;
+        } catch (IOException ex) {
+            if (limiter != null) {
+                // usually cancelled because the original answered first, which says nothing about load
+                limiter.onFailure(IsCancellation(ex) ? null : ex);
+            }
+            throw ex;
+        } catch (RuntimeException ex) {
+            if (limiter != null) {
+                limiter.onFailure(null);
+            }
+            throw ex;
+        }
+    }
+
+    private String SendRestRequest(final ApiEndpoint endpoint, final String restUrl, final String method,
+                                   final int timeout, final Deadline deadline)
+            throws IOException {
+
+        long start = System.nanoTime();
+        EnzoicMetrics.Outcome outcome = EnzoicMetrics.Outcome.ERROR;
+        Object event = FlightRecorderSupport.beginRestCall();
+        inFlightRequests.incrementAndGet();
+        int responseStatus = -1;
+        long responseBytes = 0;
+
+        try {
+            if (Thread.currentThread().isInterrupted()) {
+                outcome = EnzoicMetrics.Outcome.CANCELLED;
+                throw new InterruptedIOException("Enzoic API request cancelled");
+            }
+
+            TransportResponse response = transport.send(
+                    new TransportRequest(endpoint, method, restUrl, requestHeaders, timeout, deadline));
+            responseStatus = response.getStatus();
+
+            if (responseStatus == 200) {
+                byte[] responseBody = response.getBody();
+                responseBytes = responseBody.length;
+                String encoding = response.getHeader("Content-Encoding");
+                String result = encoding == null ? new String(responseBody) : new String(responseBody, encoding);
+                outcome = EnzoicMetrics.Outcome.SUCCESS;
+                return result;
+            } else if (responseStatus == 404) {
+                outcome = EnzoicMetrics.Outcome.NOT_FOUND;
+                return "404";
+            } else {
+                String message = new String(response.getBody());
+                throw new HttpStatusException(responseStatus, "API Call to " + restUrl + " failed. HTTP error code: " +
+                        responseStatus + " Message: " + message);
+            }
+        } catch (SocketTimeoutException ex) {
+            outcome = EnzoicMetrics.Outcome.TIMEOUT;
+            throw ex;
+        } catch (IOException ex) {
+            if (Thread.currentThread().isInterrupted()) {
+                // most likely the default transport's watchdog disconnected us
+                outcome = EnzoicMetrics.Outcome.CANCELLED;
+                InterruptedIOException cancelled = new InterruptedIOException("Enzoic API request cancelled");
+                cancelled.initCause(ex);
+                throw cancelled;
+            }
+            throw ex;
+        } finally {
+            long duration = System.nanoTime() - start;
+            inFlightRequests.decrementAndGet();
+            metrics.recordCall(endpoint, outcome, duration);
+            FlightRecorderSupport.endRestCall(event, endpoint, responseStatus, responseBytes);
+
+            RequestHedging hedging = this.hedging;
+            if (hedging != null &&
+                    (outcome == EnzoicMetrics.Outcome.SUCCESS || outcome == EnzoicMetrics.Outcome.NOT_FOUND)) {
+                hedging.record(endpoint, duration);
+            }
+        }
+    }
+
+    int GetInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    WorkScheduler GetRequestScheduler() {
+        return requestScheduler;
+    }
+
+    WorkScheduler GetHashScheduler() {
+        return hashScheduler;
+    }
+
+    ResponseCache<AccountsResponse> GetAccountsCache() {
+        return accountsCache;
+    }
+
+    ResponseCache<ExposureDetails> GetExposureDetailsCache() {
+        return exposureDetailsCache;
+    }
+
+    ResponseCache<UserPasswords> GetUserPasswordsCache() {
+        return userPasswordsCache;
+    }
+
+    private <T> T FromJson(final String json, final Class<T> responseClass) {
+        long start = System.nanoTime();
+        T result = gson.fromJson(json, responseClass);
+        metrics.recordPhase(EnzoicMetrics.Phase.JSON_DECODE, null, System.nanoTime() - start);
         return result;
     }
 
+    private Future<ExposureDetails> FetchExposureDetailsOnce(final String exposureID,
+                                                             final ConcurrentMap<String, Future<ExposureDetails>> fetches) {
+        Future<ExposureDetails> fetch = fetches.get(exposureID);
+        if (fetch == null) {
+            FutureTask<ExposureDetails> task = new FutureTask<ExposureDetails>(new Callable<ExposureDetails>() {
+                @Override
+                public ExposureDetails call() throws IOException {
+                    return GetExposureDetails(exposureID);
+                }
+            });
+
+            fetch = fetches.putIfAbsent(exposureID, task);
+            if (fetch == null) {
+                fetch = task;
+                requestScheduler.execute(requestTenant, PriorityContext.current(RequestPriority.NORMAL), task);
+            }
+        }
+        return fetch;
+    }
+
+    private static ExposureDetails[] AwaitExposureDetails(final String[] exposureIDs,
+                                                          final Map<String, Future<ExposureDetails>> fetches)
+            throws IOException {
+        ArrayList<ExposureDetails> result = new ArrayList<ExposureDetails>(exposureIDs.length);
+        for (String exposureID : exposureIDs) {
+            ExposureDetails exposureDetails = AwaitResult(fetches.get(exposureID));
+            // skip Exposures which could not be found
+            if (exposureDetails != null) {
+                result.add(exposureDetails);
+            }
+        }
+        return result.toArray(new ExposureDetails[0]);
+    }
+
+    static <T> T AwaitResult(final Future<T> future)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for Enzoic API response");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    static void CancelAll(final Collection<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            // interrupting abandoned work stops its hashing and aborts its requests
+            future.cancel(true);
+        }
+    }
+
+    // Gson instances are thread-safe and cache their type adapters, so share one
+    private static final Gson gson = new Gson();
+
+    // loaded on first use rather than when Enzoic is initialized, so that initializing Enzoic has no side effects,
+    // e.g. when a GraalVM native image initializes it at build time
+    private static final class Resources {
+        static final ResourceBundle BUNDLE = Load();
+
+        private static ResourceBundle Load() {
+            try {
+                return ResourceBundle.getBundle("enzoic");
+            } catch (MissingResourceException ex) {
+                return null;
+            }
+        }
+    }
+
+    private String GetProperty(final String key, final String defaultValue) {
+        ResourceBundle resource = Resources.BUNDLE;
+        if (resource == null || !resource.containsKey(key))
+            return defaultValue;
+        return resource.getString(key);
+    }
+
     private String CalcAuthString(final String apiKey, final String secret) {
         return "basic " + Hashing.encodeBase64(apiKey + ":" + secret);
     }
@@ -458,16 +1999,28 @@ public class Enzoic {
     private String CalcCredentialHash(final String username, final String password, String salt, PasswordHashSpecification specification) {
         String passwordHash = null;
 
+        long start = System.nanoTime();
         try {
             passwordHash = CalcPasswordHash(specification.getHashType(), password, specification.getSalt());
+        } catch (CancellationException ex) {
+            throw ex;
         } catch (Exception ex) {
             // this can happen when a corrupt salt is received from the server
             // occasionally when breach data is collected, invalid salt values are indexed.
             // ignore these failures and return null so we'll skip
         }
+        metrics.recordPhase(EnzoicMetrics.Phase.PASSWORD_HASH, specification.getHashType(), System.nanoTime() - start);
 
         if (passwordHash != null) {
-            String argon2Hash = Hashing.argon2(username.toLowerCase() + "$" + passwordHash, salt);
+            start = System.nanoTime();
+            Object event = FlightRecorderSupport.beginArgon2();
+            String argon2Hash;
+            try {
+                argon2Hash = Hashing.argon2(username.toLowerCase() + "$" + passwordHash, salt);
+            } finally {
+                FlightRecorderSupport.endArgon2(event);
+            }
+            metrics.recordPhase(EnzoicMetrics.Phase.ARGON2, null, System.nanoTime() - start);
 
             String justHash = argon2Hash.substring(argon2Hash.lastIndexOf('$') + 1);
             return Hashing.bytesToHex(Hashing.decodeBase64(justHash));
@@ -476,7 +2029,35 @@ public class Enzoic {
         }
     }
 
+    private boolean PasswordMatchesHash(final String password, final UserPasswordDetails userPassword) {
+        String passwordHash;
+
+        try {
+            passwordHash = CalcPasswordHash(userPassword.getHashType(), password, userPassword.getSalt());
+        } catch (CancellationException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            // corrupt salt - see CalcCredentialHash
+            return false;
+        }
+
+        return passwordHash != null && ConstantTimeEquals(passwordHash, userPassword.getPassword());
+    }
+
+    private static boolean ConstantTimeEquals(final String a, final String b) {
+        return MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
     private String CalcPasswordHash(final PasswordType passwordType, final String password, final String salt) {
+        Object event = FlightRecorderSupport.beginPasswordHash();
+        try {
+            return DispatchPasswordHash(passwordType, password, salt);
+        } finally {
+            FlightRecorderSupport.endPasswordHash(event, passwordType);
+        }
+    }
+
+    private String DispatchPasswordHash(final PasswordType passwordType, final String password, final String salt) {
         switch (passwordType) {
             case MD5:
                 return Hashing.md5(password);
@@ -633,4 +2214,46 @@ public class Enzoic {
                 return null;
         }
     }
+
+    private static String WarmUpSalt(final PasswordType passwordType) {
+        // valid salts for each type, with the lowest work factors they allow
+        switch (passwordType) {
+            case IPBoard_MyBB:
+                return ";;!_X";
+            case vBulletinPre3_8_5:
+            case vBulletinPost3_8_5:
+                return "]G@";
+            case BCrypt:
+                return "$2a$04$2bULeXwv2H34SXkT1giCZe";
+            case PHPBB3:
+                return "$H$593WP3hbz";
+            case CustomAlgorithm1:
+                return "00new00";
+            case MD5Crypt:
+                return "$1$4d3c09ea";
+            case CustomAlgorithm4:
+                return "$2y$04$Yjk3YjIzYWIxNDg0YWMzZO";
+            case DESCrypt:
+                return "yD";
+            case DjangoMD5:
+            case DjangoSHA1:
+                return "c6218";
+            case SHA1Dash:
+                return "478c8029d5efddc554bf2fe6bb2219d8c897d4a0";
+            case CustomAlgorithm8:
+                return "Dn";
+            case CustomAlgorithm9:
+                return "6kpcxVSjagLgsNCUCr-D";
+            case SHA512Crypt:
+                return "$6$rounds=1000$52450745";
+            case SHA256Crypt:
+                return "$5$rounds=1000$GX7BopJZJxPc/KEK";
+            case CustomAlgorithm10:
+                return "NqXCvAHUpAWAco3hVTG5Sg0FfmJRQPKi0LvcHwylzXHhSNuWwvYdMSSGzswi0ZdJ";
+            case AuthMeSHA256:
+                return "7218532375810603";
+            default:
+                return "123";
+        }
+    }
 }
@@ -0,0 +1,357 @@
+package com.enzoic.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sidecar which shares one Enzoic instance - its connections, caches and warm code - between all the processes on a
+ * host.  Services call it with EnzoicSidecarClient, which needs no API credentials, over a loopback TCP port.
+ * <p>
+ * Identical calls which arrive while one is already in progress, e.g. the accounts lookup for a user retrying a login,
+ * wait for and share its result rather than calling the API again.
+ * <p>
+ * Any process on the host which can connect to the port can make calls with the daemon's API credentials, and
+ * passwords travel unencrypted over the loopback interface, so on a shared host set an auth token and keep it to the
+ * services which should use it.
+ * <p>
+ * Run the main method to start a standalone daemon:
+ * <pre>
+ * ENZOIC_API_KEY=... ENZOIC_API_SECRET=... ENZOIC_SIDECAR_TOKEN=... \
+ *     java -cp enzoic-java-client-jar-with-dependencies.jar com.enzoic.client.EnzoicDaemon [port]
+ * </pre>
+ */
+public class EnzoicDaemon implements Closeable {
+
+    /**
+     * The port the daemon listens on unless told otherwise
+     */
+    public static final int DEFAULT_PORT = 8787;
+
+    private static final int DEFAULT_MAX_CONCURRENT_CALLS = 64;
+
+    private final Enzoic enzoic;
+    private final String authToken;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<String, FutureTask<byte[]>> inFlight = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * @param enzoic    The instance to make calls with, configured as required - e.g. with its caches enabled.
+     * @param authToken A secret clients must present to connect, or null to accept any client on the host.
+     */
+    public EnzoicDaemon(final Enzoic enzoic, final String authToken) {
+        if (enzoic == null) {
+            throw new IllegalArgumentException("Enzoic cannot be null");
+        }
+        this.enzoic = enzoic;
+        this.authToken = authToken;
+        this.executor = new ThreadPoolExecutor(DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_MAX_CONCURRENT_CALLS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new WorkScheduler.DaemonThreadFactory("enzoic-daemon"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts listening on a loopback port
+     *
+     * @param port The port, or 0 for any free port - see getPort.
+     * @return this
+     * @throws IOException the port could not be listened on
+     */
+    public synchronized EnzoicDaemon start(final int port) throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Daemon already started");
+        }
+        final ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        serverSocket = server;
+
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept(server);
+            }
+        }, "enzoic-daemon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * The port the daemon is listening on
+     * @return int
+     */
+    public int getPort() {
+        ServerSocket server = serverSocket;
+        if (server == null) {
+            throw new IllegalStateException("Daemon not started");
+        }
+        return server.getLocalPort();
+    }
+
+    /**
+     * The number of calls received
+     * @return long
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * The number of calls answered with the result of an identical call already in progress
+     * @return long
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Stops listening and disconnects all clients.  Calls in progress are abandoned.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        ServerSocket server = serverSocket;
+        if (server != null) {
+            server.close();
+        }
+        for (Socket connection : connections) {
+            connection.close();
+        }
+        executor.shutdownNow();
+    }
+
+    private void accept(final ServerSocket server) {
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException ex) {
+                // closed
+                return;
+            }
+
+            connections.add(socket);
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException ex) {
+                        // the client disconnected or broke the protocol - either way it is done
+                    } finally {
+                        connections.remove(socket);
+                        try {
+                            socket.close();
+                        } catch (IOException ex) {
+                            // ignore
+                        }
+                    }
+                }
+            }, "enzoic-daemon-connection");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void serve(final Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if (in.readInt() != SidecarProtocol.MAGIC) {
+            return;
+        }
+        int version = in.readUnsignedByte();
+        String token = ResponseCache.readString(in);
+        if (version != SidecarProtocol.VERSION) {
+            reject(out, "Unsupported Enzoic sidecar protocol version " + version);
+            return;
+        }
+        if (authToken != null && (token == null || !MessageDigest.isEqual(
+                authToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8)))) {
+            reject(out, "Invalid Enzoic sidecar auth token");
+            return;
+        }
+        out.writeByte(SidecarProtocol.OK);
+        out.flush();
+
+        while (true) {
+            final byte[] frame = SidecarProtocol.readFrame(in);
+            callCount.incrementAndGet();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    respond(out, frame);
+                }
+            });
+        }
+    }
+
+    private static void reject(final DataOutputStream out, final String message) throws IOException {
+        out.writeByte(SidecarProtocol.ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    private void respond(final DataOutputStream out, final byte[] frame) {
+        int requestID = ((frame[0] & 0xFF) << 24) | ((frame[1] & 0xFF) << 16) | ((frame[2] & 0xFF) << 8) |
+                (frame[3] & 0xFF);
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        DataOutputStream responseOut = new DataOutputStream(response);
+        try {
+            responseOut.writeInt(requestID);
+            try {
+                byte[] result = coalesce(frame);
+                responseOut.writeByte(SidecarProtocol.OK);
+                responseOut.write(result);
+            } catch (Exception ex) {
+                response.reset();
+                responseOut.writeInt(requestID);
+                responseOut.writeByte(ex instanceof RuntimeException ?
+                        SidecarProtocol.RUNTIME_ERROR : SidecarProtocol.ERROR);
+                responseOut.writeUTF(ex.getMessage() == null ? ex.getClass().getName() : ex.getMessage());
+            }
+
+            synchronized (out) {
+                SidecarProtocol.writeFrame(out, response.toByteArray());
+            }
+        } catch (IOException ex) {
+            // the client has gone - its reader will notice
+        }
+    }
+
+    private byte[] coalesce(final byte[] frame) throws Exception {
+        // everything after the request ID identifies the call
+        String key = new String(frame, 4, frame.length - 4, StandardCharsets.ISO_8859_1);
+        FutureTask<byte[]> call = new FutureTask<byte[]>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return execute(frame);
+            }
+        });
+
+        FutureTask<byte[]> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            call = existing;
+        } else {
+            try {
+                call.run();
+            } finally {
+                inFlight.remove(key, call);
+            }
+        }
+
+        try {
+            return call.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+
+    private byte[] execute(final byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame, 4, frame.length - 4));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(result);
+
+        byte operation = in.readByte();
+        switch (operation) {
+            case SidecarProtocol.CHECK_CREDENTIALS: {
+                String username = in.readUTF();
+                String password = in.readUTF();
+                Date lastCheckDate = ResponseCache.readDate(in);
+                PasswordType[] excludeHashTypes = SidecarProtocol.readPasswordTypes(in);
+                out.writeBoolean(enzoic.CheckCredentialsEx(username, password, lastCheckDate, excludeHashTypes));
+                break;
+            }
+            case SidecarProtocol.CHECK_PASSWORD:
+                out.writeBoolean(enzoic.CheckPassword(in.readUTF()));
+                break;
+            case SidecarProtocol.CHECK_PASSWORD_EX: {
+                CheckPasswordExResponse response = enzoic.CheckPasswordEx(in.readUTF());
+                out.writeBoolean(response != null);
+                if (response != null) {
+                    out.writeBoolean(response.isRevealedInExposure());
+                    out.writeInt(response.relativeExposureFrequency());
+                    out.writeInt(response.exposureCount());
+                }
+                break;
+            }
+            case SidecarProtocol.GET_EXPOSURES_FOR_USER:
+                ExposuresResponse.CODEC.write(out, enzoic.GetExposuresForUser(in.readUTF()));
+                break;
+            case SidecarProtocol.GET_EXPOSURE_DETAILS: {
+                ExposureDetails details = enzoic.GetExposureDetails(in.readUTF());
+                out.writeBoolean(details != null);
+                if (details != null) {
+                    ExposureDetails.CODEC.write(out, details);
+                }
+                break;
+            }
+            case SidecarProtocol.GET_USER_PASSWORDS: {
+                UserPasswords passwords = enzoic.GetUserPasswords(in.readUTF());
+                out.writeBoolean(passwords != null);
+                if (passwords != null) {
+                    UserPasswords.CODEC.write(out, passwords);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown Enzoic sidecar operation " + operation);
+        }
+
+        out.flush();
+        return result.toByteArray();
+    }
+
+    /**
+     * Runs a standalone daemon, with its caches enabled, until the process is stopped
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String apiKey = System.getenv("ENZOIC_API_KEY");
+        String secret = System.getenv("ENZOIC_API_SECRET");
+        if (apiKey == null || secret == null) {
+            System.err.println("Set ENZOIC_API_KEY and ENZOIC_API_SECRET");
+            System.exit(1);
+        }
+        // without a token any process on the host could make calls, including GetUserPasswords, with the API key
+        String authToken = System.getenv("ENZOIC_SIDECAR_TOKEN");
+        if (authToken == null || authToken.length() == 0) {
+            System.err.println("Set ENZOIC_SIDECAR_TOKEN to the secret clients must present");
+            System.exit(1);
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        Enzoic enzoic = new Enzoic(apiKey, secret, System.getenv("ENZOIC_API_BASE_URL"));
+        enzoic.EnableAccountsCache(100000, TimeUnit.MINUTES.toMillis(10));
+        enzoic.EnableExposureDetailsCache(10000, TimeUnit.HOURS.toMillis(1));
+        enzoic.EnableUserPasswordsCache(10000, TimeUnit.MINUTES.toMillis(10));
+        try {
+            enzoic.WarmUp(true);
+        } catch (IOException ex) {
+            System.err.println("Could not connect to the Enzoic API yet: " + ex.getMessage());
+        }
+
+        EnzoicDaemon daemon = new EnzoicDaemon(enzoic, authToken).start(port);
+        System.out.println("Enzoic daemon listening on 127.0.0.1:" + daemon.getPort());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,114 @@
+package com.enzoic.client;
+
+/**
+ * The JMX management interface of an Enzoic instance, registered with Enzoic.RegisterMBean.  It exposes the runtime
+ * state of the client and allows its performance settings to be changed while it is running, e.g. from JConsole or
+ * JDK Mission Control.
+ * <p>
+ * Cache attributes read as 0 while the cache is disabled, and setting the TTL of a disabled cache fails.  A new cache
+ * TTL applies to entries cached from then on.
+ */
+public interface EnzoicMXBean {
+
+    /**
+     * @return the number of API requests currently in progress
+     */
+    int getInFlightRequests();
+
+    /**
+     * @return the number of threads currently making requests for bulk calls
+     */
+    int getRequestPoolActiveThreads();
+
+    /**
+     * @return the number of bulk call requests waiting for a thread
+     */
+    int getRequestPoolQueueDepth();
+
+    /**
+     * @return the number of threads currently calculating password hashes
+     */
+    int getHashPoolActiveThreads();
+
+    /**
+     * @return the number of password hash calculations waiting for a thread
+     */
+    int getHashPoolQueueDepth();
+
+    /**
+     * @return the fraction of hash threads which are busy, from 0 to 1
+     */
+    double getHashPoolSaturation();
+
+    /**
+     * @return the current adaptive concurrency limit, or 0 if it is not enabled
+     */
+    int getConcurrencyLimit();
+
+    int getRequestTimeout();
+
+    /**
+     * @param timeoutInMs the timeout for API requests in milliseconds, 0 for no timeout
+     */
+    void setRequestTimeout(int timeoutInMs);
+
+    int getMaxConcurrentRequests();
+
+    void setMaxConcurrentRequests(int maxConcurrentRequests);
+
+    int getMaxConcurrentHashes();
+
+    void setMaxConcurrentHashes(int maxConcurrentHashes);
+
+    int getMaxBCryptHashes();
+
+    /**
+     * @param maxBCryptHashes the maximum number of BCrypt hashes calculated per credentials check
+     */
+    void setMaxBCryptHashes(int maxBCryptHashes);
+
+    int getAccountsCacheSize();
+
+    double getAccountsCacheHitRatio();
+
+    long getAccountsCacheEvictions();
+
+    long getAccountsCacheTTL();
+
+    void setAccountsCacheTTL(long ttlInMs);
+
+    int getExposureDetailsCacheSize();
+
+    double getExposureDetailsCacheHitRatio();
+
+    long getExposureDetailsCacheEvictions();
+
+    long getExposureDetailsCacheTTL();
+
+    void setExposureDetailsCacheTTL(long ttlInMs);
+
+    int getUserPasswordsCacheSize();
+
+    double getUserPasswordsCacheHitRatio();
+
+    long getUserPasswordsCacheEvictions();
+
+    long getUserPasswordsCacheTTL();
+
+    void setUserPasswordsCacheTTL(long ttlInMs);
+
+    /**
+     * @return the number of lookups which missed the in-process caches but were found in the shared cache
+     */
+    long getSharedCacheHits();
+
+    /**
+     * @return the number of shared cache lookups and writes which failed
+     */
+    long getSharedCacheErrors();
+
+    /**
+     * Discards every entry in each enabled cache
+     */
+    void clearCaches();
+}
@@ -0,0 +1,229 @@
+package com.enzoic.client;
+
+/**
+ * The EnzoicMXBean implementation for an Enzoic instance - internal use only
+ */
+class EnzoicManagement implements EnzoicMXBean {
+
+    private final Enzoic enzoic;
+
+    EnzoicManagement(final Enzoic enzoic) {
+        this.enzoic = enzoic;
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return enzoic.GetInFlightRequests();
+    }
+
+    @Override
+    public int getRequestPoolActiveThreads() {
+        return enzoic.GetRequestScheduler().getActiveCount();
+    }
+
+    @Override
+    public int getRequestPoolQueueDepth() {
+        return enzoic.GetRequestScheduler().getQueueDepth();
+    }
+
+    @Override
+    public int getHashPoolActiveThreads() {
+        return enzoic.GetHashScheduler().getActiveCount();
+    }
+
+    @Override
+    public int getHashPoolQueueDepth() {
+        return enzoic.GetHashScheduler().getQueueDepth();
+    }
+
+    @Override
+    public double getHashPoolSaturation() {
+        WorkScheduler scheduler = enzoic.GetHashScheduler();
+        return Math.min(1.0, (double) scheduler.getActiveCount() / scheduler.getConcurrency());
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return enzoic.GetConcurrencyLimit();
+    }
+
+    @Override
+    public int getRequestTimeout() {
+        Integer timeout = enzoic.GetRequestTimeout();
+        return timeout == null ? 0 : timeout;
+    }
+
+    @Override
+    public void setRequestTimeout(final int timeoutInMs) {
+        if (timeoutInMs < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        enzoic.SetRequestTimeout(timeoutInMs);
+    }
+
+    @Override
+    public int getMaxConcurrentRequests() {
+        return enzoic.GetMaxConcurrentRequests();
+    }
+
+    @Override
+    public void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+        enzoic.SetMaxConcurrentRequests(maxConcurrentRequests);
+    }
+
+    @Override
+    public int getMaxConcurrentHashes() {
+        return enzoic.GetMaxConcurrentHashes();
+    }
+
+    @Override
+    public void setMaxConcurrentHashes(final int maxConcurrentHashes) {
+        enzoic.SetMaxConcurrentHashes(maxConcurrentHashes);
+    }
+
+    @Override
+    public int getMaxBCryptHashes() {
+        return enzoic.GetMaxBCryptHashes();
+    }
+
+    @Override
+    public void setMaxBCryptHashes(final int maxBCryptHashes) {
+        enzoic.SetMaxBCryptHashes(maxBCryptHashes);
+    }
+
+    @Override
+    public int getAccountsCacheSize() {
+        return size(enzoic.GetAccountsCache());
+    }
+
+    @Override
+    public double getAccountsCacheHitRatio() {
+        return hitRatio(enzoic.GetAccountsCache());
+    }
+
+    @Override
+    public long getAccountsCacheEvictions() {
+        return evictions(enzoic.GetAccountsCache());
+    }
+
+    @Override
+    public long getAccountsCacheTTL() {
+        return ttl(enzoic.GetAccountsCache());
+    }
+
+    @Override
+    public void setAccountsCacheTTL(final long ttlInMs) {
+        setTTL(enzoic.GetAccountsCache(), "Accounts", ttlInMs);
+    }
+
+    @Override
+    public int getExposureDetailsCacheSize() {
+        return size(enzoic.GetExposureDetailsCache());
+    }
+
+    @Override
+    public double getExposureDetailsCacheHitRatio() {
+        return hitRatio(enzoic.GetExposureDetailsCache());
+    }
+
+    @Override
+    public long getExposureDetailsCacheEvictions() {
+        return evictions(enzoic.GetExposureDetailsCache());
+    }
+
+    @Override
+    public long getExposureDetailsCacheTTL() {
+        return ttl(enzoic.GetExposureDetailsCache());
+    }
+
+    @Override
+    public void setExposureDetailsCacheTTL(final long ttlInMs) {
+        setTTL(enzoic.GetExposureDetailsCache(), "Exposure details", ttlInMs);
+    }
+
+    @Override
+    public int getUserPasswordsCacheSize() {
+        return size(enzoic.GetUserPasswordsCache());
+    }
+
+    @Override
+    public double getUserPasswordsCacheHitRatio() {
+        return hitRatio(enzoic.GetUserPasswordsCache());
+    }
+
+    @Override
+    public long getUserPasswordsCacheEvictions() {
+        return evictions(enzoic.GetUserPasswordsCache());
+    }
+
+    @Override
+    public long getUserPasswordsCacheTTL() {
+        return ttl(enzoic.GetUserPasswordsCache());
+    }
+
+    @Override
+    public void setUserPasswordsCacheTTL(final long ttlInMs) {
+        setTTL(enzoic.GetUserPasswordsCache(), "User passwords", ttlInMs);
+    }
+
+    @Override
+    public long getSharedCacheHits() {
+        return sharedHits(enzoic.GetAccountsCache()) + sharedHits(enzoic.GetExposureDetailsCache()) +
+                sharedHits(enzoic.GetUserPasswordsCache());
+    }
+
+    @Override
+    public long getSharedCacheErrors() {
+        return sharedErrors(enzoic.GetAccountsCache()) + sharedErrors(enzoic.GetExposureDetailsCache()) +
+                sharedErrors(enzoic.GetUserPasswordsCache());
+    }
+
+    @Override
+    public void clearCaches() {
+        clear(enzoic.GetAccountsCache());
+        clear(enzoic.GetExposureDetailsCache());
+        clear(enzoic.GetUserPasswordsCache());
+    }
+
+    private static int size(final ResponseCache<?> cache) {
+        return cache == null ? 0 : cache.size();
+    }
+
+    private static double hitRatio(final ResponseCache<?> cache) {
+        if (cache == null) {
+            return 0;
+        }
+        long hits = cache.hits();
+        long lookups = hits + cache.misses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static long sharedHits(final ResponseCache<?> cache) {
+        return cache == null ? 0 : cache.sharedHits();
+    }
+
+    private static long sharedErrors(final ResponseCache<?> cache) {
+        return cache == null ? 0 : cache.sharedErrors();
+    }
+
+    private static long evictions(final ResponseCache<?> cache) {
+        return cache == null ? 0 : cache.evictions();
+    }
+
+    private static long ttl(final ResponseCache<?> cache) {
+        return cache == null ? 0 : cache.getTTL();
+    }
+
+    private static void setTTL(final ResponseCache<?> cache, final String name, final long ttlInMs) {
+        if (cache == null) {
+            throw new IllegalStateException(name + " cache is not enabled");
+        }
+        cache.setTTL(ttlInMs);
+    }
+
+    private static void clear(final ResponseCache<?> cache) {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
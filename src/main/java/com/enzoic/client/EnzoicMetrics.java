@@ -0,0 +1,76 @@
+package com.enzoic.client;
+
+/**
+ * Service provider interface for collecting performance metrics from an Enzoic instance.  Pass an implementation to
+ * Enzoic.SetMetrics to receive timings for each API call and for each phase of CheckCredentials/CheckCredentialsEx.
+ * <p>
+ * Methods are called synchronously on the thread making the call, often on a latency-sensitive path, so
+ * implementations must be thread-safe and should be cheap - e.g. incrementing counters or recording into a
+ * histogram.  HistogramMetrics is a built-in implementation, and bridging to a library such as Micrometer or the
+ * Prometheus client is typically a matter of recording each duration into a timer tagged by its arguments.
+ */
+public interface EnzoicMetrics {
+
+    /**
+     * The phases of a CheckCredentials call
+     */
+    enum Phase {
+        /** Looking up the account's salt and required hashes, whether from the API or a cache */
+        ACCOUNTS_LOOKUP,
+        /** Calculating a single password hash - reported along with its PasswordType */
+        PASSWORD_HASH,
+        /** Calculating the Argon2 credentials hash for a single password hash */
+        ARGON2,
+        /** Looking up candidate credentials hashes from the API */
+        CREDENTIALS_LOOKUP,
+        /** Deserializing an API response */
+        JSON_DECODE
+    }
+
+    /**
+     * The outcome of a single API request
+     */
+    enum Outcome {
+        /** HTTP 200 */
+        SUCCESS,
+        /** HTTP 404 - the requested item was not found */
+        NOT_FOUND,
+        /** Any other HTTP status or communication failure */
+        ERROR,
+        /** The request timed out */
+        TIMEOUT,
+        /** The request was abandoned because the calling thread was interrupted */
+        CANCELLED
+    }
+
+    /**
+     * An implementation which discards everything
+     */
+    EnzoicMetrics NONE = new EnzoicMetrics() {
+        @Override
+        public void recordPhase(final Phase phase, final PasswordType passwordType, final long durationInNanos) {
+        }
+
+        @Override
+        public void recordCall(final ApiEndpoint endpoint, final Outcome outcome, final long durationInNanos) {
+        }
+    };
+
+    /**
+     * Records the time taken by a phase of a call.
+     *
+     * @param phase           the phase
+     * @param passwordType    for PASSWORD_HASH, the type of hash calculated.  Otherwise null.
+     * @param durationInNanos the time taken in nanoseconds
+     */
+    void recordPhase(Phase phase, PasswordType passwordType, long durationInNanos);
+
+    /**
+     * Records the outcome of a single HTTP request to the Enzoic API.
+     *
+     * @param endpoint        the endpoint called
+     * @param outcome         the outcome of the request
+     * @param durationInNanos the time taken in nanoseconds
+     */
+    void recordCall(ApiEndpoint endpoint, Outcome outcome, long durationInNanos);
+}
@@ -0,0 +1,296 @@
+package com.enzoic.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes Enzoic calls through an EnzoicDaemon on the same host, which holds the API credentials, connections and
+ * caches, rather than directly.  The methods mirror those of Enzoic and throw the same exceptions, plus an IOException
+ * if the daemon cannot be reached.
+ * <p>
+ * All calls share a single connection to the daemon, which is opened by the first call and reopened by the next call
+ * if it is lost.  An instance is safe to use from many threads at once and should be shared, like Enzoic.
+ * <pre>
+ * EnzoicSidecarClient enzoic = new EnzoicSidecarClient(EnzoicDaemon.DEFAULT_PORT, "YOUR_SIDECAR_TOKEN");
+ * boolean compromised = enzoic.CheckCredentials("test@passwordping.com", "123456");
+ * </pre>
+ */
+public class EnzoicSidecarClient implements Closeable {
+
+    private static final class Connection {
+        final Socket socket;
+        final DataOutputStream out;
+        final Map<Integer, CompletableFuture<DataInputStream>> pending =
+                new ConcurrentHashMap<Integer, CompletableFuture<DataInputStream>>();
+        volatile IOException failure;
+
+        Connection(final Socket socket, final DataOutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+    }
+
+    private final int port;
+    private final String authToken;
+    private final AtomicInteger nextRequestID = new AtomicInteger();
+    private volatile Integer requestTimeout = 0;
+    // guarded by this
+    private Connection connection;
+    private boolean closed;
+
+    /**
+     * @param port      The loopback port the daemon listens on, e.g. EnzoicDaemon.DEFAULT_PORT.
+     * @param authToken The daemon's auth token, or null if it does not require one.
+     */
+    public EnzoicSidecarClient(final int port, final String authToken) {
+        this.port = port;
+        this.authToken = authToken;
+    }
+
+    /**
+     * Sets a timeout for calls made through the daemon, which covers the daemon's own requests to the Enzoic API.
+     *
+     * @param timeoutInMs The timeout value in milliseconds to use.  0 indicates a timeout of infinity will be used.
+     */
+    public void SetRequestTimeout(final Integer timeoutInMs) {
+        this.requestTimeout = timeoutInMs;
+    }
+
+    /**
+     * Gets the current timeout for calls made through the daemon.
+     *
+     * @return The timeout value in milliseconds being used.  0 indicates a timeout of infinity.
+     */
+    public Integer GetRequestTimeout() {
+        return this.requestTimeout;
+    }
+
+    /**
+     * See Enzoic.CheckCredentials
+     */
+    public boolean CheckCredentials(final String username, final String password)
+            throws IOException, RuntimeException {
+        return CheckCredentialsEx(username, password, null, null);
+    }
+
+    /**
+     * See Enzoic.CheckCredentialsEx
+     */
+    public boolean CheckCredentialsEx(final String username, final String password, final Date lastCheckDate,
+                                      final PasswordType excludeHashTypes[])
+            throws IOException, RuntimeException {
+        ByteArrayOutputStream args = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(args);
+        out.writeUTF(username);
+        out.writeUTF(password);
+        ResponseCache.writeDate(out, lastCheckDate);
+        SidecarProtocol.writePasswordTypes(out, excludeHashTypes);
+
+        return Call(SidecarProtocol.CHECK_CREDENTIALS, args.toByteArray()).readBoolean();
+    }
+
+    /**
+     * See Enzoic.CheckPassword
+     */
+    public boolean CheckPassword(final String password)
+            throws IOException, RuntimeException {
+        return Call(SidecarProtocol.CHECK_PASSWORD, StringArgument(password)).readBoolean();
+    }
+
+    /**
+     * See Enzoic.CheckPasswordEx
+     */
+    public CheckPasswordExResponse CheckPasswordEx(final String password)
+            throws IOException, RuntimeException {
+        DataInputStream in = Call(SidecarProtocol.CHECK_PASSWORD_EX, StringArgument(password));
+        if (!in.readBoolean()) {
+            return null;
+        }
+        boolean revealedInExposure = in.readBoolean();
+        int relativeExposureFrequency = in.readInt();
+        int exposureCount = in.readInt();
+        return new CheckPasswordExResponse(revealedInExposure, relativeExposureFrequency, exposureCount);
+    }
+
+    /**
+     * See Enzoic.GetExposuresForUser
+     */
+    public ExposuresResponse GetExposuresForUser(final String username)
+            throws IOException {
+        return ExposuresResponse.CODEC.read(Call(SidecarProtocol.GET_EXPOSURES_FOR_USER, StringArgument(username)));
+    }
+
+    /**
+     * See Enzoic.GetExposureDetails
+     */
+    public ExposureDetails GetExposureDetails(final String exposureID)
+            throws IOException {
+        DataInputStream in = Call(SidecarProtocol.GET_EXPOSURE_DETAILS, StringArgument(exposureID));
+        return in.readBoolean() ? ExposureDetails.CODEC.read(in) : null;
+    }
+
+    /**
+     * See Enzoic.GetUserPasswords
+     */
+    public UserPasswords GetUserPasswords(final String username)
+            throws IOException {
+        DataInputStream in = Call(SidecarProtocol.GET_USER_PASSWORDS, StringArgument(username));
+        return in.readBoolean() ? UserPasswords.CODEC.read(in) : null;
+    }
+
+    /**
+     * Disconnects from the daemon.  Calls in progress fail, as do any made afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (connection != null) {
+            connection.socket.close();
+            connection = null;
+        }
+    }
+
+    private static byte[] StringArgument(final String value) throws IOException {
+        ByteArrayOutputStream args = new ByteArrayOutputStream();
+        new DataOutputStream(args).writeUTF(value);
+        return args.toByteArray();
+    }
+
+    private DataInputStream Call(final byte operation, final byte[] args) throws IOException {
+        Connection conn = Connect();
+
+        int requestID = nextRequestID.incrementAndGet();
+        // completed by the connection's reader with the response body
+        CompletableFuture<DataInputStream> response = new CompletableFuture<DataInputStream>();
+        conn.pending.put(requestID, response);
+        try {
+            // the reader sets the failure before failing the pending calls, so one of the two sees this call
+            if (conn.failure != null) {
+                throw new IOException("Lost connection to Enzoic daemon", conn.failure);
+            }
+
+            try {
+                synchronized (conn.out) {
+                    conn.out.writeInt(args.length + 5);
+                    conn.out.writeInt(requestID);
+                    conn.out.writeByte(operation);
+                    conn.out.write(args);
+                    conn.out.flush();
+                }
+            } catch (IOException ex) {
+                // a partly written frame leaves the stream unusable, so the next call reconnects
+                conn.socket.close();
+                throw ex;
+            }
+
+            DataInputStream in;
+            try {
+                int timeout = requestTimeout == null ? 0 : requestTimeout;
+                in = timeout > 0 ? response.get(timeout, TimeUnit.MILLISECONDS) : response.get();
+            } catch (TimeoutException ex) {
+                throw new SocketTimeoutException("Enzoic sidecar call timed out");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Enzoic sidecar call cancelled");
+            } catch (ExecutionException ex) {
+                throw new IOException("Enzoic sidecar call failed", ex.getCause());
+            }
+            if (in == null) {
+                throw new IOException("Lost connection to Enzoic daemon", conn.failure);
+            }
+
+            byte status = in.readByte();
+            if (status == SidecarProtocol.RUNTIME_ERROR) {
+                throw new RuntimeException(in.readUTF());
+            } else if (status != SidecarProtocol.OK) {
+                throw new IOException(in.readUTF());
+            }
+            return in;
+        } finally {
+            conn.pending.remove(requestID);
+        }
+    }
+
+    private synchronized Connection Connect() throws IOException {
+        if (closed) {
+            throw new IOException("Enzoic sidecar client is closed");
+        }
+        if (connection != null && connection.failure == null) {
+            return connection;
+        }
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            out.writeInt(SidecarProtocol.MAGIC);
+            out.writeByte(SidecarProtocol.VERSION);
+            ResponseCache.writeString(out, authToken);
+            out.flush();
+            if (in.readByte() != SidecarProtocol.OK) {
+                throw new IOException("Enzoic daemon refused connection: " + in.readUTF());
+            }
+
+            final Connection conn = new Connection(socket, out);
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Read(conn, in);
+                }
+            }, "enzoic-sidecar-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            connection = conn;
+            return conn;
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    private static void Read(final Connection conn, final DataInputStream in) {
+        try {
+            while (true) {
+                byte[] frame = SidecarProtocol.readFrame(in);
+                DataInputStream response = new DataInputStream(new ByteArrayInputStream(frame));
+                CompletableFuture<DataInputStream> pending = conn.pending.get(response.readInt());
+                // a missing request has already timed out
+                if (pending != null) {
+                    pending.complete(response);
+                }
+            }
+        } catch (IOException ex) {
+            conn.failure = ex;
+            try {
+                conn.socket.close();
+            } catch (IOException closeEx) {
+                // ignore
+            }
+            // wake the waiting callers, which see a null response and report the failure
+            for (CompletableFuture<DataInputStream> pending : conn.pending.values()) {
+                pending.complete(null);
+            }
+        }
+    }
+}
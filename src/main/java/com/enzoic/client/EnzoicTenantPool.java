@@ -0,0 +1,274 @@
+package com.enzoic.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates the Enzoic instances for many tenants, e.g. the customers of a multi-tenant service who each have their own
+ * API key and secret, on top of one set of shared resources rather than a set per instance:
+ * <ul>
+ * <li>a pool of request threads and a pool of hash threads, on which the tenants' work takes turns at each priority, so
+ * a noisy tenant's bulk job delays the others by at most one task per turn rather than starving them</li>
+ * <li>the transport, and with it the connections to the API</li>
+ * <li>the in-process caches, whose memory budget is shared while each tenant sees only its own entries</li>
+ * </ul>
+ * Everything else is per tenant and set on the tenant's instance as usual, including its quotas - SetRateLimit, and
+ * SetMaxConcurrentRequests and SetMaxConcurrentHashes to cap its share of the shared threads - and its metrics:
+ * <pre>
+ * EnzoicTenantPool pool = new EnzoicTenantPool();
+ * pool.setMaxConcurrentRequests(64);
+ * pool.enableAccountsCache(1000000, TimeUnit.MINUTES.toMillis(10));
+ *
+ * Enzoic enzoic = pool.addTenant("customer-1", apiKey, secret);
+ * enzoic.SetRateLimit(50, 100);
+ * enzoic.SetMaxConcurrentRequests(8);
+ * enzoic.SetMetrics(new HistogramMetrics());
+ * ...
+ * pool.getTenant("customer-1").CheckCredentials(username, password);
+ * </pre>
+ * A tenant which calls EnableAccountsCache or another Enable*Cache method on its own instance gets a private cache of
+ * its own in place of the shared one.
+ */
+public class EnzoicTenantPool {
+
+    private final String apiBaseURL;
+    private final WorkScheduler requestScheduler;
+    private final WorkScheduler hashScheduler;
+    private final ConcurrentMap<String, Enzoic> tenants = new ConcurrentHashMap<String, Enzoic>();
+
+    // all guarded by this, and applied to each tenant as it is added
+    private Transport transport = Transport.DEFAULT;
+    private SharedCache sharedCache;
+    private ResponseCache<AccountsResponse> accountsCache;
+    private ResponseCache<ExposureDetails> exposureDetailsCache;
+    private ResponseCache<UserPasswords> userPasswordsCache;
+
+    /**
+     * Creates a pool for tenants of the default API base URL
+     */
+    public EnzoicTenantPool() {
+        this(null);
+    }
+
+    /**
+     * Creates a pool
+     *
+     * @param apiBaseURL override the default base API URL with an alternate - typically not necessary
+     */
+    public EnzoicTenantPool(final String apiBaseURL) {
+        this.apiBaseURL = apiBaseURL;
+        this.requestScheduler = new WorkScheduler("enzoic-request", Enzoic.DEFAULT_MAX_CONCURRENT_REQUESTS);
+        this.hashScheduler = new WorkScheduler("enzoic-hash", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Adds a tenant.  To change a tenant's credentials, remove it and add it again: removing it clears its entries from
+     * the pool's caches on this node, so the new instance does not see responses fetched with the old credentials.
+     *
+     * @param tenantId a unique ID for the tenant, which also scopes its cache entries - keep it stable across restarts
+     *                 and nodes so that a SharedCache is shared between the tenant's instances
+     * @param apiKey   the tenant's Enzoic API key
+     * @param secret   the tenant's Enzoic API secret
+     * @return The tenant's Enzoic instance.
+     */
+    public synchronized Enzoic addTenant(final String tenantId, final String apiKey, final String secret) {
+        if (tenantId == null || tenantId.length() == 0) {
+            throw new IllegalArgumentException("Tenant ID cannot be null or empty");
+        }
+        if (tenants.containsKey(tenantId)) {
+            throw new IllegalArgumentException("Tenant " + tenantId + " has already been added");
+        }
+
+        Enzoic enzoic = new Enzoic(apiKey, secret, apiBaseURL, requestScheduler, hashScheduler);
+        enzoic.SetTransport(transport);
+        enzoic.SetSharedCache(sharedCache);
+        if (accountsCache != null) {
+            enzoic.SetAccountsCache(accountsCache.scoped(tenantId));
+        }
+        if (exposureDetailsCache != null) {
+            enzoic.SetExposureDetailsCache(exposureDetailsCache.scoped(tenantId));
+        }
+        if (userPasswordsCache != null) {
+            enzoic.SetUserPasswordsCache(userPasswordsCache.scoped(tenantId));
+        }
+        tenants.put(tenantId, enzoic);
+        return enzoic;
+    }
+
+    /**
+     * Gets a tenant's Enzoic instance
+     *
+     * @param tenantId the tenant's ID
+     * @return The instance, or null if the tenant has not been added.
+     */
+    public Enzoic getTenant(final String tenantId) {
+        return tenants.get(tenantId);
+    }
+
+    /**
+     * Removes a tenant.  Calls already in progress on its instance complete, and its entries in the pool's caches are
+     * cleared - they are evicted as the caches fill, and a tenant added later with the same ID does not see them.  The background threads of the instance's endpoint routing and hedged requests are stopped,
+     * and its MBean unregistered, so the instance should not be used afterwards.
+     *
+     * @param tenantId the tenant's ID
+     * @return The tenant's instance, or null if the tenant had not been added.
+     */
+    public synchronized Enzoic removeTenant(final String tenantId) {
+        Enzoic enzoic = tenants.remove(tenantId);
+        if (enzoic != null) {
+            enzoic.DisableEndpointRouting();
+            enzoic.DisableHedgedRequests();
+            enzoic.UnregisterMBean();
+            // orphan the tenant's entries in the pool's caches - clearing a private cache of the instance's is harmless
+            if (enzoic.GetAccountsCache() != null) {
+                enzoic.GetAccountsCache().clear();
+            }
+            if (enzoic.GetExposureDetailsCache() != null) {
+                enzoic.GetExposureDetailsCache().clear();
+            }
+            if (enzoic.GetUserPasswordsCache() != null) {
+                enzoic.GetUserPasswordsCache().clear();
+            }
+        }
+        return enzoic;
+    }
+
+    public Set<String> getTenantIds() {
+        return Collections.unmodifiableSet(tenants.keySet());
+    }
+
+    /**
+     * Sets the maximum number of API requests which bulk calls will make in parallel across all the tenants.
+     *
+     * @param maxConcurrentRequests The maximum number of concurrent requests.  Defaults to 16.
+     */
+    public void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+        requestScheduler.setConcurrency(maxConcurrentRequests);
+    }
+
+    public int getMaxConcurrentRequests() {
+        return requestScheduler.getConcurrency();
+    }
+
+    /**
+     * Sets the maximum number of password hash calculations which will run in parallel across all the tenants.
+     *
+     * @param maxConcurrentHashes The maximum number of concurrent hash calculations.  Defaults to the number of processors.
+     */
+    public void setMaxConcurrentHashes(final int maxConcurrentHashes) {
+        hashScheduler.setConcurrency(maxConcurrentHashes);
+    }
+
+    public int getMaxConcurrentHashes() {
+        return hashScheduler.getConcurrency();
+    }
+
+    /**
+     * Sets the transport every tenant sends its requests with.
+     *
+     * @param transport The transport, or null to use the default HttpURLConnection transport.
+     */
+    public synchronized void setTransport(final Transport transport) {
+        this.transport = transport == null ? Transport.DEFAULT : transport;
+        for (Enzoic enzoic : tenants.values()) {
+            enzoic.SetTransport(this.transport);
+        }
+    }
+
+    public synchronized Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets a cache shared with other nodes as a second level behind the tenants' caches - see Enzoic.SetSharedCache.
+     *
+     * @param sharedCache The shared cache, or null to stop using one.
+     */
+    public synchronized void setSharedCache(final SharedCache sharedCache) {
+        this.sharedCache = sharedCache;
+        for (Enzoic enzoic : tenants.values()) {
+            enzoic.SetSharedCache(sharedCache);
+        }
+    }
+
+    public synchronized SharedCache getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * Enables an accounts cache shared by all the tenants, replacing each tenant's own - see Enzoic.EnableAccountsCache.
+     *
+     * @param maxEntries The maximum number of accounts to cache across all the tenants.
+     * @param ttlInMs    The time in milliseconds after which a cached entry expires.
+     */
+    public synchronized void enableAccountsCache(final int maxEntries, final long ttlInMs) {
+        accountsCache = new ResponseCache<AccountsResponse>("accounts", maxEntries,
+                Enzoic.ACCOUNTS_CACHE_MAX_VALUE_LENGTH, ttlInMs, AccountsResponse.CODEC);
+        for (Map.Entry<String, Enzoic> tenant : tenants.entrySet()) {
+            tenant.getValue().SetAccountsCache(accountsCache.scoped(tenant.getKey()));
+        }
+    }
+
+    /**
+     * Disables the shared accounts cache, and each tenant's accounts cache with it.
+     */
+    public synchronized void disableAccountsCache() {
+        accountsCache = null;
+        for (Enzoic enzoic : tenants.values()) {
+            enzoic.DisableAccountsCache();
+        }
+    }
+
+    /**
+     * Enables an Exposure details cache shared by all the tenants, replacing each tenant's own - see
+     * Enzoic.EnableExposureDetailsCache.
+     *
+     * @param maxEntries The maximum number of Exposures to cache across all the tenants.
+     * @param ttlInMs    The time in milliseconds after which a cached entry expires.
+     */
+    public synchronized void enableExposureDetailsCache(final int maxEntries, final long ttlInMs) {
+        exposureDetailsCache = new ResponseCache<ExposureDetails>("exposure-details", maxEntries,
+                Enzoic.EXPOSURE_DETAILS_CACHE_MAX_VALUE_LENGTH, ttlInMs, ExposureDetails.CODEC);
+        for (Map.Entry<String, Enzoic> tenant : tenants.entrySet()) {
+            tenant.getValue().SetExposureDetailsCache(exposureDetailsCache.scoped(tenant.getKey()));
+        }
+    }
+
+    /**
+     * Disables the shared Exposure details cache, and each tenant's Exposure details cache with it.
+     */
+    public synchronized void disableExposureDetailsCache() {
+        exposureDetailsCache = null;
+        for (Enzoic enzoic : tenants.values()) {
+            enzoic.DisableExposureDetailsCache();
+        }
+    }
+
+    /**
+     * Enables a user passwords cache shared by all the tenants, replacing each tenant's own - see
+     * Enzoic.EnableUserPasswordsCache.
+     *
+     * @param maxEntries The maximum number of users to cache across all the tenants.
+     * @param ttlInMs    The time in milliseconds after which a cached entry expires.
+     */
+    public synchronized void enableUserPasswordsCache(final int maxEntries, final long ttlInMs) {
+        userPasswordsCache = new ResponseCache<UserPasswords>("user-passwords", maxEntries,
+                Enzoic.USER_PASSWORDS_CACHE_MAX_VALUE_LENGTH, ttlInMs, UserPasswords.CODEC);
+        for (Map.Entry<String, Enzoic> tenant : tenants.entrySet()) {
+            tenant.getValue().SetUserPasswordsCache(userPasswordsCache.scoped(tenant.getKey()));
+        }
+    }
+
+    /**
+     * Disables the shared user passwords cache, and each tenant's user passwords cache with it.
+     */
+    public synchronized void disableUserPasswordsCache() {
+        userPasswordsCache = null;
+        for (Enzoic enzoic : tenants.values()) {
+            enzoic.DisableUserPasswordsCache();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.enzoic.client;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Date;
 
 /**
@@ -101,4 +104,39 @@ public class ExposureDetails {
     private Date dateAdded;
     private String[] sourceURLs;
     private int domainsAffected;
+
+    /**
+     * Compact binary encoding used when caching Exposure details
+     */
+    static final ResponseCache.Codec<ExposureDetails> CODEC = new ResponseCache.Codec<ExposureDetails>() {
+        @Override
+        public void write(final DataOutputStream out, final ExposureDetails value) throws IOException {
+            ResponseCache.writeString(out, value.id);
+            ResponseCache.writeString(out, value.title);
+            out.writeLong(value.entries);
+            ResponseCache.writeDate(out, value.date);
+            ResponseCache.writeString(out, value.category);
+            ResponseCache.writeString(out, value.passwordType);
+            ResponseCache.writeStrings(out, value.exposedData);
+            ResponseCache.writeDate(out, value.dateAdded);
+            ResponseCache.writeStrings(out, value.sourceURLs);
+            out.writeInt(value.domainsAffected);
+        }
+
+        @Override
+        public ExposureDetails read(final DataInputStream in) throws IOException {
+            ExposureDetails result = new ExposureDetails();
+            result.id = ResponseCache.readString(in);
+            result.title = ResponseCache.readString(in);
+            result.entries = in.readLong();
+            result.date = ResponseCache.readDate(in);
+            result.category = ResponseCache.readString(in);
+            result.passwordType = ResponseCache.readString(in);
+            result.exposedData = ResponseCache.readStrings(in);
+            result.dateAdded = ResponseCache.readDate(in);
+            result.sourceURLs = ResponseCache.readStrings(in);
+            result.domainsAffected = in.readInt();
+            return result;
+        }
+    };
 }
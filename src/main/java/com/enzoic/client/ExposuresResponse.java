@@ -1,5 +1,9 @@
 package com.enzoic.client;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * Response object for the Exposures API GET call
  */
@@ -28,4 +32,23 @@ public class ExposuresResponse {
 
     private int count;
     private String[] exposures;
+
+    /**
+     * Compact binary encoding used by the sidecar protocol
+     */
+    static final ResponseCache.Codec<ExposuresResponse> CODEC = new ResponseCache.Codec<ExposuresResponse>() {
+        @Override
+        public void write(final DataOutputStream out, final ExposuresResponse value) throws IOException {
+            out.writeInt(value.count);
+            ResponseCache.writeStrings(out, value.exposures);
+        }
+
+        @Override
+        public ExposuresResponse read(final DataInputStream in) throws IOException {
+            ExposuresResponse result = new ExposuresResponse();
+            result.count = in.readInt();
+            result.exposures = ResponseCache.readStrings(in);
+            return result;
+        }
+    };
 }
@@ -0,0 +1,120 @@
+package com.enzoic.client;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events emitted by the client - internal use only.  This is the only class which references the
+ * jdk.jfr API, and it is only loaded, by name, by FlightRecorderSupport when that API is available.
+ * <p>
+ * All of the events are disabled by default.  Enable them in a recording, e.g. with
+ * -XX:StartFlightRecording:settings=profile,+com.enzoic.RestCall#enabled=true or through JDK Mission Control.
+ * The events never include usernames, passwords or hashes of either.
+ */
+final class FlightRecorderEvents implements FlightRecorderSupport.Events {
+
+    private static final EventType REST_CALL = EventType.getEventType(RestCallEvent.class);
+    private static final EventType PASSWORD_HASH = EventType.getEventType(PasswordHashEvent.class);
+    private static final EventType ARGON2 = EventType.getEventType(Argon2Event.class);
+
+    // instantiated by FlightRecorderSupport
+    FlightRecorderEvents() {
+    }
+
+    @Override
+    public Object beginRestCall() {
+        if (!REST_CALL.isEnabled()) {
+            return null;
+        }
+        RestCallEvent event = new RestCallEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endRestCall(final Object token, final ApiEndpoint endpoint, final int status, final long bytes) {
+        RestCallEvent event = (RestCallEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.endpoint = endpoint.getPath();
+            event.status = status;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginPasswordHash() {
+        if (!PASSWORD_HASH.isEnabled()) {
+            return null;
+        }
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPasswordHash(final Object token, final PasswordType passwordType) {
+        PasswordHashEvent event = (PasswordHashEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.passwordType = passwordType == null ? null : passwordType.name();
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginArgon2() {
+        if (!ARGON2.isEnabled()) {
+            return null;
+        }
+        Argon2Event event = new Argon2Event();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endArgon2(final Object token) {
+        Argon2Event event = (Argon2Event) token;
+        event.end();
+        event.commit();
+    }
+
+    @Name("com.enzoic.RestCall")
+    @Label("Enzoic API Call")
+    @Description("An HTTP request to the Enzoic API")
+    @Category("Enzoic")
+    @Enabled(false)
+    @StackTrace(false)
+    static class RestCallEvent extends Event {
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("HTTP Status")
+        @Description("The HTTP status code, or -1 if no response was received")
+        int status;
+
+        @Label("Response Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.enzoic.PasswordHash")
+    @Label("Enzoic Password Hash")
+    @Description("Calculation of a single password hash")
+    @Category("Enzoic")
+    @Enabled(false)
+    @StackTrace(false)
+    static class PasswordHashEvent extends Event {
+        @Label("Password Type")
+        String passwordType;
+    }
+
+    @Name("com.enzoic.Argon2")
+    @Label("Enzoic Argon2 Hash")
+    @Description("Calculation of the Argon2 credentials hash for a password hash")
+    @Category("Enzoic")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Argon2Event extends Event {
+    }
+}
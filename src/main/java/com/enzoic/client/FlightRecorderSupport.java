@@ -0,0 +1,80 @@
+package com.enzoic.client;
+
+/**
+ * Emits Java Flight Recorder events when the jdk.jfr API is available (JDK 11+ or 8u262+) and does nothing otherwise
+ * - internal use only.  Each begin method returns null when its event is not enabled, and each end method ignores a
+ * null token, so the cost of disabled events is a single check.
+ * <p>
+ * FlightRecorderEvents is only ever loaded by name, so that this class links on JVMs without jdk.jfr, and so that the
+ * library still compiles with --release 8, which has no jdk.jfr API - see the no-jfr profile in the pom.
+ */
+final class FlightRecorderSupport {
+
+    private static final Events EVENTS = loadEvents();
+
+    private FlightRecorderSupport() {
+    }
+
+    static Object beginRestCall() {
+        return EVENTS == null ? null : EVENTS.beginRestCall();
+    }
+
+    static void endRestCall(final Object token, final ApiEndpoint endpoint, final int status, final long bytes) {
+        if (token != null) {
+            EVENTS.endRestCall(token, endpoint, status, bytes);
+        }
+    }
+
+    static Object beginPasswordHash() {
+        return EVENTS == null ? null : EVENTS.beginPasswordHash();
+    }
+
+    static void endPasswordHash(final Object token, final PasswordType passwordType) {
+        if (token != null) {
+            EVENTS.endPasswordHash(token, passwordType);
+        }
+    }
+
+    static Object beginArgon2() {
+        return EVENTS == null ? null : EVENTS.beginArgon2();
+    }
+
+    static void endArgon2(final Object token) {
+        if (token != null) {
+            EVENTS.endArgon2(token);
+        }
+    }
+
+    private static Events loadEvents() {
+        try {
+            Class.forName("jdk.jfr.EventType");
+            // also fails if our event classes can't be registered on this JVM, or weren't compiled into the jar
+            return (Events) Class.forName("com.enzoic.client.FlightRecorderEvents").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        } catch (LinkageError ex) {
+            return null;
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The events, implemented by FlightRecorderEvents.
+     */
+    interface Events {
+
+        Object beginRestCall();
+
+        void endRestCall(Object token, ApiEndpoint endpoint, int status, long bytes);
+
+        Object beginPasswordHash();
+
+        void endPasswordHash(Object token, PasswordType passwordType);
+
+        Object beginArgon2();
+
+        void endArgon2(Object token);
+    }
+}
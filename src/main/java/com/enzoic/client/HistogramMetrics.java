@@ -0,0 +1,81 @@
+package com.enzoic.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A built-in EnzoicMetrics implementation which records every timing into a LatencyHistogram and counts API
+ * requests by endpoint and outcome.  Recording does not allocate.
+ */
+public class HistogramMetrics implements EnzoicMetrics {
+
+    private static final int OUTCOMES = Outcome.values().length;
+
+    private final LatencyHistogram[] phaseLatencies = new LatencyHistogram[Phase.values().length];
+    private final LatencyHistogram[] passwordHashLatencies = new LatencyHistogram[PasswordType.values().length];
+    private final LatencyHistogram[] callLatencies = new LatencyHistogram[ApiEndpoint.values().length];
+    private final AtomicLongArray callCounts =
+            new AtomicLongArray(ApiEndpoint.values().length * OUTCOMES);
+
+    public HistogramMetrics() {
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            phaseLatencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < passwordHashLatencies.length; i++) {
+            passwordHashLatencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < callLatencies.length; i++) {
+            callLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void recordPhase(final Phase phase, final PasswordType passwordType, final long durationInNanos) {
+        phaseLatencies[phase.ordinal()].record(durationInNanos);
+        if (passwordType != null) {
+            passwordHashLatencies[passwordType.ordinal()].record(durationInNanos);
+        }
+    }
+
+    @Override
+    public void recordCall(final ApiEndpoint endpoint, final Outcome outcome, final long durationInNanos) {
+        callLatencies[endpoint.ordinal()].record(durationInNanos);
+        callCounts.incrementAndGet(endpoint.ordinal() * OUTCOMES + outcome.ordinal());
+    }
+
+    /**
+     * The latencies recorded for a phase of CheckCredentials across all calls
+     * @param phase the phase
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getPhaseLatency(final Phase phase) {
+        return phaseLatencies[phase.ordinal()];
+    }
+
+    /**
+     * The latencies recorded for calculating password hashes of a given type
+     * @param passwordType the hash type
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getPasswordHashLatency(final PasswordType passwordType) {
+        return passwordHashLatencies[passwordType.ordinal()];
+    }
+
+    /**
+     * The latencies recorded for requests to an API endpoint, regardless of outcome
+     * @param endpoint the endpoint
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getCallLatency(final ApiEndpoint endpoint) {
+        return callLatencies[endpoint.ordinal()];
+    }
+
+    /**
+     * The number of requests to an API endpoint with a given outcome
+     * @param endpoint the endpoint
+     * @param outcome  the outcome
+     * @return long
+     */
+    public long getCallCount(final ApiEndpoint endpoint, final Outcome outcome) {
+        return callCounts.get(endpoint.ordinal() * OUTCOMES + outcome.ordinal());
+    }
+}
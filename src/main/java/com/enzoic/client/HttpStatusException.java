@@ -0,0 +1,23 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the Enzoic API responds with an unexpected HTTP status - internal use only.  Callers see it as an
+ * IOException, which is how HttpURLConnection itself reports these failures.
+ */
+class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    HttpStatusException(final int status, final String message) {
+        super(message);
+        this.status = status;
+    }
+
+    int getStatus() {
+        return status;
+    }
+}
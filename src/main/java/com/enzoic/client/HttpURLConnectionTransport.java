@@ -0,0 +1,77 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The default Transport, which sends requests with HttpURLConnection - internal use only, see Transport.DEFAULT
+ */
+final class HttpURLConnectionTransport implements Transport {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    @Override
+    public TransportResponse send(final TransportRequest request) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(request.getURL()).openConnection();
+        // lets an interrupt abort the request rather than waiting for it to complete or time out
+        ConnectionWatchdog.register(conn);
+        try {
+            conn.setConnectTimeout(request.getTimeout());
+            conn.setReadTimeout(request.getTimeout());
+            conn.setRequestMethod(request.getMethod());
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            Deadline deadline = request.getDeadline();
+            if (deadline != null) {
+                // the connect and read timeouts apply separately, so the read only gets what the connect left over
+                conn.connect();
+                conn.setReadTimeout(deadline.getRequestTimeout(request.getTimeout()));
+            }
+
+            int status = conn.getResponseCode();
+
+            Map<String, String> headers = new HashMap<String, String>();
+            for (Map.Entry<String, List<String>> header : conn.getHeaderFields().entrySet()) {
+                // the status line has a null name
+                if (header.getKey() != null && !header.getValue().isEmpty()) {
+                    headers.put(header.getKey(), header.getValue().get(0));
+                }
+            }
+
+            InputStream stream = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            byte[] body = stream == null ? EMPTY : IOUtils.toByteArray(stream);
+
+            return new TransportResponse(status, headers, body);
+        } finally {
+            ConnectionWatchdog.unregister(conn);
+        }
+    }
+
+    /**
+     * Opens a connection to a URL and leaves it in HttpURLConnection's keep-alive pool, so that the next request to the
+     * same host can reuse it instead of waiting for a TCP and TLS handshake.  Any HTTP status will do, as long as the
+     * response is read to the end.
+     */
+    static void preconnect(final String url, final int timeout) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+        conn.setRequestProperty("Accept", "application/json");
+
+        int status = conn.getResponseCode();
+        InputStream stream = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        if (stream != null) {
+            IOUtils.toByteArray(stream);
+            stream.close();
+        }
+    }
+}
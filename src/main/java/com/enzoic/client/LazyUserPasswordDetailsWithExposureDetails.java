@@ -0,0 +1,51 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A UserPasswordDetailsWithExposureDetails which only looks up its Exposure details the first time they are requested
+ */
+class LazyUserPasswordDetailsWithExposureDetails extends UserPasswordDetailsWithExposureDetails {
+
+    /**
+     * Looks up the details for a set of Exposure IDs
+     */
+    interface Resolver {
+        ExposureDetails[] resolve(String[] exposureIDs) throws IOException;
+    }
+
+    private final String[] exposureIDs;
+    private final Resolver resolver;
+    private volatile ExposureDetails[] exposures;
+
+    LazyUserPasswordDetailsWithExposureDetails(final UserPasswordDetails passwordDetails, final Resolver resolver) {
+        super(passwordDetails.getHashType(), passwordDetails.getPassword(), passwordDetails.getSalt(), null);
+        this.exposureIDs = passwordDetails.getExposures() == null ? new String[0] : passwordDetails.getExposures();
+        this.resolver = resolver;
+    }
+
+    /**
+     * An array of ExposureDetails.  These are looked up from the Enzoic API on the first call.
+     * @return ExposureDetails[]
+     * @throws UncheckedIOException Could not communicate with Enzoic server.
+     */
+    @Override
+    public ExposureDetails[] getExposures() {
+        ExposureDetails[] result = exposures;
+        if (result == null) {
+            synchronized (this) {
+                result = exposures;
+                if (result == null) {
+                    try {
+                        result = resolver.resolve(exposureIDs);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    exposures = result;
+                }
+            }
+        }
+        return result;
+    }
+}
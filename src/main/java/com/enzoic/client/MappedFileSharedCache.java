@@ -0,0 +1,358 @@
+package com.enzoic.client;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A SharedCache held in a memory-mapped file, which processes on the same host share by opening the same file - e.g.
+ * several JVMs on one node, or containers with a shared volume.  Put the file on a RAM-backed filesystem such as
+ * /dev/shm so the cache is never written to disk.
+ * <p>
+ * The file is a fixed-size hash table of 4-way buckets, each guarded by a byte-range file lock, so it is safe to use
+ * from any number of threads and processes at once.  File locks are held per process, so instances in the same process
+ * which open the same file share one mapping and its in-process locks rather than locking the file against each other.
+ * A put to a full bucket evicts the entry which expires soonest.  Every process must open the file with the same
+ * maxEntries and maxValueLength; the first to open it creates it.
+ * <p>
+ * The file holds whatever the caches put in it, which for the user passwords cache includes users' passwords, so it is
+ * created readable and writable by its owner only where the filesystem supports POSIX permissions, and every process
+ * sharing it must run as the same user.  If you create the file yourself, restrict it in the same way.
+ */
+public final class MappedFileSharedCache implements SharedCache, Closeable {
+
+    private static final int MAGIC = 0x454E5A4C; // "ENZL"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 64;
+
+    private static final int WAYS = 4;
+    private static final int KEY_LENGTH = 32;
+    private static final int MAX_NAMESPACE_LENGTH = 32;
+
+    // slot layout: [expiry:8][value length:4][namespace length:1][unused:3][namespace:32][key:32][value:maxValueLength]
+    // an expiry of 0 marks an empty slot
+    private static final int EXPIRY_OFFSET = 0;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int NAMESPACE_LENGTH_OFFSET = 12;
+    private static final int NAMESPACE_OFFSET = 16;
+    private static final int KEY_OFFSET = NAMESPACE_OFFSET + MAX_NAMESPACE_LENGTH;
+    private static final int VALUE_OFFSET = KEY_OFFSET + KEY_LENGTH;
+
+    // a file lock is held per process, so threads in this process must not lock the same bucket at once
+    private static final int LOCK_STRIPES = 64;
+
+    // the files open in this process, by canonical path - guarded by itself
+    private static final Map<String, MappedFile> OPEN_FILES = new HashMap<String, MappedFile>();
+
+    /**
+     * A mapped file and the locks which keep this process's threads from overlapping their file locks
+     */
+    private static final class MappedFile {
+        final String path;
+        final RandomAccessFile file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final Object[] stripes = new Object[LOCK_STRIPES];
+        // guarded by OPEN_FILES
+        int openCount;
+
+        MappedFile(final String path, final RandomAccessFile file, final FileChannel channel,
+                   final MappedByteBuffer buffer) {
+            this.path = path;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                stripes[i] = new Object();
+            }
+        }
+    }
+
+    private final MappedFile mapped;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Object[] stripes;
+    private final int bucketCount;
+    private final int maxValueLength;
+    private final int slotSize;
+    // guarded by OPEN_FILES
+    private boolean closed;
+
+    /**
+     * Opens the cache file, creating it if it does not exist.
+     *
+     * @param file           The file to map.
+     * @param maxEntries     The number of entries the file holds - it takes roughly (maxValueLength + 80) bytes each.
+     * @param maxValueLength The maximum length of a value in bytes.  Longer values are not cached.  Entries for the
+     *                       user passwords cache are the largest, at up to 4KB.
+     * @throws IOException the file could not be created or mapped, or was created with different settings
+     */
+    public MappedFileSharedCache(final File file, final int maxEntries, final int maxValueLength) throws IOException {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        if (maxValueLength <= 0) {
+            throw new IllegalArgumentException("maxValueLength must be greater than 0");
+        }
+
+        this.bucketCount = (maxEntries + WAYS - 1) / WAYS;
+        this.maxValueLength = maxValueLength;
+        // round up to 8 bytes so the expiry times stay aligned
+        this.slotSize = (VALUE_OFFSET + maxValueLength + 7) & ~7;
+        long length = HEADER_LENGTH + (long) bucketCount * WAYS * slotSize;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxEntries and maxValueLength are too large for a single file");
+        }
+
+        String path = file.getCanonicalPath();
+        synchronized (OPEN_FILES) {
+            MappedFile open = OPEN_FILES.get(path);
+            if (open == null) {
+                open = map(file, path, length, bucketCount, maxValueLength);
+                OPEN_FILES.put(path, open);
+            } else if (open.buffer.getInt(8) != bucketCount || open.buffer.getInt(12) != maxValueLength) {
+                throw new IOException(file + " was created with a different maxEntries or maxValueLength");
+            }
+            open.openCount++;
+            this.mapped = open;
+        }
+        this.channel = mapped.channel;
+        this.buffer = mapped.buffer;
+        this.stripes = mapped.stripes;
+    }
+
+    private static MappedFile map(final File file, final String path, final long length, final int bucketCount,
+                                  final int maxValueLength) throws IOException {
+        createOwnerOnly(file);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // stops another process reading the header while this one is creating the file
+            FileLock lock = channel.lock(0, HEADER_LENGTH, false);
+            try {
+                boolean created = randomAccessFile.length() == 0;
+                if (created) {
+                    randomAccessFile.setLength(length);
+                } else {
+                    checkHeader(file, channel, bucketCount, maxValueLength);
+                    // mapping a short file would grow it, and reads past its original end then fail with an Error
+                    if (randomAccessFile.length() < length) {
+                        throw new IOException(file + " is shorter than its header says - it may have been truncated");
+                    }
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                if (created) {
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(4, VERSION);
+                    buffer.putInt(8, bucketCount);
+                    buffer.putInt(12, maxValueLength);
+                }
+                return new MappedFile(path, randomAccessFile, channel, buffer);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            randomAccessFile.close();
+            throw ex;
+        }
+    }
+
+    private static void checkHeader(final File file, final FileChannel channel, final int bucketCount,
+                                    final int maxValueLength) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException(file + " is not an Enzoic shared cache");
+            }
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException(file + " is not an Enzoic shared cache");
+        }
+        if (header.getInt(8) != bucketCount || header.getInt(12) != maxValueLength) {
+            throw new IOException(file + " was created with a different maxEntries or maxValueLength");
+        }
+    }
+
+    private static void createOwnerOnly(final File file) throws IOException {
+        if (file.exists()) {
+            return;
+        }
+        try {
+            FileAttribute<Set<PosixFilePermission>> ownerOnly =
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+            Files.createFile(file.toPath(), ownerOnly);
+        } catch (UnsupportedOperationException ex) {
+            // not a POSIX filesystem - the best we can do is clear the access of everyone else
+            try {
+                Files.createFile(file.toPath());
+            } catch (FileAlreadyExistsException alreadyExists) {
+                return;
+            }
+            file.setReadable(false, false);
+            file.setWritable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(true, true);
+        } catch (FileAlreadyExistsException ex) {
+            // another process created it first
+        }
+    }
+
+    @Override
+    public byte[] get(final String namespace, final byte[] key) throws IOException {
+        byte[] namespaceBytes = namespaceBytes(namespace);
+        checkKey(key);
+
+        int bucket = bucketFor(namespaceBytes, key);
+        long bucketBase = bucketBase(bucket);
+        synchronized (stripes[bucket % LOCK_STRIPES]) {
+            FileLock lock = channel.lock(bucketBase, (long) WAYS * slotSize, true);
+            try {
+                long now = System.currentTimeMillis();
+                for (int way = 0; way < WAYS; way++) {
+                    int base = (int) bucketBase + way * slotSize;
+                    if (buffer.getLong(base + EXPIRY_OFFSET) > now && matches(base, namespaceBytes, key)) {
+                        int length = buffer.getInt(base + LENGTH_OFFSET);
+                        if (length < 0 || length > maxValueLength) {
+                            return null;
+                        }
+                        byte[] value = new byte[length];
+                        ByteBuffer view = buffer.duplicate();
+                        view.position(base + VALUE_OFFSET);
+                        view.get(value);
+                        return value;
+                    }
+                }
+                return null;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    @Override
+    public void put(final String namespace, final byte[] key, final byte[] value, final long ttlInMs)
+            throws IOException {
+        byte[] namespaceBytes = namespaceBytes(namespace);
+        checkKey(key);
+        if (value.length > maxValueLength || ttlInMs <= 0) {
+            return;
+        }
+
+        int bucket = bucketFor(namespaceBytes, key);
+        long bucketBase = bucketBase(bucket);
+        synchronized (stripes[bucket % LOCK_STRIPES]) {
+            FileLock lock = channel.lock(bucketBase, (long) WAYS * slotSize, false);
+            try {
+                // replace the key's existing entry if it has one, otherwise the entry which expires soonest, which is
+                // an empty slot if there is one
+                int target = 0;
+                long targetExpiry = Long.MAX_VALUE;
+                for (int way = 0; way < WAYS; way++) {
+                    int base = (int) bucketBase + way * slotSize;
+                    long expiry = buffer.getLong(base + EXPIRY_OFFSET);
+                    if (expiry != 0 && matches(base, namespaceBytes, key)) {
+                        target = base;
+                        break;
+                    }
+                    if (expiry < targetExpiry) {
+                        target = base;
+                        targetExpiry = expiry;
+                    }
+                }
+
+                buffer.putInt(target + LENGTH_OFFSET, value.length);
+                buffer.put(target + NAMESPACE_LENGTH_OFFSET, (byte) namespaceBytes.length);
+                ByteBuffer view = buffer.duplicate();
+                view.position(target + NAMESPACE_OFFSET);
+                view.put(namespaceBytes);
+                view.position(target + KEY_OFFSET);
+                view.put(key);
+                view.position(target + VALUE_OFFSET);
+                view.put(value);
+                buffer.putLong(target + EXPIRY_OFFSET, System.currentTimeMillis() + ttlInMs);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Closes the file once every instance in this process which opened it has been closed.  Java cannot unmap a file
+     * explicitly, so the mapping itself is only released when it is garbage collected.  The entries remain in the file
+     * for other processes.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN_FILES) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (--mapped.openCount == 0) {
+                OPEN_FILES.remove(mapped.path);
+                mapped.file.close();
+            }
+        }
+    }
+
+    private long bucketBase(final int bucket) {
+        return HEADER_LENGTH + (long) bucket * WAYS * slotSize;
+    }
+
+    private int bucketFor(final byte[] namespace, final byte[] key) {
+        // keys are SHA-256 hashes, so their first bytes are already uniformly distributed
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (key[i] & 0xFF);
+        }
+        for (byte b : namespace) {
+            hash = hash * 31 + b;
+        }
+        return (int) ((hash & Long.MAX_VALUE) % bucketCount);
+    }
+
+    private boolean matches(final int base, final byte[] namespace, final byte[] key) {
+        if (buffer.get(base + NAMESPACE_LENGTH_OFFSET) != namespace.length) {
+            return false;
+        }
+        for (int i = 0; i < namespace.length; i++) {
+            if (buffer.get(base + NAMESPACE_OFFSET + i) != namespace[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            if (buffer.get(base + KEY_OFFSET + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] namespaceBytes(final String namespace) {
+        byte[] bytes = namespace.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAMESPACE_LENGTH) {
+            throw new IllegalArgumentException("Namespace must be at most " + MAX_NAMESPACE_LENGTH + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void checkKey(final byte[] key) {
+        if (key == null || key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Key must be " + KEY_LENGTH + " bytes");
+        }
+    }
+}
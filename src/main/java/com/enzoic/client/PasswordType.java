@@ -5,7 +5,7 @@ import com.google.gson.annotations.SerializedName;
 /**
  * Specifies a hash algorithm type for a password
  */
-enum PasswordType {
+public enum PasswordType {
     @SerializedName("0")
     Plaintext (0),
 
@@ -146,6 +146,14 @@ enum PasswordType {
 
     private int numVal;
 
+    private static final PasswordType[] byNumVal = new PasswordType[100];
+
+    static {
+        for (PasswordType passwordType : values()) {
+            byNumVal[passwordType.numVal] = passwordType;
+        }
+    }
+
     PasswordType(int numVal) {
         this.numVal = numVal;
     }
@@ -153,4 +161,13 @@ enum PasswordType {
     public int getNumVal() {
         return numVal;
     }
+
+    /**
+     * Looks up a PasswordType by its numeric value
+     * @param numVal the numeric value of the PasswordType
+     * @return the matching PasswordType, or null if there is none
+     */
+    static PasswordType fromNumVal(final int numVal) {
+        return numVal >= 0 && numVal < byNumVal.length ? byNumVal[numVal] : null;
+    }
 }
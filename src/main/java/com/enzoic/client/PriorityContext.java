@@ -0,0 +1,32 @@
+package com.enzoic.client;
+
+/**
+ * Holds the RequestPriority of the calls made by the current thread - internal use only
+ */
+final class PriorityContext {
+
+    private static final ThreadLocal<RequestPriority> PRIORITY = new ThreadLocal<RequestPriority>();
+
+    private PriorityContext() {
+    }
+
+    /**
+     * Returns the priority set for the current thread, or defaultPriority if none has been set
+     */
+    static RequestPriority current(final RequestPriority defaultPriority) {
+        RequestPriority priority = PRIORITY.get();
+        return priority == null ? defaultPriority : priority;
+    }
+
+    static RequestPriority get() {
+        return PRIORITY.get();
+    }
+
+    static void set(final RequestPriority priority) {
+        if (priority == null) {
+            PRIORITY.remove();
+        } else {
+            PRIORITY.set(priority);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.enzoic.client;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A Transport which passes requests on to another transport and records each exchange - the response's status,
+ * headers and body, or the failure, and how long it took - to a cassette file for ReplayTransport.  Request headers,
+ * and so the API credentials, are not recorded, but the response bodies are, so a cassette should be protected like
+ * any other data returned by the Enzoic API.
+ * <p>
+ * Exchanges are written as they complete.  Close the transport once recording is finished to flush the file; requests
+ * sent after that are passed on without being recorded.
+ * <pre>
+ * RecordingTransport recorder = new RecordingTransport(Transport.DEFAULT, new File("enzoic.cassette"));
+ * enzoic.SetTransport(recorder);
+ * ...
+ * recorder.close();
+ * </pre>
+ */
+public final class RecordingTransport implements Transport, Closeable {
+
+    private final Transport delegate;
+    // guarded by this
+    private DataOutputStream out;
+    private long exchangeCount;
+
+    /**
+     * @param delegate The transport to send requests with, typically Transport.DEFAULT.
+     * @param cassette The file to record to.  It is overwritten if it exists.
+     * @throws IOException the file could not be created
+     */
+    public RecordingTransport(final Transport delegate, final File cassette) throws IOException {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate transport cannot be null");
+        }
+        this.delegate = delegate;
+
+        FileOutputStream file = new FileOutputStream(cassette);
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(file)));
+            out.writeInt(Cassette.MAGIC);
+            out.writeByte(Cassette.VERSION);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public TransportResponse send(final TransportRequest request) throws IOException {
+        Cassette.Exchange exchange = new Cassette.Exchange();
+        exchange.method = request.getMethod();
+        exchange.path = Cassette.path(request.getURL());
+
+        long start = System.nanoTime();
+        try {
+            TransportResponse response = delegate.send(request);
+            exchange.durationNanos = System.nanoTime() - start;
+            exchange.kind = Cassette.RESPONSE;
+            exchange.status = response.getStatus();
+            exchange.headers = response.getHeaders();
+            exchange.body = response.getBody();
+            record(exchange);
+            return response;
+        } catch (InterruptedIOException ex) {
+            exchange.durationNanos = System.nanoTime() - start;
+            // a cancellation is the caller giving up, not something the API did, so only timeouts are recorded
+            if (ex instanceof SocketTimeoutException) {
+                exchange.kind = Cassette.TIMEOUT;
+                exchange.message = ex.getMessage();
+                record(exchange);
+            }
+            throw ex;
+        } catch (IOException ex) {
+            exchange.durationNanos = System.nanoTime() - start;
+            exchange.kind = Cassette.ERROR;
+            exchange.message = ex.getMessage();
+            record(exchange);
+            throw ex;
+        }
+    }
+
+    /**
+     * The number of exchanges recorded so far
+     * @return long
+     */
+    public synchronized long getExchangeCount() {
+        return exchangeCount;
+    }
+
+    /**
+     * Finishes the cassette file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            DataOutputStream closing = out;
+            out = null;
+            closing.close();
+        }
+    }
+
+    private synchronized void record(final Cassette.Exchange exchange) throws IOException {
+        if (out != null) {
+            Cassette.write(out, exchange);
+            exchangeCount++;
+        }
+    }
+}
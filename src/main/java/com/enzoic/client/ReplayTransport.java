@@ -0,0 +1,152 @@
+package com.enzoic.client;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A Transport which serves the exchanges recorded by a RecordingTransport back without a network, so that a workload
+ * captured once can be replayed against any version of the client for comparable latency and CPU measurements.
+ * <p>
+ * Requests are matched to recorded exchanges by method, path and query string, ignoring the host and the credentials.
+ * Where the same request was recorded more than once, its responses are served in the order they were recorded,
+ * starting again from the first once they run out.  A request with no recorded exchange fails with an IOException.
+ * <pre>
+ * enzoic.SetTransport(new ReplayTransport(new File("enzoic.cassette"), ReplayTransport.Timing.ORIGINAL));
+ * </pre>
+ */
+public final class ReplayTransport implements Transport {
+
+    /**
+     * How long replayed exchanges take
+     */
+    public enum Timing {
+        /** As long as each exchange took when it was recorded, subject to the request timeout */
+        ORIGINAL,
+        /** Replayed exchanges complete immediately, so only the client's own work is measured */
+        NONE
+    }
+
+    private static final class Recording {
+        final Cassette.Exchange[] exchanges;
+        final AtomicInteger next = new AtomicInteger();
+
+        Recording(final List<Cassette.Exchange> exchanges) {
+            this.exchanges = exchanges.toArray(new Cassette.Exchange[0]);
+        }
+    }
+
+    private final Timing timing;
+    private final Map<String, Recording> recordings = new HashMap<String, Recording>();
+    private final int exchangeCount;
+
+    /**
+     * @param cassette A file recorded by RecordingTransport.
+     * @param timing   How long replayed exchanges take.
+     * @throws IOException the file could not be read or is not a cassette
+     */
+    public ReplayTransport(final File cassette, final Timing timing) throws IOException {
+        if (timing == null) {
+            throw new IllegalArgumentException("Timing cannot be null");
+        }
+        this.timing = timing;
+
+        Map<String, List<Cassette.Exchange>> exchangesByKey = new HashMap<String, List<Cassette.Exchange>>();
+        int count = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(cassette))));
+        try {
+            if (in.readInt() != Cassette.MAGIC) {
+                throw new IOException(cassette + " is not an Enzoic cassette");
+            }
+            int version = in.readUnsignedByte();
+            if (version != Cassette.VERSION) {
+                throw new IOException("Unsupported cassette version " + version);
+            }
+
+            while (true) {
+                Cassette.Exchange exchange;
+                try {
+                    exchange = Cassette.read(in);
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                String key = Cassette.key(exchange.method, exchange.path);
+                List<Cassette.Exchange> exchanges = exchangesByKey.get(key);
+                if (exchanges == null) {
+                    exchanges = new ArrayList<Cassette.Exchange>(1);
+                    exchangesByKey.put(key, exchanges);
+                }
+                exchanges.add(exchange);
+                count++;
+            }
+        } finally {
+            in.close();
+        }
+
+        for (Map.Entry<String, List<Cassette.Exchange>> entry : exchangesByKey.entrySet()) {
+            recordings.put(entry.getKey(), new Recording(entry.getValue()));
+        }
+        this.exchangeCount = count;
+    }
+
+    @Override
+    public TransportResponse send(final TransportRequest request) throws IOException {
+        String key = Cassette.key(request.getMethod(), Cassette.path(request.getURL()));
+        Recording recording = recordings.get(key);
+        if (recording == null) {
+            throw new IOException("No recorded exchange for " + key);
+        }
+        // masked so the index stays positive when the counter wraps
+        int index = (recording.next.getAndIncrement() & Integer.MAX_VALUE) % recording.exchanges.length;
+        Cassette.Exchange exchange = recording.exchanges[index];
+
+        if (timing == Timing.ORIGINAL) {
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(request.getTimeout());
+            if (timeoutNanos > 0 && exchange.durationNanos > timeoutNanos) {
+                pause(timeoutNanos);
+                throw new SocketTimeoutException("Read timed out");
+            }
+            pause(exchange.durationNanos);
+        }
+
+        switch (exchange.kind) {
+            case Cassette.TIMEOUT:
+                throw new SocketTimeoutException(exchange.message);
+            case Cassette.ERROR:
+                throw new IOException(exchange.message);
+            default:
+                return new TransportResponse(exchange.status, exchange.headers, exchange.body.clone());
+        }
+    }
+
+    /**
+     * The number of exchanges in the cassette
+     * @return int
+     */
+    public int getExchangeCount() {
+        return exchangeCount;
+    }
+
+    private static void pause(final long nanos) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Enzoic API request cancelled");
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Sends a second, "hedged" copy of a GET request when the first has not completed within a percentile of the recent
+ * latency of its endpoint, and uses whichever response arrives first - internal use only.
+ * <p>
+ * Latency is tracked in windows of WINDOW_SIZE requests per endpoint and the hedge delay is taken from the last full
+ * window, so it follows changes in the latency of the API.  Requests are not hedged until MIN_SAMPLES successful
+ * requests have been seen for the endpoint.
+ * <p>
+ * The hedge is an extra request on top of the caller's, so it must get past the rate and concurrency limits on its
+ * own.  It may throw Declined when they have no room for it right away, in which case only the original is awaited.
+ */
+class RequestHedging {
+
+    /**
+     * Thrown by a hedge which was not sent
+     */
+    static final class Declined extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        Declined() {
+            super("Hedged request not sent");
+        }
+    }
+
+    private static final int WINDOW_SIZE = 1000;
+    private static final int MIN_SAMPLES = 20;
+    private static final int MAX_THREADS = 256;
+
+    private final double percentile;
+    // idle threads are reused, and new ones only started when none are idle - up to MAX_THREADS, beyond which
+    // requests are simply not hedged
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(0, MAX_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new WorkScheduler.DaemonThreadFactory("enzoic-hedge"));
+    private final LatencyWindow[] windows = new LatencyWindow[ApiEndpoint.values().length];
+
+    RequestHedging(final double percentile) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+
+        this.percentile = percentile;
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new LatencyWindow();
+        }
+    }
+
+    double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Records the latency of a successful request
+     */
+    void record(final ApiEndpoint endpoint, final long durationInNanos) {
+        windows[endpoint.ordinal()].record(durationInNanos);
+    }
+
+    /**
+     * Returns the current hedge delay for an endpoint, or -1 if there are not yet enough samples
+     */
+    long getDelayNanos(final ApiEndpoint endpoint) {
+        return windows[endpoint.ordinal()].getDelayNanos();
+    }
+
+    /**
+     * Makes a request, hedging it if it is slow
+     *
+     * @param request the request
+     * @param hedge   sends a copy of the request, or throws Declined
+     */
+    <T> T execute(final ApiEndpoint endpoint, final Callable<T> request, final Callable<T> hedge)
+            throws IOException {
+        long delayNanos = getDelayNanos(endpoint);
+        if (delayNanos < 0) {
+            return callDirectly(request);
+        }
+
+        CompletionService<T> completion = new ExecutorCompletionService<T>(executor);
+        List<Future<T>> requests = new ArrayList<Future<T>>(2);
+        try {
+            requests.add(completion.submit(request));
+        } catch (RejectedExecutionException ex) {
+            // every hedging thread is busy - don't make things worse
+            return callDirectly(request);
+        }
+
+        try {
+            Future<T> first = completion.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                try {
+                    requests.add(completion.submit(hedge));
+                } catch (RejectedExecutionException ex) {
+                    // no thread for the hedge - just wait for the original
+                }
+                first = completion.take();
+            }
+
+            try {
+                return Enzoic.AwaitResult(first);
+            } catch (IOException ex) {
+                if (requests.size() < 2) {
+                    throw ex;
+                }
+            } catch (RuntimeException ex) {
+                if (requests.size() < 2) {
+                    throw ex;
+                }
+            }
+
+            // the first response was a failure, or the hedge was declined, but the other request may still succeed
+            return Enzoic.AwaitResult(completion.take());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for Enzoic API response");
+        } finally {
+            Enzoic.CancelAll(requests);
+        }
+    }
+
+    /**
+     * Stops the hedging threads once they finish their current requests.  Requests made afterwards are sent directly.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private static <T> T callDirectly(final Callable<T> request)
+            throws IOException {
+        try {
+            return request.call();
+        } catch (IOException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private class LatencyWindow {
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile long delayNanos = -1;
+
+        void record(final long durationInNanos) {
+            LatencyHistogram histogram = current;
+            histogram.record(durationInNanos);
+
+            if (histogram.getCount() >= WINDOW_SIZE) {
+                synchronized (this) {
+                    if (current == histogram) {
+                        delayNanos = histogram.getValueAtPercentile(percentile);
+                        current = new LatencyHistogram();
+                    }
+                }
+            }
+        }
+
+        long getDelayNanos() {
+            long result = delayNanos;
+            if (result < 0) {
+                // still filling the first window
+                LatencyHistogram histogram = current;
+                if (histogram.getCount() >= MIN_SAMPLES) {
+                    result = histogram.getValueAtPercentile(percentile);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.enzoic.client;
+
+/**
+ * The priority of the calls made by a thread - see Enzoic.SetThreadPriority.  Higher priorities get preferential
+ * access to request and hashing threads, rate limit tokens and concurrency limit slots.
+ */
+public enum RequestPriority {
+    /**
+     * Latency-sensitive calls, e.g. checks made during a login.  A share of every resource is reserved for these.
+     */
+    INTERACTIVE,
+
+    /**
+     * The default for calls on a single user
+     */
+    NORMAL,
+
+    /**
+     * Background work such as enrichment jobs and audit scans.  The default for calls on many users, such as
+     * GetExposureDetailsForUsers.
+     */
+    BULK
+}
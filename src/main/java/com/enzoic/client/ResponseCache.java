@@ -0,0 +1,302 @@
+package com.enzoic.client;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.enzoic.client.utilities.Hashing;
+import com.enzoic.client.utilities.OffHeapHashMap;
+
+/**
+ * A cache of API responses keyed by a SHA-256 hash, stored off-heap in a compact binary encoding - internal use only
+ * <p>
+ * If a SharedCache is set, it is a second level behind the off-heap store: looked in on a miss, with hits copied into
+ * the off-heap store, and written through to on every put.  Any exception it throws is counted and treated as a
+ * miss.  Both levels hold the same encoding - a version, an expiry time and the value - so entries written by an
+ * incompatible client version are ignored rather than misread.
+ * <p>
+ * A scoped view shares its parent's off-heap store, and so its memory budget, but sees only its own entries: each of
+ * its keys is XORed with a mask derived from the scope name before it reaches either level.  EnzoicTenantPool gives
+ * each tenant a view scoped by its tenant ID, so tenants' responses never mix, and the same tenant on another node
+ * shares its entries through the SharedCache.  Clearing a view moves it to the next generation of masks for its scope,
+ * so it shares entries with the views on other nodes which have been cleared as many times - e.g. when the whole fleet
+ * is cleared - but not with those which have not.  A new view starts at the generation to which its scope's views
+ * have been cleared, so it never sees the entries they orphaned.
+ */
+class ResponseCache<T> {
+
+    // increment whenever a codec changes
+    static final int ENCODING_VERSION = 1;
+
+    /**
+     * Encodes and decodes cached values
+     */
+    interface Codec<T> {
+        void write(DataOutputStream out, T value) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    // the version byte comes first, then the expiry time
+    private static final int EXPIRY_OFFSET = 1;
+
+    private final String namespace;
+    private final OffHeapHashMap store;
+    private final Codec<T> codec;
+    // null unless this is a scoped view
+    private final ResponseCache<T> parent;
+    private final String scope;
+    private volatile byte[] scopeMask;
+    // the number of times each scope's views have been cleared, guarded by this
+    private final Map<String, Integer> scopeGenerations = new HashMap<String, Integer>();
+    private volatile long ttlInMs;
+    private volatile SharedCache sharedCache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedHits = new AtomicLong();
+    private final AtomicLong sharedErrors = new AtomicLong();
+
+    ResponseCache(final String namespace, final int maxEntries, final int maxValueLength, final long ttlInMs,
+                  final Codec<T> codec) {
+        if (ttlInMs <= 0) {
+            throw new IllegalArgumentException("TTL must be greater than 0");
+        }
+
+        this.namespace = namespace;
+        this.store = new OffHeapHashMap(maxEntries, maxValueLength);
+        this.codec = codec;
+        this.parent = null;
+        this.scope = null;
+        this.ttlInMs = ttlInMs;
+    }
+
+    private ResponseCache(final ResponseCache<T> parent, final String scope) {
+        this.namespace = parent.namespace;
+        this.store = parent.store;
+        this.codec = parent.codec;
+        this.ttlInMs = parent.ttlInMs;
+        this.parent = parent;
+        this.scope = scope;
+        this.scopeMask = parent.scopeMask(scope, false);
+    }
+
+    // the mask for a scope's current generation of entries, after moving it to the next generation if requested
+    private synchronized byte[] scopeMask(final String scope, final boolean nextGeneration) {
+        Integer generation = scopeGenerations.get(scope);
+        int current = generation == null ? 0 : generation;
+        if (nextGeneration) {
+            scopeGenerations.put(scope, ++current);
+        }
+        return current == 0 ? Hashing.sha256Binary(scope) : Hashing.sha256Binary(scope + "#" + current);
+    }
+
+    /**
+     * Creates a view of this cache's store which holds only the entries for the given scope.  The view has its own TTL,
+     * statistics and SharedCache, initially none.
+     */
+    ResponseCache<T> scoped(final String scope) {
+        return new ResponseCache<T>(this, scope);
+    }
+
+    /**
+     * Returns the cached value for a key, or null if there is no unexpired value
+     */
+    T get(final byte[] rawKey) {
+        byte[] key = scopeKey(rawKey);
+        byte[] encoded = store.get(key);
+
+        if (encoded != null) {
+            T value = decode(encoded);
+            if (value != null) {
+                hits.incrementAndGet();
+                return value;
+            }
+            store.remove(key);
+        }
+
+        SharedCache shared = this.sharedCache;
+        if (shared != null) {
+            try {
+                encoded = shared.get(namespace, key);
+            } catch (IOException ex) {
+                sharedErrors.incrementAndGet();
+                encoded = null;
+            } catch (RuntimeException ex) {
+                // a faulty shared cache must not fail the call
+                sharedErrors.incrementAndGet();
+                encoded = null;
+            }
+
+            T value = encoded == null ? null : decode(encoded);
+            if (value != null) {
+                // keep it locally for no longer than a local put would, nor past its shared expiry
+                ByteBuffer entry = ByteBuffer.wrap(encoded);
+                entry.putLong(EXPIRY_OFFSET,
+                        Math.min(entry.getLong(EXPIRY_OFFSET), System.currentTimeMillis() + ttlInMs));
+                store.put(key, encoded);
+
+                sharedHits.incrementAndGet();
+                hits.incrementAndGet();
+                return value;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches a value for a key.  Values which encode to more than the maximum value length are not cached in the
+     * off-heap store.
+     */
+    void put(final byte[] rawKey, final T value) {
+        byte[] key = scopeKey(rawKey);
+        byte[] encoded;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(ENCODING_VERSION);
+            out.writeLong(System.currentTimeMillis() + ttlInMs);
+            codec.write(out, value);
+            out.flush();
+            encoded = bytes.toByteArray();
+        } catch (IOException ex) {
+            // only thrown for strings too long to encode - skip caching this value
+            return;
+        }
+
+        store.put(key, encoded);
+
+        SharedCache shared = this.sharedCache;
+        if (shared != null) {
+            try {
+                shared.put(namespace, key, encoded, ttlInMs);
+            } catch (IOException ex) {
+                sharedErrors.incrementAndGet();
+            } catch (RuntimeException ex) {
+                sharedErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private byte[] scopeKey(final byte[] key) {
+        byte[] mask = this.scopeMask;
+        if (mask == null) {
+            return key;
+        }
+        byte[] result = new byte[key.length];
+        for (int i = 0; i < key.length; i++) {
+            result[i] = (byte) (key[i] ^ mask[i % mask.length]);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes an entry, or returns null if it has expired or was written with a different encoding
+     */
+    private T decode(final byte[] encoded) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+            if (in.readUnsignedByte() == ENCODING_VERSION && in.readLong() > System.currentTimeMillis()) {
+                return codec.read(in);
+            }
+        } catch (IOException ex) {
+            // entry could not be decoded - treat it as a miss and overwrite it on the next put
+        }
+        return null;
+    }
+
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeStrings(final DataOutputStream out, final String[] values) throws IOException {
+        out.writeShort(values == null ? -1 : values.length);
+        if (values != null) {
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    static String[] readStrings(final DataInputStream in) throws IOException {
+        int length = in.readShort();
+        if (length < 0) {
+            return null;
+        }
+        String[] values = new String[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    static void writeDate(final DataOutputStream out, final Date value) throws IOException {
+        out.writeLong(value == null ? Long.MIN_VALUE : value.getTime());
+    }
+
+    static Date readDate(final DataInputStream in) throws IOException {
+        long time = in.readLong();
+        return time == Long.MIN_VALUE ? null : new Date(time);
+    }
+
+    void clear() {
+        if (scope == null) {
+            store.clear();
+        } else {
+            // the store is shared with other scopes, so orphan this scope's entries instead - they are evicted as the
+            // store fills
+            scopeMask = parent.scopeMask(scope, true);
+        }
+    }
+
+    // for a scoped view, the size and evictions are those of the whole shared store
+    int size() {
+        return store.size();
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    long sharedHits() {
+        return sharedHits.get();
+    }
+
+    long sharedErrors() {
+        return sharedErrors.get();
+    }
+
+    void setSharedCache(final SharedCache sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    long evictions() {
+        return store.evictions();
+    }
+
+    long getTTL() {
+        return ttlInMs;
+    }
+
+    void setTTL(final long ttlInMs) {
+        if (ttlInMs <= 0) {
+            throw new IllegalArgumentException("TTL must be greater than 0");
+        }
+        this.ttlInMs = ttlInMs;
+    }
+}
@@ -0,0 +1,103 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Controls how API requests which fail with a transient error are retried - see Enzoic.SetRetryPolicy.  Only GET
+ * requests, which are idempotent, are retried.
+ * <p>
+ * Retries are delayed with exponential backoff and "full jitter": the delay before retry n is a random value between 0
+ * and min(maxDelayInMs, baseDelayInMs * 2^(n - 1)), which prevents many clients from retrying in lockstep after an
+ * outage.
+ * <p>
+ * By default, HTTP 408, 429, 500, 502, 503 and 504 responses, timeouts, refused connections and reset connections are
+ * treated as transient.  Extend this class and override isRetryable to change that classification.
+ */
+public class RetryPolicy {
+
+    /**
+     * Never retries - the default
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseDelayInMs;
+    private final long maxDelayInMs;
+
+    /**
+     * @param maxAttempts   The maximum number of attempts per request, including the first.  1 disables retries.
+     * @param baseDelayInMs The maximum delay before the first retry, in milliseconds.
+     * @param maxDelayInMs  The cap on the maximum delay before any retry, in milliseconds.
+     */
+    public RetryPolicy(final int maxAttempts, final long baseDelayInMs, final long maxDelayInMs) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1");
+        }
+        if (baseDelayInMs < 0 || maxDelayInMs < baseDelayInMs) {
+            throw new IllegalArgumentException("Delays must satisfy 0 <= baseDelayInMs <= maxDelayInMs");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.baseDelayInMs = baseDelayInMs;
+        this.maxDelayInMs = maxDelayInMs;
+    }
+
+    /**
+     * The maximum number of attempts per request, including the first
+     * @return int
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether a request which received this HTTP status should be retried
+     *
+     * @param status the HTTP status code of the response
+     * @return true if the status indicates a transient failure
+     */
+    public boolean isRetryable(final int status) {
+        return status == 408 || status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Whether a request which failed with this exception should be retried
+     *
+     * @param ex the exception thrown while making the request
+     * @return true if the exception indicates a transient failure
+     */
+    public boolean isRetryable(final IOException ex) {
+        if (ex instanceof SocketTimeoutException) {
+            return true;
+        }
+        // other InterruptedIOExceptions mean the calling thread was interrupted
+        if (ex instanceof InterruptedIOException) {
+            return false;
+        }
+        // covers ConnectException, NoRouteToHostException and connection resets, but not SSL or unknown host failures
+        return ex instanceof SocketException;
+    }
+
+    /**
+     * The delay before a retry
+     *
+     * @param retry the number of the retry, starting from 1
+     * @return the delay in milliseconds
+     */
+    public long getDelay(final int retry) {
+        if (maxDelayInMs == 0) {
+            return 0;
+        }
+        int shift = Math.min(retry - 1, 30);
+        // compare before shifting, so that a large base can't overflow into a small or negative ceiling
+        long ceiling = maxDelayInMs;
+        if (baseDelayInMs <= (maxDelayInMs >> shift)) {
+            ceiling = baseDelayInMs << shift;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,41 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+
+/**
+ * Service provider interface for a second level cache of API responses shared between Enzoic instances, typically on
+ * different nodes or in different processes.  Pass an implementation to Enzoic.SetSharedCache and each enabled
+ * in-process cache looks in it on a miss and writes through to it, so the cache is warmed by the whole fleet rather
+ * than by each instance separately.  MappedFileSharedCache is a reference implementation for processes on one host.
+ * <p>
+ * Values are opaque bytes.  They carry their own encoding version and expiry time, which Enzoic checks on every hit,
+ * so an implementation only needs to honour the TTL to reclaim space and may evict entries at any time.  Keys are 32
+ * byte SHA-256 hashes and are unique within a namespace.
+ * <p>
+ * The cache is called concurrently from every thread making API calls and must be thread-safe.  Failures, including
+ * runtime exceptions, are counted and treated as misses rather than failing API calls, but a slow cache slows every call, so remote implementations
+ * should use short timeouts.
+ */
+public interface SharedCache {
+
+    /**
+     * Looks up a value.
+     *
+     * @param namespace the kind of value, e.g. "accounts"
+     * @param key       a 32 byte key
+     * @return the value, or null if there is none
+     * @throws IOException the cache could not be reached
+     */
+    byte[] get(String namespace, byte[] key) throws IOException;
+
+    /**
+     * Stores a value, replacing any existing value for the key.
+     *
+     * @param namespace the kind of value, e.g. "accounts"
+     * @param key       a 32 byte key
+     * @param value     the value
+     * @param ttlInMs   how long the value should be kept
+     * @throws IOException the cache could not be reached
+     */
+    void put(String namespace, byte[] key, byte[] value, long ttlInMs) throws IOException;
+}
@@ -0,0 +1,88 @@
+package com.enzoic.client;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The binary protocol between EnzoicSidecarClient and EnzoicDaemon - internal use only.
+ * <p>
+ * On connecting, the client sends a magic number, the protocol version and the daemon's auth token, and the daemon
+ * answers with a status byte, followed by a message if it refused the connection.  After that both sides exchange
+ * frames, each an int length followed by that many bytes.  A request frame holds a request ID, an operation and its
+ * arguments, and a response frame holds the request ID, a status and either the result or an error message.  Requests
+ * on a connection are handled concurrently, so responses can arrive in any order.
+ */
+final class SidecarProtocol {
+
+    static final int MAGIC = 0x454E5A53; // "ENZS"
+    static final int VERSION = 1;
+
+    // frames larger than this are treated as a corrupt stream
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    // every frame holds at least a request ID and an operation or status
+    static final int MIN_FRAME_LENGTH = 5;
+
+    static final byte OK = 0;
+    // the call failed with an IOException, or the daemon refused the connection
+    static final byte ERROR = 1;
+    // the call failed with a RuntimeException
+    static final byte RUNTIME_ERROR = 2;
+
+    static final byte CHECK_CREDENTIALS = 1;
+    static final byte CHECK_PASSWORD = 2;
+    static final byte CHECK_PASSWORD_EX = 3;
+    static final byte GET_EXPOSURES_FOR_USER = 4;
+    static final byte GET_EXPOSURE_DETAILS = 5;
+    static final byte GET_USER_PASSWORDS = 6;
+
+    private SidecarProtocol() {
+    }
+
+    static void writeFrame(final DataOutputStream out, final byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+        out.flush();
+    }
+
+    static byte[] readFrame(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < MIN_FRAME_LENGTH || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid Enzoic sidecar frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    static void writePasswordTypes(final DataOutputStream out, final PasswordType[] passwordTypes)
+            throws IOException {
+        out.writeShort(passwordTypes == null ? -1 : passwordTypes.length);
+        if (passwordTypes != null) {
+            for (PasswordType passwordType : passwordTypes) {
+                out.writeShort(passwordType.getNumVal());
+            }
+        }
+    }
+
+    static PasswordType[] readPasswordTypes(final DataInputStream in) throws IOException {
+        int length = in.readShort();
+        if (length < 0) {
+            return null;
+        }
+        PasswordType[] passwordTypes = new PasswordType[length];
+        for (int i = 0; i < length; i++) {
+            int numVal = in.readShort();
+            for (PasswordType passwordType : PasswordType.values()) {
+                if (passwordType.getNumVal() == numVal) {
+                    passwordTypes[i] = passwordType;
+                    break;
+                }
+            }
+            if (passwordTypes[i] == null) {
+                throw new IOException("Unknown password type " + numVal);
+            }
+        }
+        return passwordTypes;
+    }
+}
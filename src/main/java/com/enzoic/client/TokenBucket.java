@@ -0,0 +1,108 @@
+package com.enzoic.client;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of API requests made by an Enzoic instance - internal use only.
+ * <p>
+ * Tokens accrue at the configured rate up to the burst size.  Requests of each RequestPriority only take a token when
+ * enough are left to cover the share of the burst held back for higher priorities, so when the bucket is running low,
+ * INTERACTIVE requests get the next token ahead of NORMAL ones, and NORMAL ones ahead of BULK.
+ */
+class TokenBucket {
+
+    // the share of the burst held back from each priority - at most 1, so a full bucket always serves every priority
+    private static final double[] HELD_BACK = { 0, 0.25, 0.5 };
+
+    private final double requestsPerSecond;
+    private final double tokensPerNano;
+    private final double burst;
+    private final double[] tokensNeeded = new double[RequestPriority.values().length];
+
+    // guarded by this
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(final double requestsPerSecond, final int burst) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be greater than 0 and burst at least 1");
+        }
+
+        this.requestsPerSecond = requestsPerSecond;
+        this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        for (RequestPriority priority : RequestPriority.values()) {
+            tokensNeeded[priority.ordinal()] = 1 + (burst - 1) * HELD_BACK[priority.ordinal()];
+        }
+    }
+
+    double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * Takes a token if one is available now
+     *
+     * @return whether a token was taken
+     */
+    synchronized boolean tryAcquire(final RequestPriority priority) {
+        refill();
+        if (tokens >= tokensNeeded[priority.ordinal()]) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes a token, waiting for one if necessary
+     *
+     * @throws SocketTimeoutException if the deadline passes before a token is available
+     */
+    void acquire(final RequestPriority priority, final Deadline deadline)
+            throws InterruptedIOException {
+        double needed = tokensNeeded[priority.ordinal()];
+
+        while (true) {
+            // checked first, so a token is never taken for a request which is already out of time
+            long remainingNanos = deadline == null ? Long.MAX_VALUE : deadline.getRemainingNanos();
+            if (remainingNanos <= 0) {
+                throw new SocketTimeoutException("Time budget exhausted waiting for rate limit");
+            }
+
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= needed) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) Math.ceil((needed - tokens) / tokensPerNano);
+            }
+
+            // others may get there first, in which case we go round again
+            sleep(Math.min(waitNanos, remainingNanos));
+        }
+    }
+
+    // call holding the lock
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    private static void sleep(final long nanos)
+            throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for rate limit");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.enzoic.client;
+
+import java.io.IOException;
+
+/**
+ * Service provider interface for sending HTTP requests to the Enzoic API.  Pass an implementation to
+ * Enzoic.SetTransport to change how requests are sent - e.g. RecordingTransport and ReplayTransport capture API
+ * exchanges to a cassette file and serve them back without keys or a network.
+ * <p>
+ * Retries, hedging, rate limiting, circuit breaking and metrics all happen around the transport, so an implementation
+ * should send exactly one request per call.  It is called concurrently from every thread making API calls and must be
+ * thread-safe.
+ */
+public interface Transport {
+
+    /**
+     * Sends requests with HttpURLConnection - the default
+     */
+    Transport DEFAULT = new HttpURLConnectionTransport();
+
+    /**
+     * Sends a request and returns the response, whatever its HTTP status.
+     *
+     * @param request the request
+     * @return the response
+     * @throws IOException the request could not be sent or its response could not be read.  A SocketTimeoutException if
+     *                     the request's timeout passed, or an InterruptedIOException if the calling thread was
+     *                     interrupted.
+     */
+    TransportResponse send(TransportRequest request) throws IOException;
+}
@@ -0,0 +1,70 @@
+package com.enzoic.client;
+
+import java.util.Map;
+
+/**
+ * An HTTP request to the Enzoic API, as passed to a Transport
+ */
+public final class TransportRequest {
+
+    private final ApiEndpoint endpoint;
+    private final String method;
+    private final String url;
+    private final Map<String, String> headers;
+    private final int timeout;
+    private final Deadline deadline;
+
+    TransportRequest(final ApiEndpoint endpoint, final String method, final String url,
+                     final Map<String, String> headers, final int timeout, final Deadline deadline) {
+        this.endpoint = endpoint;
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.timeout = timeout;
+        this.deadline = deadline;
+    }
+
+    /**
+     * The endpoint the request is for, or null for a health probe of a base URL (see Enzoic.EnableEndpointRouting)
+     * @return ApiEndpoint
+     */
+    public ApiEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * The HTTP method, e.g. GET
+     * @return String
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * The full URL, including the query string
+     * @return String
+     */
+    public String getURL() {
+        return url;
+    }
+
+    /**
+     * The request headers, including Authorization
+     * @return an unmodifiable map of header names to values
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * The connect and read timeouts for the request
+     * @return milliseconds.  0 indicates no timeout.
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    Deadline getDeadline() {
+        return deadline;
+    }
+}
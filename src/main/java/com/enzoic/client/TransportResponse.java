@@ -0,0 +1,63 @@
+package com.enzoic.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An HTTP response from the Enzoic API, as returned by a Transport
+ */
+public final class TransportResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    /**
+     * @param status  The HTTP status.
+     * @param headers The response headers.  Names are matched case-insensitively, and only the first value of a
+     *                repeated header is needed.
+     * @param body    The response body, or the error body for an unsuccessful status.  Empty if there was none.
+     */
+    public TransportResponse(final int status, final Map<String, String> headers, final byte[] body) {
+        Map<String, String> headerMap = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        headerMap.putAll(headers);
+
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(headerMap);
+        this.body = body;
+    }
+
+    /**
+     * The HTTP status
+     * @return int
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * The response headers
+     * @return an unmodifiable map of header names to values, whose keys are case-insensitive
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * The value of a response header
+     * @param name the header name, in any case
+     * @return the value, or null if the header was not present
+     */
+    public String getHeader(final String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * The response body
+     * @return the body bytes.  Empty if there was none.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+}
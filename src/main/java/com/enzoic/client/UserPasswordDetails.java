@@ -1,5 +1,9 @@
 package com.enzoic.client;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * The details for a specific user password.
  */
@@ -33,4 +37,27 @@ public class UserPasswordDetails {
     private String password;
     private String salt;
     private String[] exposures;
+
+    /**
+     * Compact binary encoding used when caching user passwords
+     */
+    static final ResponseCache.Codec<UserPasswordDetails> CODEC = new ResponseCache.Codec<UserPasswordDetails>() {
+        @Override
+        public void write(final DataOutputStream out, final UserPasswordDetails value) throws IOException {
+            out.writeByte(value.hashType == null ? -1 : value.hashType.getNumVal());
+            ResponseCache.writeString(out, value.password);
+            ResponseCache.writeString(out, value.salt);
+            ResponseCache.writeStrings(out, value.exposures);
+        }
+
+        @Override
+        public UserPasswordDetails read(final DataInputStream in) throws IOException {
+            UserPasswordDetails result = new UserPasswordDetails();
+            result.hashType = PasswordType.fromNumVal(in.readByte());
+            result.password = ResponseCache.readString(in);
+            result.salt = ResponseCache.readString(in);
+            result.exposures = ResponseCache.readStrings(in);
+            return result;
+        }
+    };
 }
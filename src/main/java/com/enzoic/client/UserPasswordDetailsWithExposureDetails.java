@@ -25,7 +25,7 @@ public class UserPasswordDetailsWithExposureDetails {
 
     /**
      * An array of ExposureDetails.
-     * @return String[]
+     * @return ExposureDetails[]
      */
     public ExposureDetails[] getExposures() { return exposures; }
 
@@ -33,4 +33,16 @@ public class UserPasswordDetailsWithExposureDetails {
     private String password;
     private String salt;
     private ExposureDetails[] exposures;
+
+    UserPasswordDetailsWithExposureDetails() {
+
+    }
+
+    UserPasswordDetailsWithExposureDetails(final PasswordType hashType, final String password, final String salt,
+                                           final ExposureDetails[] exposures) {
+        this.hashType = hashType;
+        this.password = password;
+        this.salt = salt;
+        this.exposures = exposures;
+    }
 }
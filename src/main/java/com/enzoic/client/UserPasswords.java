@@ -1,5 +1,8 @@
 package com.enzoic.client;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Date;
 
 /**
@@ -21,4 +24,34 @@ public class UserPasswords {
 
     private Date lastBreachDate;
     private UserPasswordDetails[] passwords;
+
+    /**
+     * Compact binary encoding used when caching user passwords
+     */
+    static final ResponseCache.Codec<UserPasswords> CODEC = new ResponseCache.Codec<UserPasswords>() {
+        @Override
+        public void write(final DataOutputStream out, final UserPasswords value) throws IOException {
+            ResponseCache.writeDate(out, value.lastBreachDate);
+            out.writeShort(value.passwords == null ? -1 : value.passwords.length);
+            if (value.passwords != null) {
+                for (UserPasswordDetails password : value.passwords) {
+                    UserPasswordDetails.CODEC.write(out, password);
+                }
+            }
+        }
+
+        @Override
+        public UserPasswords read(final DataInputStream in) throws IOException {
+            UserPasswords result = new UserPasswords();
+            result.lastBreachDate = ResponseCache.readDate(in);
+            int length = in.readShort();
+            if (length >= 0) {
+                result.passwords = new UserPasswordDetails[length];
+                for (int i = 0; i < length; i++) {
+                    result.passwords[i] = UserPasswordDetails.CODEC.read(in);
+                }
+            }
+            return result;
+        }
+    };
 }
@@ -21,4 +21,13 @@ public class UserPasswordsWithExposureDetails {
 
     private Date lastBreachDate;
     private UserPasswordDetailsWithExposureDetails[] passwords;
+
+    UserPasswordsWithExposureDetails() {
+
+    }
+
+    UserPasswordsWithExposureDetails(final Date lastBreachDate, final UserPasswordDetailsWithExposureDetails[] passwords) {
+        this.lastBreachDate = lastBreachDate;
+        this.passwords = passwords;
+    }
 }
@@ -0,0 +1,377 @@
+package com.enzoic.client;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs work for an Enzoic instance on a bounded pool of daemon threads, with a queue ("lane") per RequestPriority -
+ * internal use only.
+ * <p>
+ * Idle threads always take work from the highest priority lane first.  A share of the threads is reserved for
+ * INTERACTIVE work: NORMAL and BULK work never occupies more than concurrency - reserved threads at once, so
+ * interactive work does not have to wait behind a long batch.  Each lane holds at most laneCapacity tasks; work
+ * submitted to a full lane runs on the submitting thread instead, which slows the submitter down rather than
+ * rejecting the work.
+ * <p>
+ * Work is submitted on behalf of a Tenant - an Enzoic instance, of which there may be many sharing one scheduler in an
+ * EnzoicTenantPool.  Within each lane, tenants with queued work take turns, one task at a time, so a tenant which
+ * queues a large batch delays each other tenant's work by at most one task per turn rather than by the whole batch.
+ * Each lane holds laneCapacity tasks per tenant, so it is the tenant overflowing its share which is pushed back on, and
+ * a tenant may be limited to fewer concurrent tasks than the scheduler as a whole.
+ */
+class WorkScheduler {
+
+    private static final RequestPriority[] PRIORITIES = RequestPriority.values();
+    // the fraction of threads reserved for INTERACTIVE work
+    private static final double INTERACTIVE_RESERVE = 0.25;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int DEFAULT_LANE_CAPACITY = 4096;
+
+    /**
+     * The work queued by one user of the scheduler, and its limit on concurrent tasks
+     */
+    static final class Tenant {
+        // all guarded by the scheduler's lock
+        private final ArrayDeque<Runnable>[] lanes;
+        private int concurrency = Integer.MAX_VALUE;
+        private int active;
+
+        @SuppressWarnings("unchecked")
+        private Tenant() {
+            this.lanes = (ArrayDeque<Runnable>[]) new ArrayDeque<?>[PRIORITIES.length];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new ArrayDeque<Runnable>();
+            }
+        }
+    }
+
+    private final ThreadFactory threadFactory;
+    private final int laneCapacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Tenant defaultTenant = new Tenant();
+
+    // all guarded by lock
+    // per lane, the tenants with work queued in it, in the order they take their turns
+    private final ArrayDeque<Tenant>[] lanes;
+    private final int[] queued;
+    private int concurrency;
+    private int threads;
+    private int idleThreads;
+    private int active;
+    private int activeNonInteractive;
+
+    WorkScheduler(final String name, final int concurrency) {
+        this(name, concurrency, DEFAULT_LANE_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    WorkScheduler(final String name, final int concurrency, final int laneCapacity) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0");
+        }
+        if (laneCapacity <= 0) {
+            throw new IllegalArgumentException("Lane capacity must be greater than 0");
+        }
+
+        this.threadFactory = new DaemonThreadFactory(name);
+        this.concurrency = concurrency;
+        this.laneCapacity = laneCapacity;
+        this.lanes = (ArrayDeque<Tenant>[]) new ArrayDeque<?>[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<Tenant>();
+        }
+        this.queued = new int[PRIORITIES.length];
+    }
+
+    /**
+     * Creates a tenant to submit work for, which takes its turn alongside the others
+     */
+    Tenant newTenant() {
+        return new Tenant();
+    }
+
+    <T> Future<T> submit(final RequestPriority priority, final Callable<T> task) {
+        return submit(defaultTenant, priority, task);
+    }
+
+    <T> Future<T> submit(final Tenant tenant, final RequestPriority priority, final Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        execute(tenant, priority, future);
+        return future;
+    }
+
+    void execute(final RequestPriority priority, final Runnable task) {
+        execute(defaultTenant, priority, task);
+    }
+
+    void execute(final Tenant tenant, final RequestPriority priority, final Runnable task) {
+        lock.lock();
+        try {
+            int laneIndex = priority.ordinal();
+            ArrayDeque<Runnable> tenantLane = tenant.lanes[laneIndex];
+            if (tenantLane.size() < laneCapacity) {
+                if (tenantLane.isEmpty()) {
+                    lanes[laneIndex].add(tenant);
+                }
+                tenantLane.add(task);
+                queued[laneIndex]++;
+                if (idleThreads > 0) {
+                    workAvailable.signal();
+                } else if (threads < concurrency) {
+                    startThread();
+                }
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // the tenant's lane is full - push back on the submitter
+        RunWithPriority(priority, task);
+    }
+
+    int getConcurrency() {
+        lock.lock();
+        try {
+            return concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setConcurrency(final int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0");
+        }
+
+        lock.lock();
+        try {
+            this.concurrency = concurrency;
+            // surplus threads exit when they next look for work; extra ones start if work is waiting
+            workAvailable.signalAll();
+            while (threads < concurrency && hasEligibleWork()) {
+                startThread();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum number of a tenant's tasks which run at once - at most the scheduler's concurrency
+     */
+    int getConcurrency(final Tenant tenant) {
+        lock.lock();
+        try {
+            return Math.min(tenant.concurrency, concurrency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setConcurrency(final Tenant tenant, final int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0");
+        }
+
+        lock.lock();
+        try {
+            tenant.concurrency = concurrency;
+            // work held back by the old limit may be able to run now
+            workAvailable.signalAll();
+            while (threads < this.concurrency && hasEligibleWork()) {
+                startThread();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getQueueDepth() {
+        lock.lock();
+        try {
+            int result = 0;
+            for (int count : queued) {
+                result += count;
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getQueueDepth(final RequestPriority priority) {
+        lock.lock();
+        try {
+            return queued[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getNonInteractiveLimit() {
+        // always leave at least one thread for lower priority work
+        int reserved = Math.min((int) Math.ceil(concurrency * INTERACTIVE_RESERVE), concurrency - 1);
+        return concurrency - reserved;
+    }
+
+    private boolean hasEligibleWork() {
+        return pickLane() >= 0;
+    }
+
+    /**
+     * Returns the index of the highest priority lane with work which may run now, or -1
+     */
+    private int pickLane() {
+        if (active >= concurrency) {
+            return -1;
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            if ((PRIORITIES[i] == RequestPriority.INTERACTIVE || activeNonInteractive < getNonInteractiveLimit()) &&
+                    hasTenantBelowLimit(lanes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasTenantBelowLimit(final ArrayDeque<Tenant> lane) {
+        for (Tenant tenant : lane) {
+            if (tenant.active < tenant.concurrency) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the next task from a lane which pickLane chose, from the first tenant in turn which is below its limit
+     */
+    private Tenant takeTurn(final int laneIndex) {
+        ArrayDeque<Tenant> lane = lanes[laneIndex];
+        Tenant tenant = lane.poll();
+        while (tenant.active >= tenant.concurrency) {
+            // tenants at their limit go round to the back, still ahead of the one taking this turn
+            lane.add(tenant);
+            tenant = lane.poll();
+        }
+        if (tenant.lanes[laneIndex].size() > 1) {
+            lane.add(tenant);
+        }
+        return tenant;
+    }
+
+    private void startThread() {
+        threads++;
+        try {
+            threadFactory.newThread(new Worker()).start();
+        } catch (RuntimeException ex) {
+            threads--;
+            throw ex;
+        } catch (Error ex) {
+            threads--;
+            throw ex;
+        }
+    }
+
+    private static void RunWithPriority(final RequestPriority priority, final Runnable task) {
+        RequestPriority previous = PriorityContext.get();
+        PriorityContext.set(priority);
+        try {
+            task.run();
+        } finally {
+            PriorityContext.set(previous);
+        }
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            lock.lock();
+            try {
+                while (true) {
+                    if (threads > concurrency) {
+                        return;
+                    }
+
+                    int laneIndex = pickLane();
+                    if (laneIndex < 0) {
+                        idleThreads++;
+                        long remaining;
+                        try {
+                            remaining = workAvailable.awaitNanos(IDLE_TIMEOUT_NANOS);
+                        } catch (InterruptedException ex) {
+                            remaining = 0;
+                        } finally {
+                            idleThreads--;
+                        }
+                        if (remaining <= 0 && !hasEligibleWork()) {
+                            return;
+                        }
+                        continue;
+                    }
+
+                    RequestPriority priority = PRIORITIES[laneIndex];
+                    Tenant tenant = takeTurn(laneIndex);
+                    Runnable task = tenant.lanes[laneIndex].poll();
+                    queued[laneIndex]--;
+                    boolean interactive = priority == RequestPriority.INTERACTIVE;
+                    tenant.active++;
+                    active++;
+                    if (!interactive) {
+                        activeNonInteractive++;
+                    }
+
+                    lock.unlock();
+                    try {
+                        RunWithPriority(priority, task);
+                    } catch (RuntimeException ex) {
+                        // tasks report their own failures through their futures
+                    } finally {
+                        // a cancelled task may leave us interrupted - don't let that cancel the next one
+                        Thread.interrupted();
+                        lock.lock();
+                        tenant.active--;
+                        active--;
+                        if (!interactive) {
+                            activeNonInteractive--;
+                        }
+                    }
+                }
+            } finally {
+                // reached with the lock held however the loop ends, including an Error thrown by a task
+                threads--;
+                lock.unlock();
+            }
+        }
+    }
+
+    static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        DaemonThreadFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
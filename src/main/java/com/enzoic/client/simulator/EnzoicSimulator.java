@@ -0,0 +1,396 @@
+package com.enzoic.client.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.enzoic.client.ApiEndpoint;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for the Enzoic API, serving the Accounts, Credentials, Passwords and Exposures endpoints from
+ * a SyntheticDataset.  Point an Enzoic instance at getBaseURL() to load test an integration, or the client itself,
+ * without API keys or a network:
+ * <pre>
+ * try (EnzoicSimulator simulator = new EnzoicSimulator(new SyntheticDataset(10000, 42)).start()) {
+ *     simulator.setLatency(ApiEndpoint.ACCOUNTS, LatencyDistribution.logNormal(20, 150));
+ *     Enzoic enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+ *     ...
+ * }
+ * </pre>
+ * Latency, injected errors and throttling can be changed at any time, e.g. to see how a running load test copes with
+ * an outage.  Responses are delayed without holding a thread, so high request rates with long latencies are cheap.
+ * Any API key and secret are accepted.
+ */
+public class EnzoicSimulator implements Closeable {
+
+    private static final String BASE_PATH = "/v1";
+    private static final ApiEndpoint[] ENDPOINTS = ApiEndpoint.values();
+
+    private final SyntheticDataset dataset;
+    private final AtomicReferenceArray<LatencyDistribution> latencies =
+            new AtomicReferenceArray<LatencyDistribution>(ENDPOINTS.length);
+    private final AtomicReferenceArray<ErrorInjection> errors =
+            new AtomicReferenceArray<ErrorInjection>(ENDPOINTS.length);
+    private volatile RateLimit rateLimit;
+    private volatile int maxConcurrentRequests;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLongArray requestCounts = new AtomicLongArray(ENDPOINTS.length);
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ScheduledExecutorService responder;
+
+    public EnzoicSimulator(final SyntheticDataset dataset) {
+        this.dataset = dataset;
+        for (int i = 0; i < ENDPOINTS.length; i++) {
+            latencies.set(i, LatencyDistribution.NONE);
+        }
+    }
+
+    /**
+     * Starts serving on a free loopback port
+     *
+     * @return this
+     * @throws IOException the server could not be started
+     */
+    public EnzoicSimulator start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * Starts serving on the given loopback port
+     *
+     * @param port the port, or 0 for any free port
+     * @return this
+     * @throws IOException the server could not be started
+     */
+    public synchronized EnzoicSimulator start(final int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Simulator is already started");
+        }
+
+        handlers = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+                new SimulatorThreadFactory("enzoic-simulator"));
+        responder = Executors.newScheduledThreadPool(2, new SimulatorThreadFactory("enzoic-simulator-responder"));
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.createContext(BASE_PATH + "/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) {
+                EnzoicSimulator.this.handle(exchange);
+            }
+        });
+        server.setExecutor(handlers);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Stops serving.  Requests in progress are abandoned.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            handlers.shutdownNow();
+            responder.shutdownNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * The URL to pass to the Enzoic constructor
+     *
+     * @return String
+     */
+    public synchronized String getBaseURL() {
+        if (server == null) {
+            throw new IllegalStateException("Simulator is not started");
+        }
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + BASE_PATH;
+    }
+
+    public SyntheticDataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * Sets the latency of every endpoint
+     *
+     * @param latency the distribution each response's latency is drawn from
+     */
+    public void setLatency(final LatencyDistribution latency) {
+        for (ApiEndpoint endpoint : ENDPOINTS) {
+            setLatency(endpoint, latency);
+        }
+    }
+
+    /**
+     * Sets the latency of an endpoint
+     *
+     * @param endpoint the endpoint
+     * @param latency  the distribution each response's latency is drawn from
+     */
+    public void setLatency(final ApiEndpoint endpoint, final LatencyDistribution latency) {
+        if (latency == null) {
+            throw new IllegalArgumentException("Latency cannot be null - use LatencyDistribution.NONE");
+        }
+        latencies.set(endpoint.ordinal(), latency);
+    }
+
+    /**
+     * Fails a fraction of the requests to an endpoint with an HTTP 503, after the usual latency
+     *
+     * @param endpoint  the endpoint
+     * @param errorRate the fraction of requests to fail, 0 to stop failing requests
+     */
+    public void setErrorRate(final ApiEndpoint endpoint, final double errorRate) {
+        setErrorRate(endpoint, errorRate, 503);
+    }
+
+    /**
+     * Fails a fraction of the requests to an endpoint with the given HTTP status, after the usual latency
+     *
+     * @param endpoint  the endpoint
+     * @param errorRate the fraction of requests to fail, 0 to stop failing requests
+     * @param status    the HTTP status to respond with, e.g. 500 or 504
+     */
+    public void setErrorRate(final ApiEndpoint endpoint, final double errorRate, final int status) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+        errors.set(endpoint.ordinal(), errorRate == 0 ? null : new ErrorInjection(errorRate, status));
+    }
+
+    /**
+     * Throttles requests above a rate across all endpoints, responding immediately with HTTP 429
+     *
+     * @param requestsPerSecond the sustained rate allowed, 0 to stop throttling by rate
+     * @param burst             the number of requests allowed at once after a quiet period
+     */
+    public void setRateLimit(final double requestsPerSecond, final int burst) {
+        if (requestsPerSecond < 0 || (requestsPerSecond > 0 && burst < 1)) {
+            throw new IllegalArgumentException("Rate cannot be negative and burst must be at least 1");
+        }
+        rateLimit = requestsPerSecond == 0 ? null : new RateLimit(requestsPerSecond, burst);
+    }
+
+    /**
+     * Throttles requests beyond a number in progress at once, responding immediately with HTTP 429
+     *
+     * @param maxConcurrentRequests the number of requests allowed in progress, 0 for no limit
+     */
+    public void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 0) {
+            throw new IllegalArgumentException("Max concurrent requests cannot be negative");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * The number of requests received for an endpoint, including failed and throttled ones
+     *
+     * @param endpoint the endpoint
+     * @return long
+     */
+    public long getRequestCount(final ApiEndpoint endpoint) {
+        return requestCounts.get(endpoint.ordinal());
+    }
+
+    /**
+     * The number of requests failed by setErrorRate
+     *
+     * @return long
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * The number of requests throttled by setRateLimit or setMaxConcurrentRequests
+     *
+     * @return long
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    private void handle(final HttpExchange exchange) {
+        ApiEndpoint endpoint = endpointFor(exchange.getRequestURI().getPath());
+        if (endpoint == null) {
+            respond(exchange, 404, "", false);
+            return;
+        }
+        requestCounts.incrementAndGet(endpoint.ordinal());
+
+        int current = inFlight.incrementAndGet();
+        int maxConcurrent = this.maxConcurrentRequests;
+        RateLimit rateLimit = this.rateLimit;
+        if ((maxConcurrent > 0 && current > maxConcurrent) || (rateLimit != null && !rateLimit.tryAcquire())) {
+            throttledCount.incrementAndGet();
+            respond(exchange, 429, "{\"error\":\"Too many requests\"}", true);
+            return;
+        }
+
+        int status;
+        String body;
+        Random random = ThreadLocalRandom.current();
+        ErrorInjection error = errors.get(endpoint.ordinal());
+        if (error != null && random.nextDouble() < error.rate) {
+            errorCount.incrementAndGet();
+            status = error.status;
+            body = "{\"error\":\"Simulated failure\"}";
+        } else {
+            try {
+                body = dataset.respond(endpoint, parseQuery(exchange.getRequestURI().getRawQuery()));
+                status = body == null ? 404 : 200;
+            } catch (IOException ex) {
+                status = 500;
+                body = null;
+            } catch (RuntimeException ex) {
+                status = 500;
+                body = null;
+            }
+        }
+
+        final int responseStatus = status;
+        final String responseBody = body == null ? "" : body;
+        long delay = latencies.get(endpoint.ordinal()).sampleNanos(random);
+        if (delay <= 0) {
+            respond(exchange, responseStatus, responseBody, true);
+            return;
+        }
+        try {
+            responder.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    respond(exchange, responseStatus, responseBody, true);
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            // stopping
+            respond(exchange, 503, "", true);
+        }
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final String body, final boolean counted) {
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+            }
+        } catch (IOException ex) {
+            // the client went away
+        } finally {
+            exchange.close();
+            if (counted) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static ApiEndpoint endpointFor(final String path) {
+        String endpointPath = path.substring(BASE_PATH.length());
+        for (ApiEndpoint endpoint : ENDPOINTS) {
+            if (endpoint.getPath().equals(endpointPath)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, List<String>> parseQuery(final String query) throws UnsupportedEncodingException {
+        Map<String, List<String>> result = new HashMap<String, List<String>>();
+        if (query == null) {
+            return result;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), "UTF-8");
+            String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+            List<String> values = result.get(name);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                result.put(name, values);
+            }
+            values.add(value);
+        }
+        return result;
+    }
+
+    private static class ErrorInjection {
+        final double rate;
+        final int status;
+
+        ErrorInjection(final double rate, final int status) {
+            this.rate = rate;
+            this.status = status;
+        }
+    }
+
+    private static class RateLimit {
+        private final double tokensPerNano;
+        private final double burst;
+        // guarded by this
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        RateLimit(final double requestsPerSecond, final int burst) {
+            this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = burst;
+            this.tokens = burst;
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    static class SimulatorThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        SimulatorThreadFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.enzoic.client.simulator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distribution EnzoicSimulator draws the latency of each response from - see EnzoicSimulator.setLatency
+ */
+public abstract class LatencyDistribution {
+
+    // the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    /**
+     * Responds immediately - the default
+     */
+    public static final LatencyDistribution NONE = fixed(0);
+
+    /**
+     * Draws a latency
+     *
+     * @param random the source of randomness to use
+     * @return the latency in nanoseconds
+     */
+    public abstract long sampleNanos(Random random);
+
+    /**
+     * Always the same latency
+     *
+     * @param latencyInMs the latency in milliseconds
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution fixed(final double latencyInMs) {
+        if (latencyInMs < 0) {
+            throw new IllegalArgumentException("Latency cannot be negative");
+        }
+        final long nanos = toNanos(latencyInMs);
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(final Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * Latencies spread evenly between a minimum and a maximum
+     *
+     * @param minInMs the minimum latency in milliseconds
+     * @param maxInMs the maximum latency in milliseconds
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution uniform(final double minInMs, final double maxInMs) {
+        if (minInMs < 0 || maxInMs < minInMs) {
+            throw new IllegalArgumentException("Latencies must satisfy 0 <= minInMs <= maxInMs");
+        }
+        final long min = toNanos(minInMs);
+        final long range = toNanos(maxInMs) - min;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(final Random random) {
+                return min + (long) (random.nextDouble() * range);
+            }
+        };
+    }
+
+    /**
+     * A log-normal distribution - a realistic model of network service latency, with a long right tail
+     *
+     * @param medianInMs the median latency in milliseconds
+     * @param p99InMs    the 99th percentile latency in milliseconds
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution logNormal(final double medianInMs, final double p99InMs) {
+        if (medianInMs <= 0 || p99InMs < medianInMs) {
+            throw new IllegalArgumentException("Latencies must satisfy 0 < medianInMs <= p99InMs");
+        }
+        final double mu = Math.log(toNanos(medianInMs));
+        final double sigma = Math.log(p99InMs / medianInMs) / Z_99;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(final Random random) {
+                return (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+        };
+    }
+
+    /**
+     * Draws from tail with the given probability and from base otherwise, e.g. to model occasional GC pauses or
+     * retransmits
+     *
+     * @param base            the usual latency
+     * @param tailProbability the probability of drawing from tail instead
+     * @param tail            the occasional latency
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution withTail(final LatencyDistribution base, final double tailProbability,
+                                               final LatencyDistribution tail) {
+        if (tailProbability < 0 || tailProbability > 1) {
+            throw new IllegalArgumentException("Tail probability must be between 0 and 1");
+        }
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(final Random random) {
+                return random.nextDouble() < tailProbability ? tail.sampleNanos(random) : base.sampleNanos(random);
+            }
+        };
+    }
+
+    private static long toNanos(final double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
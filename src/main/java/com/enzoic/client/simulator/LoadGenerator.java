@@ -0,0 +1,150 @@
+package com.enzoic.client.simulator;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.enzoic.client.ApiEndpoint;
+import com.enzoic.client.Enzoic;
+import com.enzoic.client.LatencyHistogram;
+
+/**
+ * Drives an operation, typically an Enzoic call, at a target rate and measures its throughput and latency.
+ * <p>
+ * Requests are started on a fixed schedule whether or not earlier ones have completed, as real users would make them,
+ * and each request's latency is measured from when it was scheduled.  A client which falls behind therefore shows up
+ * as growing latency rather than as a quietly reduced request rate.
+ * <p>
+ * Run the main method for an offline capacity test of the client against an EnzoicSimulator:
+ * <pre>
+ * java -cp enzoic-java-client-jar-with-dependencies.jar com.enzoic.client.simulator.LoadGenerator \
+ *     [requestsPerSecond] [seconds] [users] [threads]
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private final int threads;
+
+    /**
+     * @param threads The maximum number of requests in progress at once.  Requests due while all threads are busy wait
+     *                for one, and the wait counts towards their latency.
+     */
+    public LoadGenerator(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Calls an operation at a fixed rate for a period, then waits for the calls in progress to complete
+     *
+     * @param operation         The operation.  Each call that throws counts as an error.
+     * @param requestsPerSecond The rate to start calls at.
+     * @param durationInMs      How long to keep starting calls for.
+     * @return LoadReport
+     * @throws InterruptedException the calling thread was interrupted
+     */
+    public LoadReport run(final Callable<?> operation, final double requestsPerSecond, final long durationInMs)
+            throws InterruptedException {
+        if (requestsPerSecond <= 0 || durationInMs <= 0) {
+            throw new IllegalArgumentException("Rate and duration must be greater than 0");
+        }
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong lastCompletion = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new EnzoicSimulator.SimulatorThreadFactory("enzoic-load"));
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationInMs);
+        long requests = 0;
+        try {
+            for (long scheduled = start; scheduled < end; scheduled = start + ++requests * intervalNanos) {
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+
+                final long intended = scheduled;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            operation.call();
+                        } catch (Exception ex) {
+                            errors.incrementAndGet();
+                        }
+                        long now = System.nanoTime();
+                        latency.record(now - intended);
+                        long last;
+                        do {
+                            last = lastCompletion.get();
+                        } while (now > last && !lastCompletion.compareAndSet(last, now));
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new LoadReport(requestsPerSecond, latency.getCount(), errors.get(),
+                Math.max(0, lastCompletion.get() - start), latency);
+    }
+
+    /**
+     * Load tests CheckCredentialsEx against a simulator with realistic latency.  Exits with status 1 if any call failed
+     * or returned the wrong result.
+     */
+    public static void main(final String[] args) throws Exception {
+        double requestsPerSecond = args.length > 0 ? Double.parseDouble(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+        final SyntheticDataset dataset = new SyntheticDataset(users, 42);
+        EnzoicSimulator simulator = new EnzoicSimulator(dataset).start();
+        LoadReport report;
+        try {
+            simulator.setLatency(LatencyDistribution.logNormal(20, 120));
+
+            final Enzoic enzoic = new Enzoic("simulated", "simulated", simulator.getBaseURL());
+            Callable<Boolean> checkCredentials = new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    int user = ThreadLocalRandom.current().nextInt(dataset.getUserCount());
+                    boolean compromised = enzoic.CheckCredentialsEx(dataset.getUsername(user),
+                            dataset.getPassword(user), null, null);
+                    if (compromised != dataset.isCompromised(user)) {
+                        throw new IllegalStateException("Wrong result for " + dataset.getUsername(user));
+                    }
+                    return compromised;
+                }
+            };
+
+            System.out.println("Warming up...");
+            new LoadGenerator(threads).run(checkCredentials, requestsPerSecond, 2000);
+
+            report = new LoadGenerator(threads).run(checkCredentials, requestsPerSecond,
+                    TimeUnit.SECONDS.toMillis(seconds));
+            System.out.println(report);
+            for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+                System.out.println(endpoint + " requests: " + simulator.getRequestCount(endpoint));
+            }
+        } finally {
+            simulator.stop();
+        }
+
+        // lets it double as a smoke test, e.g. of a native image build
+        if (report.getErrors() > 0) {
+            System.exit(1);
+        }
+    }
+}
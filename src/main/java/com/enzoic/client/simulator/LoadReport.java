@@ -0,0 +1,87 @@
+package com.enzoic.client.simulator;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.enzoic.client.LatencyHistogram;
+
+/**
+ * The results of a LoadGenerator run
+ */
+public class LoadReport {
+
+    private final double targetRequestsPerSecond;
+    private final long requests;
+    private final long errors;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+
+    LoadReport(final double targetRequestsPerSecond, final long requests, final long errors, final long elapsedNanos,
+               final LatencyHistogram latency) {
+        this.targetRequestsPerSecond = targetRequestsPerSecond;
+        this.requests = requests;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+    }
+
+    /**
+     * The rate the requests were started at
+     * @return requests per second
+     */
+    public double getTargetRequestsPerSecond() {
+        return targetRequestsPerSecond;
+    }
+
+    /**
+     * The number of requests completed, including those which failed
+     * @return long
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * The number of requests which threw an exception
+     * @return long
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * The time from the start of the run until the last request completed
+     * @return nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The rate requests were completed at
+     * @return requests per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * The latency of every request, measured from when it was scheduled to start rather than when it did start, so
+     * time spent queued behind slow requests is included
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%d requests (%d errors) in %.1fs: %.1f/s (target %.1f/s), latency ms p50 %.2f p90 %.2f p99 %.2f " +
+                        "p99.9 %.2f max %.2f",
+                requests, errors, elapsedNanos / 1e9, getThroughput(), targetRequestsPerSecond,
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(90) / 1e6,
+                latency.getValueAtPercentile(99) / 1e6, latency.getValueAtPercentile(99.9) / 1e6,
+                latency.getMax() / 1e6);
+    }
+}
@@ -0,0 +1,478 @@
+package com.enzoic.client.simulator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import com.enzoic.client.ApiEndpoint;
+import com.enzoic.client.PasswordType;
+import com.enzoic.client.utilities.Hashing;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A deterministic, synthetic population of users for EnzoicSimulator to serve.
+ * <p>
+ * User i has the username "user{i}@example.com" and the password getPassword(i).  A fraction of the users are
+ * compromised: their credentials are found by CheckCredentials, and their password by CheckPassword.  Every user has
+ * an account salt, a fixed number of password hash specifications (the first is always unsalted SHA256, the BCrypt
+ * ones last), a few Exposures drawn from a shared pool, and passwords for GetUserPasswords.
+ * <p>
+ * Users are generated from the seed on each request, and only their username hashes are kept in memory, so large
+ * populations are cheap.  Construction does calculate the Argon2 credential hash of every compromised user, which takes
+ * a few milliseconds each.
+ */
+public class SyntheticDataset {
+
+    private static final String ALPHANUMERIC = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final String ITOA64 = "./0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final String[] COMMON_PASSWORDS = { "123456", "password", "qwerty", "letmein", "Password1" };
+    private static final String[] EXPOSED_DATA = { "Emails", "Passwords", "Usernames", "IP Addresses", "Names" };
+
+    // the cheap hash types the non-BCrypt specifications are drawn from
+    private static final PasswordType[] SPECIFICATION_TYPES = {
+            PasswordType.MD5, PasswordType.SHA1, PasswordType.SHA512, PasswordType.IPBoard_MyBB,
+            PasswordType.vBulletinPost3_8_5, PasswordType.MD5Crypt, PasswordType.PHPBB3, PasswordType.DjangoSHA1,
+            PasswordType.CustomAlgorithm1, PasswordType.NTLM };
+
+    private static final long BREACH_DATES_START = 1262304000000L; // 2010-01-01
+    private static final long BREACH_DATES_RANGE = 12L * 365 * 24 * 60 * 60 * 1000;
+
+    private final int userCount;
+    private final int hashSpecsPerUser;
+    private final int bcryptSpecsPerUser;
+    private final double compromisedFraction;
+    private final long seed;
+    private final int exposureCount;
+
+    // the users' SHA256 username hashes in sorted order, and the index of the user each belongs to
+    private final String[] usernameHashes;
+    private final int[] usernameHashUsers;
+
+    private final Map<String, List<String>> credentialHashesByPartial = new HashMap<String, List<String>>();
+    private final Map<String, String> compromisedPasswordsByPartialMD5 = new HashMap<String, String>();
+
+    /**
+     * Creates users with 5 password hash specifications, one of them BCrypt, and 10% of them compromised
+     *
+     * @param userCount The number of users.
+     * @param seed      The seed all users are generated from.
+     */
+    public SyntheticDataset(final int userCount, final long seed) {
+        this(userCount, 5, 1, 0.1, seed);
+    }
+
+    /**
+     * @param userCount           The number of users.
+     * @param hashSpecsPerUser    The number of password hash specifications returned for each user's account.
+     * @param bcryptSpecsPerUser  How many of those are BCrypt (cost 10).  Must be less than hashSpecsPerUser unless
+     *                            both are 0.
+     * @param compromisedFraction The fraction of users whose credentials and password are compromised.  Credentials
+     *                            can only be compromised if hashSpecsPerUser is at least 1.
+     * @param seed                The seed all users are generated from.
+     */
+    public SyntheticDataset(final int userCount, final int hashSpecsPerUser, final int bcryptSpecsPerUser,
+                            final double compromisedFraction, final long seed) {
+        if (userCount < 1) {
+            throw new IllegalArgumentException("User count must be at least 1");
+        }
+        if (hashSpecsPerUser < 0 || bcryptSpecsPerUser < 0 ||
+                (hashSpecsPerUser > 0 && bcryptSpecsPerUser >= hashSpecsPerUser) ||
+                (hashSpecsPerUser == 0 && bcryptSpecsPerUser > 0)) {
+            throw new IllegalArgumentException("BCrypt specifications must leave room for the first, SHA256, one");
+        }
+        if (compromisedFraction < 0 || compromisedFraction > 1) {
+            throw new IllegalArgumentException("Compromised fraction must be between 0 and 1");
+        }
+
+        this.userCount = userCount;
+        this.hashSpecsPerUser = hashSpecsPerUser;
+        this.bcryptSpecsPerUser = bcryptSpecsPerUser;
+        this.compromisedFraction = compromisedFraction;
+        this.seed = seed;
+        this.exposureCount = Math.max(1, Math.min(1000, userCount / 10));
+
+        String[] hashes = new String[userCount];
+        Integer[] order = new Integer[userCount];
+        for (int i = 0; i < userCount; i++) {
+            hashes[i] = Hashing.sha256(getUsername(i));
+            order[i] = i;
+        }
+        final String[] unsorted = hashes;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer a, final Integer b) {
+                return unsorted[a].compareTo(unsorted[b]);
+            }
+        });
+        this.usernameHashes = new String[userCount];
+        this.usernameHashUsers = new int[userCount];
+        for (int i = 0; i < userCount; i++) {
+            usernameHashes[i] = unsorted[order[i]];
+            usernameHashUsers[i] = order[i];
+        }
+
+        for (String password : COMMON_PASSWORDS) {
+            compromisedPasswordsByPartialMD5.put(Hashing.md5(password).substring(0, 10), password);
+        }
+        for (int i = 0; i < userCount; i++) {
+            if (isCompromised(i)) {
+                String password = getPassword(i);
+                compromisedPasswordsByPartialMD5.put(Hashing.md5(password).substring(0, 10), password);
+
+                if (hashSpecsPerUser > 0) {
+                    String credentialHash = credentialHash(getUsername(i), Hashing.sha256(password), user(i).salt);
+                    String partial = credentialHash.substring(0, 10);
+                    List<String> matches = credentialHashesByPartial.get(partial);
+                    if (matches == null) {
+                        matches = new ArrayList<String>(1);
+                        credentialHashesByPartial.put(partial, matches);
+                    }
+                    matches.add(credentialHash);
+                }
+            }
+        }
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public String getUsername(final int index) {
+        return "user" + index + "@example.com";
+    }
+
+    /**
+     * The password of a user - compromised if isCompromised(index) is true
+     */
+    public String getPassword(final int index) {
+        return "Synthetic-" + index + "-" + Long.toString(seed & 0xFFFF, 36);
+    }
+
+    public boolean isCompromised(final int index) {
+        return user(index).compromised;
+    }
+
+    /**
+     * Builds the body of a response, or returns null for a 404
+     */
+    String respond(final ApiEndpoint endpoint, final Map<String, List<String>> query) throws IOException {
+        switch (endpoint) {
+            case ACCOUNTS:
+                if (query.containsKey("partialUsernameHash")) {
+                    return userPasswordsCandidates(first(query, "partialUsernameHash"));
+                }
+                int index = findUser(first(query, "username"));
+                if (index < 0) {
+                    return null;
+                }
+                return query.containsKey("includePasswords") ? userPasswords(index, null) : account(index);
+            case CREDENTIALS:
+                return credentialCandidates(query.get("partialHashes"));
+            case PASSWORDS:
+                return passwordCandidates(first(query, "partial_md5"));
+            case EXPOSURES:
+                if (query.containsKey("id")) {
+                    return exposureDetails(first(query, "id"));
+                }
+                return exposures(findUser(first(query, "username")));
+            default:
+                return null;
+        }
+    }
+
+    private String account(final int index) throws IOException {
+        User user = user(index);
+        StringWriter result = new StringWriter();
+        JsonWriter json = new JsonWriter(result);
+        json.beginObject();
+        json.name("salt").value(user.salt);
+        json.name("lastBreachDate").value(user.lastBreachDate);
+        json.name("passwordHashesRequired").beginArray();
+        for (int i = 0; i < user.hashTypes.length; i++) {
+            json.beginObject();
+            json.name("hashType").value(user.hashTypes[i].getNumVal());
+            json.name("salt").value(user.hashSalts[i]);
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.close();
+        return result.toString();
+    }
+
+    private String userPasswords(final int index, final JsonWriter candidatesJson) throws IOException {
+        User user = user(index);
+        StringWriter result = new StringWriter();
+        JsonWriter json = candidatesJson == null ? new JsonWriter(result) : candidatesJson;
+        json.beginObject();
+        if (candidatesJson != null) {
+            json.name("usernameHash").value(Hashing.sha256(getUsername(index)));
+        }
+        json.name("lastBreachDate").value(user.lastBreachDate);
+        json.name("passwords").beginArray();
+        writePassword(json, "Old-" + index, user);
+        if (user.compromised) {
+            writePassword(json, getPassword(index), user);
+        }
+        json.endArray();
+        json.endObject();
+        if (candidatesJson == null) {
+            json.close();
+        }
+        return result.toString();
+    }
+
+    private static void writePassword(final JsonWriter json, final String password, final User user)
+            throws IOException {
+        json.beginObject();
+        json.name("hashType").value(PasswordType.MD5.getNumVal());
+        json.name("password").value(Hashing.md5(password));
+        json.name("salt").value("");
+        json.name("exposures").beginArray();
+        for (String exposureID : user.exposureIDs) {
+            json.value(exposureID);
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private String userPasswordsCandidates(final String partialUsernameHash) throws IOException {
+        if (partialUsernameHash == null || partialUsernameHash.isEmpty()) {
+            return null;
+        }
+        int position = Arrays.binarySearch(usernameHashes, partialUsernameHash);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        if (position >= usernameHashes.length || !usernameHashes[position].startsWith(partialUsernameHash)) {
+            return null;
+        }
+
+        StringWriter result = new StringWriter();
+        JsonWriter json = new JsonWriter(result);
+        json.beginObject();
+        json.name("candidates").beginArray();
+        for (; position < usernameHashes.length && usernameHashes[position].startsWith(partialUsernameHash); position++) {
+            userPasswords(usernameHashUsers[position], json);
+        }
+        json.endArray();
+        json.endObject();
+        json.close();
+        return result.toString();
+    }
+
+    private String credentialCandidates(final List<String> partialHashes) throws IOException {
+        if (partialHashes == null) {
+            return null;
+        }
+        List<String> candidates = new ArrayList<String>();
+        for (String partialHash : partialHashes) {
+            List<String> matches = credentialHashesByPartial.get(partialHash);
+            if (matches != null) {
+                candidates.addAll(matches);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        StringWriter result = new StringWriter();
+        JsonWriter json = new JsonWriter(result);
+        json.beginObject();
+        json.name("candidateHashes").beginArray();
+        for (String candidate : candidates) {
+            json.value(candidate);
+        }
+        json.endArray();
+        json.endObject();
+        json.close();
+        return result.toString();
+    }
+
+    private String passwordCandidates(final String partialMD5) throws IOException {
+        String password = partialMD5 == null ? null : compromisedPasswordsByPartialMD5.get(partialMD5);
+        if (password == null) {
+            return null;
+        }
+
+        Random random = new Random(seed ^ password.hashCode());
+        StringWriter result = new StringWriter();
+        JsonWriter json = new JsonWriter(result);
+        json.beginObject();
+        json.name("candidates").beginArray();
+        json.beginObject();
+        json.name("md5").value(Hashing.md5(password));
+        json.name("sha1").value(Hashing.sha1(password));
+        json.name("sha256").value(Hashing.sha256(password));
+        json.name("revealedInExposure").value(random.nextBoolean());
+        json.name("relativeExposureFrequency").value(random.nextInt(100));
+        json.name("exposureCount").value(1 + random.nextInt(20));
+        json.endObject();
+        json.endArray();
+        json.endObject();
+        json.close();
+        return result.toString();
+    }
+
+    private String exposures(final int index) throws IOException {
+        if (index < 0) {
+            return null;
+        }
+        User user = user(index);
+        if (user.exposureIDs.length == 0) {
+            return null;
+        }
+
+        StringWriter result = new StringWriter();
+        JsonWriter json = new JsonWriter(result);
+        json.beginObject();
+        json.name("count").value(user.exposureIDs.length);
+        json.name("exposures").beginArray();
+        for (String exposureID : user.exposureIDs) {
+            json.value(exposureID);
+        }
+        json.endArray();
+        json.endObject();
+        json.close();
+        return result.toString();
+    }
+
+    private String exposureDetails(final String exposureID) throws IOException {
+        int exposure = parseExposureID(exposureID);
+        if (exposure < 0) {
+            return null;
+        }
+
+        Random random = new Random(seed ^ (exposure * 0x5DEECE66DL));
+        StringWriter result = new StringWriter();
+        JsonWriter json = new JsonWriter(result);
+        json.beginObject();
+        json.name("id").value(exposureID);
+        json.name("title").value("Synthetic breach " + exposure);
+        json.name("entries").value(1000 + random.nextInt(10000000));
+        json.name("date").value(formatDate(BREACH_DATES_START + (long) (random.nextDouble() * BREACH_DATES_RANGE)));
+        json.name("category").value("Synthetic");
+        json.name("passwordType").value(SPECIFICATION_TYPES[random.nextInt(SPECIFICATION_TYPES.length)].name());
+        json.name("exposedData").beginArray();
+        for (int i = 0; i < 2 + random.nextInt(EXPOSED_DATA.length - 1); i++) {
+            json.value(EXPOSED_DATA[i]);
+        }
+        json.endArray();
+        json.name("dateAdded").value(formatDate(BREACH_DATES_START + BREACH_DATES_RANGE));
+        json.name("sourceURLs").beginArray().endArray();
+        json.name("domainsAffected").value(1 + random.nextInt(5000));
+        json.endObject();
+        json.close();
+        return result.toString();
+    }
+
+    private int findUser(final String usernameHash) {
+        if (usernameHash == null) {
+            return -1;
+        }
+        int position = Arrays.binarySearch(usernameHashes, usernameHash.toLowerCase());
+        return position < 0 ? -1 : usernameHashUsers[position];
+    }
+
+    private int parseExposureID(final String exposureID) {
+        if (exposureID == null || !exposureID.startsWith("synthetic")) {
+            return -1;
+        }
+        try {
+            int exposure = Integer.parseInt(exposureID.substring("synthetic".length()), 16);
+            return exposure >= 0 && exposure < exposureCount ? exposure : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private User user(final int index) {
+        if (index < 0 || index >= userCount) {
+            throw new IndexOutOfBoundsException("No user " + index);
+        }
+        Random random = new Random(seed ^ (index * 0x9E3779B97F4A7C15L));
+
+        User user = new User();
+        user.compromised = random.nextDouble() < compromisedFraction;
+        user.salt = randomString(random, ALPHANUMERIC, 16);
+        user.lastBreachDate = formatDate(BREACH_DATES_START + (long) (random.nextDouble() * BREACH_DATES_RANGE));
+
+        user.hashTypes = new PasswordType[hashSpecsPerUser];
+        user.hashSalts = new String[hashSpecsPerUser];
+        for (int i = 0; i < hashSpecsPerUser; i++) {
+            PasswordType hashType;
+            if (i == 0) {
+                hashType = PasswordType.SHA256;
+            } else if (i >= hashSpecsPerUser - bcryptSpecsPerUser) {
+                hashType = PasswordType.BCrypt;
+            } else {
+                hashType = SPECIFICATION_TYPES[random.nextInt(SPECIFICATION_TYPES.length)];
+            }
+            user.hashTypes[i] = hashType;
+            user.hashSalts[i] = salt(random, hashType);
+        }
+
+        user.exposureIDs = new String[random.nextInt(5)];
+        for (int i = 0; i < user.exposureIDs.length; i++) {
+            user.exposureIDs[i] = "synthetic" + Integer.toHexString(random.nextInt(exposureCount));
+        }
+        return user;
+    }
+
+    private static String salt(final Random random, final PasswordType hashType) {
+        switch (hashType) {
+            case IPBoard_MyBB:
+                return randomString(random, ALPHANUMERIC, 5);
+            case vBulletinPost3_8_5:
+                return randomString(random, ALPHANUMERIC, 30);
+            case MD5Crypt:
+                return "$1$" + randomString(random, ALPHANUMERIC, 8);
+            case PHPBB3:
+                return "$H$9" + randomString(random, ITOA64, 8);
+            case DjangoSHA1:
+                return randomString(random, ALPHANUMERIC, 5);
+            case CustomAlgorithm1:
+                return randomString(random, ALPHANUMERIC, 7);
+            case BCrypt:
+                return "$2a$10$" + randomString(random, ITOA64, 22);
+            default:
+                return "";
+        }
+    }
+
+    private static String credentialHash(final String username, final String passwordHash, final String salt) {
+        // as Enzoic calculates it for the Credentials API
+        String argon2Hash = Hashing.argon2(username.toLowerCase() + "$" + passwordHash, salt);
+        String justHash = argon2Hash.substring(argon2Hash.lastIndexOf('$') + 1);
+        return Hashing.bytesToHex(Hashing.decodeBase64(justHash));
+    }
+
+    private static String randomString(final Random random, final String alphabet, final int length) {
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return result.toString();
+    }
+
+    private static String formatDate(final long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(millis));
+    }
+
+    private static String first(final Map<String, List<String>> query, final String name) {
+        List<String> values = query.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static class User {
+        boolean compromised;
+        String salt;
+        String lastBreachDate;
+        PasswordType[] hashTypes;
+        String[] hashSalts;
+        String[] exposureIDs;
+    }
+}
@@ -4,6 +4,7 @@ import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.InvalidKeyException;
+import java.util.concurrent.CancellationException;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -11,7 +12,9 @@ import de.mkammerer.argon2.Argon2Factory;
 import de.mkammerer.argon2.jna.Size_t;
 import de.mkammerer.argon2.jna.Uint32_t;
 import org.apache.commons.codec.binary.Base64;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.crypto.digests.WhirlpoolDigest;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
 import org.mindrot.jbcrypt.BCrypt;
 import de.mkammerer.argon2.jna.Argon2Library;
 import com.sun.jna.Native;
@@ -53,8 +56,12 @@ public class Hashing {
     }
 
     public static String sha256(final String toHash) {
+        return bytesToHex(sha256Binary(toHash));
+    }
+
+    public static byte[] sha256Binary(final String toHash) {
         try {
-            return bytesToHex(MessageDigest.getInstance("SHA-256").digest(utf8ToByteArray(toHash)));
+            return MessageDigest.getInstance("SHA-256").digest(utf8ToByteArray(toHash));
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("Missing required hashing algorithm: SHA-256");
         }
@@ -92,13 +99,13 @@ public class Hashing {
     }
 
     public static byte[] whirlpoolBinary(final String toHash) {
-        java.security.Security.addProvider(new BouncyCastleProvider());
-
-        try {
-            return MessageDigest.getInstance("Whirlpool").digest(utf8ToByteArray(toHash));
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Missing required hashing algorithm: Whirlpool");
-        }
+        // used directly rather than through a registered JCA provider, which needs reflection
+        byte[] bytes = utf8ToByteArray(toHash);
+        WhirlpoolDigest digest = new WhirlpoolDigest();
+        digest.update(bytes, 0, bytes.length);
+        byte[] result = new byte[digest.getDigestSize()];
+        digest.doFinal(result, 0);
+        return result;
     }
 
     public static String myBB(final String toHash, final String salt) {
@@ -117,6 +124,7 @@ public class Hashing {
             checkedSalt = "$2a$" + salt.substring(4);
         }
 
+        checkCancelled();
         String result = BCrypt.hashpw(toHash, checkedSalt);
 
         if (yVersion) {
@@ -140,6 +148,10 @@ public class Hashing {
 
         byte[] hash = Hashing.md5Binary(justsalt + toHash);
         do {
+            // the salt can ask for up to 2^30 rounds
+            if ((count & 0x3FF) == 0) {
+                checkCancelled();
+            }
             byte[] t = new byte[hash.length + toHashBytes.length];
             System.arraycopy(hash, 0, t, 0, hash.length);
             System.arraycopy(toHashBytes, 0, t, hash.length, toHashBytes.length);
@@ -195,7 +207,10 @@ public class Hashing {
         return Hashing.md5(salt + toHash);
     }
 
-    public static String desCrypt(final String toHash, final String salt) { return Crypt.crypt(utf8ToByteArray(toHash), salt); }
+    public static String desCrypt(final String toHash, final String salt) {
+        checkCancelled();
+        return Crypt.crypt(utf8ToByteArray(toHash), salt);
+    }
 
     public static String mySQLPre4_1(final String toHash) {
         int result1;
@@ -287,12 +302,14 @@ public class Hashing {
     public static String customAlgorithm9(final String toHash, final String salt) {
         String result = sha512(toHash + salt);
         for (int i = 0; i < 11; i++) {
+            checkCancelled();
             result = sha512(result);
         }
         return result;
     }
 
     public static String sha512Crypt(final String toHash, final String salt) {
+        checkCancelled();
         return Crypt.crypt(utf8ToByteArray(toHash), salt);
     }
 
@@ -301,6 +318,7 @@ public class Hashing {
     }
 
     public static String sha256Crypt(final String toHash, final String salt) {
+        checkCancelled();
         return Crypt.crypt(utf8ToByteArray(toHash), salt);
     }
 
@@ -323,19 +341,18 @@ public class Hashing {
     public static String argon2(final String toHash, final String salt) {
 
         // defaults
-        Uint32_t iterations = new Uint32_t(3);
-        Uint32_t memoryCost = new Uint32_t(1024);
-        Uint32_t parallelism = new Uint32_t(2);
-        Uint32_t hashLength = new Uint32_t(20);
-        Size_t hashLengthSize = new Size_t(20);
-        Argon2Factory.Argon2Types argonType = Argon2Factory.Argon2Types.ARGON2d;
+        int iterations = 3;
+        int memoryCost = 1024;
+        int parallelism = 2;
+        int hashLength = 20;
+        boolean argon2i = false;
         String justSalt = salt;
 
         // check if salt has settings encoded in it
         if (salt.startsWith("$argon2")) {
             // apparently has settings encoded in it - use these
             if (salt.startsWith("$argon2i"))
-                argonType = Argon2Factory.Argon2Types.ARGON2i;
+                argon2i = true;
 
             String[] saltComponents = salt.split("\\$");
             if (saltComponents.length == 5) {
@@ -348,17 +365,16 @@ public class Hashing {
                         String[] saltParamValues = saltParam.split("\\=");
                         switch (saltParamValues[0]) {
                             case "t":
-                                iterations = new Uint32_t(Integer.parseInt(saltParamValues[1]));
+                                iterations = Integer.parseInt(saltParamValues[1]);
                                 break;
                             case "m":
-                                memoryCost = new Uint32_t(Integer.parseInt(saltParamValues[1]));
+                                memoryCost = Integer.parseInt(saltParamValues[1]);
                                 break;
                             case "p":
-                                parallelism = new Uint32_t(Integer.parseInt(saltParamValues[1]));
+                                parallelism = Integer.parseInt(saltParamValues[1]);
                                 break;
                             case "l":
-                                hashLength = new Uint32_t(Integer.parseInt(saltParamValues[1]));
-                                hashLengthSize = new Size_t(Integer.parseInt(saltParamValues[1]));
+                                hashLength = Integer.parseInt(saltParamValues[1]);
                                 break;
                         }
                     }
@@ -369,26 +385,50 @@ public class Hashing {
             }
         }
 
+        checkCancelled();
         byte[] toHashBytes = utf8ToByteArray(toHash);
         byte[] saltBytes = utf8ToByteArray(justSalt);
 
-        int len = Argon2Library.INSTANCE.argon2_encodedlen(iterations, memoryCost, parallelism,
-                new Uint32_t(saltBytes.length), hashLength, argonType.ordinal).intValue();
+        if (Argon2Support.NATIVE) {
+            return argon2Native(argon2i, iterations, memoryCost, parallelism, hashLength, toHashBytes, saltBytes);
+        }
+        return argon2Java(argon2i, iterations, memoryCost, parallelism, hashLength, toHashBytes, saltBytes);
+    }
+
+    /**
+     * Whether Argon2 hashes are calculated by the native Argon2 library, rather than the slower pure Java fallback
+     * used where it cannot be loaded, e.g. in a GraalVM native image
+     */
+    public static boolean isNativeArgon2() {
+        return Argon2Support.NATIVE;
+    }
+
+    static String argon2Native(final boolean argon2i, final int iterations, final int memoryCost,
+                               final int parallelism, final int hashLength, final byte[] toHashBytes,
+                               final byte[] saltBytes) {
+        Argon2Factory.Argon2Types argonType =
+                argon2i ? Argon2Factory.Argon2Types.ARGON2i : Argon2Factory.Argon2Types.ARGON2d;
+        Uint32_t iterationsValue = new Uint32_t(iterations);
+        Uint32_t memoryCostValue = new Uint32_t(memoryCost);
+        Uint32_t parallelismValue = new Uint32_t(parallelism);
+
+        int len = Argon2Library.INSTANCE.argon2_encodedlen(iterationsValue, memoryCostValue, parallelismValue,
+                new Uint32_t(saltBytes.length), new Uint32_t(hashLength), argonType.ordinal).intValue();
         final byte[] outputHash = new byte[len];
 
         int result;
-        if (argonType == Argon2Factory.Argon2Types.ARGON2i)
+        if (argon2i)
             result = Argon2Library.INSTANCE.argon2i_hash_encoded(
-                    iterations, memoryCost, parallelism,
+                    iterationsValue, memoryCostValue, parallelismValue,
                     toHashBytes, new Size_t(toHashBytes.length),
                     saltBytes, new Size_t(saltBytes.length),
-                    hashLengthSize, outputHash, new Size_t(outputHash.length));
+                    new Size_t(hashLength), outputHash, new Size_t(outputHash.length));
         else
             result = Argon2Library.INSTANCE.argon2d_hash_encoded(
-                    iterations, memoryCost, parallelism,
+                    iterationsValue, memoryCostValue, parallelismValue,
                     toHashBytes, new Size_t(toHashBytes.length),
                     saltBytes, new Size_t(saltBytes.length),
-                    hashLengthSize, outputHash, new Size_t(outputHash.length));
+                    new Size_t(hashLength), outputHash, new Size_t(outputHash.length));
 
         if (result != Argon2Library.ARGON2_OK) {
             String errMsg = Argon2Library.INSTANCE.argon2_error_message(result);
@@ -398,7 +438,60 @@ public class Hashing {
         return Native.toString(outputHash);
     }
 
-    public static String md5Crypt(final String toHash, final String salt) { return Md5Crypt.md5Crypt(utf8ToByteArray(toHash), salt); }
+    static String argon2Java(final boolean argon2i, final int iterations, final int memoryCost,
+                             final int parallelism, final int hashLength, final byte[] toHashBytes,
+                             final byte[] saltBytes) {
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(new Argon2Parameters.Builder(argon2i ? Argon2Parameters.ARGON2_i : Argon2Parameters.ARGON2_d)
+                .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                .withIterations(iterations)
+                .withMemoryAsKB(memoryCost)
+                .withParallelism(parallelism)
+                .withSalt(saltBytes)
+                .build());
+        byte[] hash = new byte[hashLength];
+        generator.generateBytes(toHashBytes, hash);
+
+        // the same encoding as the native library's argon2_hash_encoded, which omits base64 padding
+        return "$" + (argon2i ? "argon2i" : "argon2d") + "$v=19$m=" + memoryCost + ",t=" + iterations +
+                ",p=" + parallelism + "$" + Base64.encodeBase64String(saltBytes).replace("=", "") +
+                "$" + Base64.encodeBase64String(hash).replace("=", "");
+    }
+
+    /**
+     * Decides once whether to use the native Argon2 library.  The enzoic.argon2 system property can force the choice
+     * with "native" or "java".
+     */
+    private static final class Argon2Support {
+        static final boolean NATIVE = nativeAvailable();
+
+        private static boolean nativeAvailable() {
+            String implementation = System.getProperty("enzoic.argon2");
+            if ("java".equals(implementation)) {
+                return false;
+            }
+            if (!"native".equals(implementation) && System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+                // JNA needs more configuration than a native image provides by default
+                return false;
+            }
+            try {
+                Argon2Library.INSTANCE.argon2_encodedlen(new Uint32_t(1), new Uint32_t(8), new Uint32_t(1),
+                        new Uint32_t(8), new Uint32_t(8), Argon2Factory.Argon2Types.ARGON2d.ordinal);
+                return true;
+            }
+            catch (LinkageError ex) {
+                if ("native".equals(implementation)) {
+                    throw ex;
+                }
+                return false;
+            }
+        }
+    }
+
+    public static String md5Crypt(final String toHash, final String salt) {
+        checkCancelled();
+        return Md5Crypt.md5Crypt(utf8ToByteArray(toHash), salt);
+    }
 
 
 
@@ -414,6 +507,17 @@ public class Hashing {
         return Base64.encodeBase64String(toEncode);
     }
 
+    /**
+     * Throws a CancellationException if the current thread has been interrupted, leaving it interrupted.  The expensive
+     * hashes call this before starting and, where the rounds are ours, between rounds, so that work for an abandoned
+     * call stops early.  Rounds inside BCrypt, crypt and Argon2 cannot be interrupted.
+     */
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Interrupted calculating password hash");
+        }
+    }
+
     private static byte[] xor(byte[] array1, byte[] array2) {
         byte[] result = new byte[array1.length];
 
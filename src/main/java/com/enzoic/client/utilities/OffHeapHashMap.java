@@ -0,0 +1,472 @@
+package com.enzoic.client.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * An off-heap, open-addressing hash map from fixed-width 32 byte keys (e.g. SHA-256 hashes) to small binary values.
+ * <p>
+ * Entries are stored in direct or memory-mapped ByteBuffers rather than on the Java heap, so millions of entries can be
+ * held without adding to GC pressure.  The table is split into lock-striped segments, each of which uses linear probing
+ * with backward-shift deletion.  Reads are optimistic and do not block.  Once a segment holds its share of maxEntries,
+ * inserting a new key evicts an existing one using the CLOCK (second chance) algorithm.
+ */
+public class OffHeapHashMap {
+
+    public static final int KEY_LENGTH = 32;
+
+    // slot layout: [state:1][referenced:1][value length:2][unused:4][key:32][value:maxValueLength]
+    private static final int STATE_OFFSET = 0;
+    private static final int REFERENCED_OFFSET = 1;
+    private static final int LENGTH_OFFSET = 2;
+    private static final int KEY_OFFSET = 8;
+    private static final int VALUE_OFFSET = KEY_OFFSET + KEY_LENGTH;
+
+    private static final byte EMPTY = 0;
+    private static final byte OCCUPIED = 1;
+
+    private static final int MAX_VALUE_LENGTH = 0xFFFF;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_ENTRIES_PER_SEGMENT = 64;
+
+    private final Segment[] segments;
+    private final int maxEntries;
+    private final int maxValueLength;
+
+    /**
+     * Creates a new map backed by direct ByteBuffers.
+     *
+     * @param maxEntries     the maximum number of entries to hold before evicting
+     * @param maxValueLength the maximum length of a value in bytes - larger values are rejected by put
+     */
+    public OffHeapHashMap(final int maxEntries, final int maxValueLength) {
+        this(maxEntries, maxValueLength, allocateDirect(maxEntries, maxValueLength));
+    }
+
+    private OffHeapHashMap(final int maxEntries, final int maxValueLength, final ByteBuffer[] buffers) {
+        this.maxEntries = maxEntries;
+        this.maxValueLength = maxValueLength;
+        this.segments = new Segment[buffers.length];
+
+        int entriesPerSegment = entriesPerSegment(maxEntries, buffers.length);
+        for (int i = 0; i < buffers.length; i++) {
+            segments[i] = new Segment(buffers[i], slotsPerSegment(entriesPerSegment), slotSize(maxValueLength),
+                    entriesPerSegment);
+        }
+    }
+
+    /**
+     * Creates a new map backed by a memory-mapped file.  Any previous contents of the file are discarded.
+     *
+     * @param file           the file to map
+     * @param maxEntries     the maximum number of entries to hold before evicting
+     * @param maxValueLength the maximum length of a value in bytes - larger values are rejected by put
+     * @return the new map
+     * @throws IOException the file could not be created or mapped
+     */
+    public static OffHeapHashMap mapFile(final File file, final int maxEntries, final int maxValueLength)
+            throws IOException {
+        checkArguments(maxEntries, maxValueLength);
+
+        int segmentCount = segmentCount(maxEntries);
+        long segmentBytes = segmentBytes(maxEntries, maxValueLength, segmentCount);
+        ByteBuffer[] buffers = new ByteBuffer[segmentCount];
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // truncating first guarantees we start from zeroed (i.e. empty) slots
+            raf.setLength(0);
+            raf.setLength(segmentBytes * segmentCount);
+
+            FileChannel channel = raf.getChannel();
+            for (int i = 0; i < segmentCount; i++) {
+                buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, segmentBytes * i, segmentBytes);
+            }
+        }
+
+        return new OffHeapHashMap(maxEntries, maxValueLength, buffers);
+    }
+
+    /**
+     * Looks up the value stored for a key.
+     *
+     * @param key a 32 byte key
+     * @return a copy of the stored value, or null if the key is not present
+     */
+    public byte[] get(final byte[] key) {
+        checkKey(key);
+        long hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Stores a value for a key, replacing any existing value.  May evict another entry to make room.
+     *
+     * @param key   a 32 byte key
+     * @param value the value to store
+     * @return false if the value was longer than maxValueLength and was not stored
+     */
+    public boolean put(final byte[] key, final byte[] value) {
+        checkKey(key);
+        if (value.length > maxValueLength) {
+            return false;
+        }
+        long hash = hash(key);
+        segmentFor(hash).put(key, hash, value);
+        return true;
+    }
+
+    /**
+     * Removes the entry for a key.
+     *
+     * @param key a 32 byte key
+     * @return true if an entry was removed
+     */
+    public boolean remove(final byte[] key) {
+        checkKey(key);
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * The number of entries currently stored
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * The total number of entries evicted to make room for new ones
+     * @return long
+     */
+    public long evictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            evictions += segment.evictions;
+        }
+        return evictions;
+    }
+
+    /**
+     * The maximum number of entries this map will hold
+     * @return int
+     */
+    public int capacity() {
+        return entriesPerSegment(maxEntries, segments.length) * segments.length;
+    }
+
+    /**
+     * The maximum length of a value in bytes
+     * @return int
+     */
+    public int maxValueLength() {
+        return maxValueLength;
+    }
+
+    private Segment segmentFor(final long hash) {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    private static void checkKey(final byte[] key) {
+        if (key == null || key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Key must be " + KEY_LENGTH + " bytes");
+        }
+    }
+
+    private static void checkArguments(final int maxEntries, final int maxValueLength) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        if (maxValueLength <= 0 || maxValueLength > MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("maxValueLength must be between 1 and " + MAX_VALUE_LENGTH);
+        }
+    }
+
+    private static ByteBuffer[] allocateDirect(final int maxEntries, final int maxValueLength) {
+        checkArguments(maxEntries, maxValueLength);
+
+        int segmentCount = segmentCount(maxEntries);
+        long segmentBytes = segmentBytes(maxEntries, maxValueLength, segmentCount);
+        ByteBuffer[] buffers = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            buffers[i] = ByteBuffer.allocateDirect((int) segmentBytes);
+        }
+        return buffers;
+    }
+
+    private static int segmentCount(final int maxEntries) {
+        int segmentCount = MAX_SEGMENTS;
+        while (segmentCount > 1 && maxEntries / segmentCount < MIN_ENTRIES_PER_SEGMENT) {
+            segmentCount >>= 1;
+        }
+        return segmentCount;
+    }
+
+    private static int entriesPerSegment(final int maxEntries, final int segmentCount) {
+        return (maxEntries + segmentCount - 1) / segmentCount;
+    }
+
+    private static int slotsPerSegment(final int entriesPerSegment) {
+        // keep the load factor at or below 75% so probe sequences stay short
+        long minSlots = (long) entriesPerSegment * 4 / 3 + 1;
+        long slots = Long.highestOneBit(minSlots);
+        return (int) (slots < minSlots ? slots << 1 : slots);
+    }
+
+    private static int slotSize(final int maxValueLength) {
+        // round up to 8 bytes so keys stay aligned
+        return (VALUE_OFFSET + maxValueLength + 7) & ~7;
+    }
+
+    private static long segmentBytes(final int maxEntries, final int maxValueLength, final int segmentCount) {
+        long segmentBytes = (long) slotsPerSegment(entriesPerSegment(maxEntries, segmentCount)) * slotSize(maxValueLength);
+        if (segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxEntries and maxValueLength are too large for a single map");
+        }
+        return segmentBytes;
+    }
+
+    private static long hash(final byte[] key) {
+        return mix(longAt(key, 0));
+    }
+
+    private static long mix(long h) {
+        // MurmurHash3 finalizer - keys are usually already uniformly distributed hashes, but don't rely on it
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long longAt(final byte[] bytes, final int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            result = (result << 8) | (bytes[i] & 0xFF);
+        }
+        return result;
+    }
+
+    private final class Segment {
+        private final ByteBuffer buffer;
+        private final int mask;
+        private final int slotSize;
+        private final int maxEntries;
+        private final StampedLock lock = new StampedLock();
+
+        private volatile int size;
+        private volatile long evictions;
+        private int clockHand;
+
+        Segment(final ByteBuffer buffer, final int slots, final int slotSize, final int maxEntries) {
+            this.buffer = buffer;
+            this.mask = slots - 1;
+            this.slotSize = slotSize;
+            this.maxEntries = maxEntries;
+        }
+
+        byte[] get(final byte[] key, final long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                byte[] value = read(key, hash);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+
+            // a writer got in the way - retry holding the read lock
+            stamp = lock.readLock();
+            try {
+                return read(key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void put(final byte[] key, final long hash, final byte[] value) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = find(key, hash);
+                if (slot >= 0) {
+                    writeValue(slot * slotSize, value);
+                    return;
+                }
+
+                if (size >= maxEntries) {
+                    evict();
+                }
+
+                int base = firstEmptySlot(hash) * slotSize;
+                for (int i = 0; i < KEY_LENGTH; i++) {
+                    buffer.put(base + KEY_OFFSET + i, key[i]);
+                }
+                writeValue(base, value);
+                buffer.put(base + REFERENCED_OFFSET, (byte) 0);
+                buffer.put(base + STATE_OFFSET, OCCUPIED);
+                size++;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(final byte[] key, final long hash) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = find(key, hash);
+                if (slot < 0) {
+                    return false;
+                }
+                delete(slot);
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                for (int slot = 0; slot <= mask; slot++) {
+                    buffer.put(slot * slotSize + STATE_OFFSET, EMPTY);
+                }
+                size = 0;
+                clockHand = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private byte[] read(final byte[] key, final long hash) {
+            // may run concurrently with a writer, so every value read here must be bounds checked and the
+            // caller must validate the result before trusting it
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                int base = slot * slotSize;
+                if (buffer.get(base + STATE_OFFSET) == EMPTY) {
+                    return null;
+                }
+                if (keyEquals(base, key)) {
+                    int length = buffer.getShort(base + LENGTH_OFFSET) & 0xFFFF;
+                    if (length > maxValueLength) {
+                        return null;
+                    }
+                    byte[] value = new byte[length];
+                    ByteBuffer view = buffer.duplicate();
+                    view.position(base + VALUE_OFFSET);
+                    view.get(value);
+
+                    // give the entry a second chance the next time the clock hand passes
+                    if (buffer.get(base + REFERENCED_OFFSET) == 0) {
+                        buffer.put(base + REFERENCED_OFFSET, (byte) 1);
+                    }
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private int find(final byte[] key, final long hash) {
+            int slot = (int) hash & mask;
+            while (buffer.get(slot * slotSize + STATE_OFFSET) != EMPTY) {
+                if (keyEquals(slot * slotSize, key)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int firstEmptySlot(final long hash) {
+            int slot = (int) hash & mask;
+            while (buffer.get(slot * slotSize + STATE_OFFSET) != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void evict() {
+            while (true) {
+                int slot = clockHand;
+                int base = slot * slotSize;
+                clockHand = (clockHand + 1) & mask;
+
+                if (buffer.get(base + STATE_OFFSET) == OCCUPIED) {
+                    if (buffer.get(base + REFERENCED_OFFSET) != 0) {
+                        buffer.put(base + REFERENCED_OFFSET, (byte) 0);
+                    } else {
+                        delete(slot);
+                        evictions++;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void delete(final int slot) {
+            // backward-shift deletion: pull later entries of the probe sequence into the hole so lookups never need
+            // tombstones
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                int nextBase = next * slotSize;
+                if (buffer.get(nextBase + STATE_OFFSET) == EMPTY) {
+                    break;
+                }
+
+                int home = (int) mix(buffer.getLong(nextBase + KEY_OFFSET)) & mask;
+                boolean reachable = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+                if (!reachable) {
+                    copySlot(next, hole);
+                    hole = next;
+                }
+            }
+            buffer.put(hole * slotSize + STATE_OFFSET, EMPTY);
+            size--;
+        }
+
+        private void copySlot(final int from, final int to) {
+            ByteBuffer source = buffer.duplicate();
+            source.position(from * slotSize);
+            source.limit(from * slotSize + slotSize);
+            ByteBuffer target = buffer.duplicate();
+            target.position(to * slotSize);
+            target.put(source);
+        }
+
+        private void writeValue(final int base, final byte[] value) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(base + VALUE_OFFSET);
+            view.put(value);
+            buffer.putShort(base + LENGTH_OFFSET, (short) value.length);
+        }
+
+        private boolean keyEquals(final int base, final byte[] key) {
+            for (int i = 0; i < KEY_LENGTH; i += 8) {
+                if (buffer.getLong(base + KEY_OFFSET + i) != longAt(key, i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void growsWhileBusyAndHealthy() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8);
+
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < limiter.getLimit(); j++) {
+                limiter.acquire(RequestPriority.INTERACTIVE, null);
+            }
+            for (int j = limiter.getInFlight(); j > 0; j--) {
+                limiter.onSuccess(1000000);
+            }
+        }
+
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void doesNotGrowWhenIdle() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire(RequestPriority.NORMAL, null);
+            limiter.onSuccess(1000000);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void shrinksOnOverloadOnly() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 100);
+
+        limiter.acquire(RequestPriority.NORMAL, null);
+        limiter.onFailure(new HttpStatusException(401, "unauthorized"));
+        limiter.acquire(RequestPriority.NORMAL, null);
+        limiter.onFailure(new IOException("connection refused"));
+        assertEquals(10, limiter.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire(RequestPriority.NORMAL, null);
+            limiter.onFailure(i % 2 == 0 ? new HttpStatusException(429, "slow down") : new SocketTimeoutException());
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void expiredDeadlineTakesNoSlot() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        Deadline deadline = new Deadline(1);
+        Thread.sleep(5);
+
+        assertThrows(SocketTimeoutException.class, () -> limiter.acquire(RequestPriority.INTERACTIVE, deadline));
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void waitsForSlotUntilDeadline() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        limiter.acquire(RequestPriority.NORMAL, null);
+
+        assertThrows(SocketTimeoutException.class, () -> limiter.acquire(RequestPriority.NORMAL, new Deadline(30)));
+
+        limiter.onSuccess(1000000);
+        limiter.acquire(RequestPriority.NORMAL, new Deadline(30));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void reservesSlotsForInteractive() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 10, 10);
+
+        for (int i = 0; i < 8; i++) {
+            limiter.acquire(RequestPriority.BULK, null);
+        }
+        assertThrows(SocketTimeoutException.class, () -> limiter.acquire(RequestPriority.NORMAL, new Deadline(20)));
+
+        limiter.acquire(RequestPriority.INTERACTIVE, new Deadline(20));
+        limiter.acquire(RequestPriority.INTERACTIVE, new Deadline(20));
+        assertEquals(10, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,175 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class CircuitBreakerTest {
+
+    private final List<String> changes = new ArrayList<String>();
+
+    private final CircuitBreakerListener listener = new CircuitBreakerListener() {
+        @Override
+        public void onStateChange(final ApiEndpoint endpoint, final CircuitBreakerState previousState,
+                                  final CircuitBreakerState newState) {
+            changes.add(previousState + "->" + newState);
+        }
+    };
+
+    @Test
+    void opensOnFailureRateAndRecoversAfterProbes() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(ApiEndpoint.ACCOUNTS,
+                new CircuitBreakerPolicy(CircuitBreakerPolicy.Fallback.FAIL_OPEN, 0.5, 1000, 10, 50, 2), listener);
+
+        // 4 failures in a full window of 10 stays closed
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.allowRequest());
+            if (i >= 6) {
+                breaker.onFailure(new SocketTimeoutException());
+            } else {
+                breaker.onSuccess("url", "{}", 0);
+            }
+        }
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+
+        // the 5th failure in the window, replacing the oldest success, opens it
+        breaker.onFailure(new HttpStatusException(503, "unavailable"));
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        CircuitBreakerOpenException open = assertThrows(CircuitBreakerOpenException.class,
+                () -> breaker.fallback("url"));
+        assertTrue(open.isFailOpen());
+
+        // after the open period only 2 probes are allowed
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess("url", "{}", 0);
+        breaker.onSuccess("url", "{}", 0);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+        assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->CLOSED]", changes.toString());
+    }
+
+    @Test
+    void failedProbeReopens() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(ApiEndpoint.CREDENTIALS,
+                new CircuitBreakerPolicy(CircuitBreakerPolicy.Fallback.FAIL_CLOSED, 1.0, 1000, 2, 50, 1), listener);
+
+        breaker.onFailure(new IOException());
+        breaker.onFailure(new IOException());
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+        assertThrows(CircuitBreakerOpenException.class, () -> breaker.fallback("url"));
+
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure(new SocketTimeoutException());
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void slowCallsCountAndClientErrorsDoNot() {
+        CircuitBreaker breaker = new CircuitBreaker(ApiEndpoint.PASSWORDS,
+                new CircuitBreakerPolicy(CircuitBreakerPolicy.Fallback.FAIL_OPEN, 1.0, 100, 3, 1000, 1), listener);
+
+        breaker.onFailure(new HttpStatusException(401, "unauthorized"));
+        breaker.onFailure(new HttpStatusException(400, "bad request"));
+        breaker.onSuccess("url", "{}", 200000000L);
+        breaker.onSuccess("url", "{}", 200000000L);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+
+        breaker.onSuccess("url", "{}", 200000000L);
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+    }
+
+    @Test
+    void servesStaleResponses() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(ApiEndpoint.EXPOSURES,
+                new CircuitBreakerPolicy(CircuitBreakerPolicy.Fallback.SERVE_STALE, 1.0, 1000, 1, 1000, 1), null);
+
+        breaker.onSuccess("seen", "{\"count\":1}", 0);
+        breaker.onFailure(new SocketTimeoutException());
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+
+        assertEquals("{\"count\":1}", breaker.fallback("seen"));
+        assertThrows(CircuitBreakerOpenException.class, () -> breaker.fallback("unseen"));
+    }
+
+    @Test
+    void neverServesPasswordsOrOldResponses() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(ApiEndpoint.ACCOUNTS,
+                new CircuitBreakerPolicy(CircuitBreakerPolicy.Fallback.SERVE_STALE, 1.0, 1000, 1, 1000, 1, 50), null);
+
+        breaker.onSuccess("accounts?username=hash&includePasswords=1", "{\"passwords\":[]}", 0);
+        breaker.onSuccess("accounts?username=hash", "{\"salt\":\"salt\"}", 0);
+        breaker.onFailure(new SocketTimeoutException());
+        assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+
+        assertThrows(CircuitBreakerOpenException.class,
+                () -> breaker.fallback("accounts?username=hash&includePasswords=1"));
+        assertEquals("{\"salt\":\"salt\"}", breaker.fallback("accounts?username=hash"));
+
+        Thread.sleep(60);
+        assertThrows(CircuitBreakerOpenException.class, () -> breaker.fallback("accounts?username=hash"));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(
+                CircuitBreakerPolicy.Fallback.SERVE_STALE, 1.0, 1000, 1, 1000, 1, 0));
+    }
+
+    @Test
+    void failOpenChecksAreReportedAsSuch() throws Exception {
+        Enzoic enzoic = new Enzoic("key", "secret", "http://fake.invalid/v1");
+        enzoic.SetTransport(request -> {
+            throw new SocketTimeoutException("Read timed out");
+        });
+        enzoic.EnableCircuitBreaker(
+                new CircuitBreakerPolicy(CircuitBreakerPolicy.Fallback.FAIL_OPEN, 1.0, 1000, 1, 60000, 1), listener);
+
+        assertThrows(SocketTimeoutException.class, () -> enzoic.CheckCredentials("user@example.com", "password"));
+        assertEquals(CircuitBreakerState.OPEN, enzoic.GetCircuitBreakerState(ApiEndpoint.ACCOUNTS));
+
+        // the plain calls behave as if nothing was found, but the diagnostics say that nothing was checked
+        assertFalse(enzoic.CheckCredentials("user@example.com", "password"));
+        CheckCredentialsResult result = enzoic.CheckCredentialsWithDiagnostics("user@example.com", "password",
+                null, null);
+        assertEquals(CheckCredentialsResult.Outcome.CIRCUIT_BREAKER_OPEN, result.getOutcome());
+        assertFalse(result.isCompromised());
+        assertNull(enzoic.GetUserPasswords("user@example.com"));
+    }
+
+    @Test
+    void expiredDeadlineDoesNotUseUpProbes() throws Exception {
+        Enzoic enzoic = new Enzoic("key", "secret", "http://fake.invalid/v1");
+        boolean[] failing = { true };
+        enzoic.SetTransport(request -> {
+            if (failing[0]) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            return new TransportResponse(200, Collections.<String, String>emptyMap(), "{}".getBytes());
+        });
+        enzoic.EnableCircuitBreaker(
+                new CircuitBreakerPolicy(CircuitBreakerPolicy.Fallback.FAIL_CLOSED, 1.0, 1000, 1, 50, 1), listener);
+
+        assertThrows(SocketTimeoutException.class,
+                () -> enzoic.MakeRestCall(ApiEndpoint.PASSWORDS, "", "GET", null, null));
+        assertEquals(CircuitBreakerState.OPEN, enzoic.GetCircuitBreakerState(ApiEndpoint.PASSWORDS));
+        failing[0] = false;
+        Thread.sleep(60);
+
+        // a call which is already out of time fails without taking the breaker's only probe
+        Deadline expired = new Deadline(1);
+        Thread.sleep(5);
+        assertThrows(SocketTimeoutException.class,
+                () -> enzoic.MakeRestCall(ApiEndpoint.PASSWORDS, "", "GET", null, expired));
+
+        assertEquals("{}", enzoic.MakeRestCall(ApiEndpoint.PASSWORDS, "", "GET", null, null));
+        assertEquals(CircuitBreakerState.CLOSED, enzoic.GetCircuitBreakerState(ApiEndpoint.PASSWORDS));
+    }
+}
@@ -0,0 +1,37 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.SocketTimeoutException;
+
+class DeadlineTest {
+
+    @Test
+    void requestTimeoutShrinksToRemainingBudget() throws Exception {
+        Deadline deadline = new Deadline(10000);
+
+        int timeout = deadline.getRequestTimeout(0);
+        assertTrue(timeout > 9000 && timeout <= 10000);
+
+        // a shorter configured timeout wins, a longer one is cut to the budget
+        assertEquals(500, deadline.getRequestTimeout(500));
+        assertTrue(deadline.getRequestTimeout(60000) <= 10000);
+        assertFalse(deadline.isExpired());
+    }
+
+    @Test
+    void expiredDeadlineRejectsRequests() throws Exception {
+        Deadline deadline = new Deadline(1);
+        Thread.sleep(5);
+
+        assertTrue(deadline.isExpired());
+        assertTrue(deadline.getRemainingNanos() < 0);
+        assertThrows(SocketTimeoutException.class, () -> deadline.getRequestTimeout(0));
+    }
+
+    @Test
+    void invalidBudget() {
+        assertThrows(IllegalArgumentException.class, () -> new Deadline(0));
+    }
+}
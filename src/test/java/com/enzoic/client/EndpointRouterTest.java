@@ -0,0 +1,96 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.LatencyDistribution;
+import com.enzoic.client.simulator.SyntheticDataset;
+
+class EndpointRouterTest {
+
+    private EnzoicSimulator near;
+    private EnzoicSimulator far;
+    private Enzoic enzoic;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        SyntheticDataset dataset = new SyntheticDataset(10, 1);
+        near = new EnzoicSimulator(dataset).start();
+        far = new EnzoicSimulator(dataset).start();
+        far.setLatency(LatencyDistribution.fixed(40));
+
+        enzoic = new Enzoic("key", "secret", "http://127.0.0.1:1/v1");
+        enzoic.SetRequestTimeout(2000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        enzoic.DisableEndpointRouting();
+        near.stop();
+        far.stop();
+    }
+
+    @Test
+    void prefersLowestLatency() throws IOException {
+        enzoic.EnableEndpointRouting(far.getBaseURL(), near.getBaseURL());
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(enzoic.CheckPassword("123456"));
+        }
+
+        // once each has been measured, only the occasional exploratory request goes to the far endpoint
+        assertTrue(far.getRequestCount(ApiEndpoint.PASSWORDS) <= 7);
+        assertTrue(near.getRequestCount(ApiEndpoint.PASSWORDS) >= 43);
+    }
+
+    @Test
+    void failsOverAndReinstates() throws IOException, InterruptedException {
+        near.setErrorRate(ApiEndpoint.PASSWORDS, 1.0);
+        enzoic.EnableEndpointRouting("http://127.0.0.1:1/v1", near.getBaseURL(), far.getBaseURL());
+
+        // neither the unreachable endpoint nor the failing one is an error for the caller
+        for (int i = 0; i < 10; i++) {
+            assertTrue(enzoic.CheckPassword("123456"));
+        }
+        assertEquals(1, near.getRequestCount(ApiEndpoint.PASSWORDS));
+        assertEquals(10, far.getRequestCount(ApiEndpoint.PASSWORDS));
+
+        near.setErrorRate(ApiEndpoint.PASSWORDS, 0);
+        TimeUnit.MILLISECONDS.sleep(2000);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(enzoic.CheckPassword("123456"));
+        }
+        assertTrue(near.getRequestCount(ApiEndpoint.PASSWORDS) >= 9);
+    }
+
+    @Test
+    void doesNotEjectOnClientErrors() {
+        EndpointRouter router = new EndpointRouter(new String[]{"http://a", "http://b"}, new EndpointRouter.Prober() {
+            @Override
+            public void probe(final String baseURL) {
+            }
+        });
+        try {
+            EndpointRouter.Route route = router.select();
+            assertFalse(router.onFailure(route, new HttpStatusException(429, "Too many requests")));
+            assertFalse(router.onFailure(route, new InterruptedIOException("cancelled")));
+            assertFalse(route.ejected);
+
+            assertTrue(router.onFailure(route, new SocketTimeoutException("Read timed out")));
+            assertTrue(route.ejected);
+            assertNotSame(route, router.select());
+            assertTrue(router.hasAlternative(route));
+        } finally {
+            router.shutdown();
+        }
+    }
+}
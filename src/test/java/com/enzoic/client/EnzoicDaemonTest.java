@@ -0,0 +1,145 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.LatencyDistribution;
+import com.enzoic.client.simulator.SyntheticDataset;
+
+class EnzoicDaemonTest {
+
+    private SyntheticDataset dataset;
+    private EnzoicSimulator simulator;
+    private Enzoic enzoic;
+    private EnzoicDaemon daemon;
+    private EnzoicSidecarClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataset = new SyntheticDataset(10, 3, 0, 0.5, 11);
+        simulator = new EnzoicSimulator(dataset).start();
+        enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+        daemon = new EnzoicDaemon(enzoic, "token").start(0);
+        client = new EnzoicSidecarClient(daemon.getPort(), "token");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        daemon.close();
+        simulator.stop();
+    }
+
+    @Test
+    void matchesDirectCalls() throws IOException {
+        for (int i = 0; i < dataset.getUserCount(); i++) {
+            String username = dataset.getUsername(i);
+            assertEquals(dataset.isCompromised(i), client.CheckCredentials(username, dataset.getPassword(i)));
+            assertFalse(client.CheckCredentialsEx(username, "not-the-password", null,
+                    new PasswordType[]{PasswordType.BCrypt}));
+            assertEquals(dataset.isCompromised(i), client.CheckPassword(dataset.getPassword(i)));
+
+            UserPasswords expected = enzoic.GetUserPasswords(username);
+            UserPasswords actual = client.GetUserPasswords(username);
+            assertEquals(expected.getPasswords().length, actual.getPasswords().length);
+            assertEquals(expected.getLastBreachDate(), actual.getLastBreachDate());
+
+            ExposuresResponse exposures = client.GetExposuresForUser(username);
+            assertEquals(enzoic.GetExposuresForUser(username).getCount(), exposures.getCount());
+            for (String exposureID : exposures.getExposures() == null ? new String[0] : exposures.getExposures()) {
+                ExposureDetails details = client.GetExposureDetails(exposureID);
+                assertEquals(enzoic.GetExposureDetails(exposureID).getTitle(), details.getTitle());
+            }
+        }
+
+        CheckPasswordExResponse password = client.CheckPasswordEx("123456");
+        assertNotNull(password);
+        assertEquals(enzoic.CheckPasswordEx("123456").exposureCount(), password.exposureCount());
+        assertNull(client.CheckPasswordEx("not-a-known-password-at-all"));
+        assertNull(client.GetUserPasswords("nobody@example.com"));
+    }
+
+    @Test
+    void rejectsWrongToken() throws IOException {
+        EnzoicSidecarClient intruder = new EnzoicSidecarClient(daemon.getPort(), "wrong");
+        try {
+            IOException ex = assertThrows(IOException.class, () -> intruder.CheckPassword("123456"));
+            assertTrue(ex.getMessage().contains("auth token"));
+        } finally {
+            intruder.close();
+        }
+        assertEquals(0, daemon.getCallCount());
+    }
+
+    @Test
+    void dropsConnectionsSendingShortFrames() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeInt(SidecarProtocol.MAGIC);
+            out.writeByte(SidecarProtocol.VERSION);
+            ResponseCache.writeString(out, "token");
+            out.flush();
+            assertEquals(SidecarProtocol.OK, in.readByte());
+
+            // too short to hold a request ID - the daemon hangs up rather than leave the client waiting
+            out.writeInt(2);
+            out.write(new byte[2]);
+            out.flush();
+            assertEquals(-1, in.read());
+        }
+        assertEquals(0, daemon.getCallCount());
+        assertTrue(client.CheckPassword("123456"));
+    }
+
+    @Test
+    void reportsErrorsAndReconnects() throws IOException {
+        simulator.setErrorRate(ApiEndpoint.PASSWORDS, 1.0);
+        assertThrows(IOException.class, () -> client.CheckPassword("123456"));
+        simulator.setErrorRate(ApiEndpoint.PASSWORDS, 0);
+        // the error is the API's, so the connection is still good
+        assertTrue(client.CheckPassword("123456"));
+
+        daemon.close();
+        assertThrows(IOException.class, () -> client.CheckPassword("123456"));
+
+        daemon = new EnzoicDaemon(enzoic, "token").start(daemon.getPort());
+        assertTrue(client.CheckPassword("123456"));
+    }
+
+    @Test
+    void coalescesIdenticalCalls() throws Exception {
+        simulator.setLatency(LatencyDistribution.fixed(300));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> client.CheckPassword("123456")));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(8, daemon.getCallCount());
+        assertTrue(daemon.getCoalescedCount() > 0);
+        assertEquals(8 - daemon.getCoalescedCount(), simulator.getRequestCount(ApiEndpoint.PASSWORDS));
+    }
+}
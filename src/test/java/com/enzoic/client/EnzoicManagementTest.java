@@ -0,0 +1,117 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.SyntheticDataset;
+
+class EnzoicManagementTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private SyntheticDataset dataset;
+    private EnzoicSimulator simulator;
+    private Enzoic enzoic;
+    private ObjectName name;
+    private EnzoicMXBean mbean;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataset = new SyntheticDataset(10, 3, 0, 0.5, 3);
+        simulator = new EnzoicSimulator(dataset).start();
+        enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+        name = enzoic.RegisterMBean("management-test");
+        mbean = JMX.newMXBeanProxy(server, name, EnzoicMXBean.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        enzoic.UnregisterMBean();
+        simulator.stop();
+    }
+
+    @Test
+    void registersUnderTheInstanceName() {
+        assertEquals("com.enzoic.client:type=Enzoic,name=\"management-test\"", name.toString());
+        assertTrue(server.isRegistered(name));
+        assertThrows(IllegalStateException.class, () -> enzoic.RegisterMBean("management-test-2"));
+
+        enzoic.UnregisterMBean();
+        assertFalse(server.isRegistered(name));
+        // unregistering again is harmless, and the instance can then be registered again
+        enzoic.UnregisterMBean();
+        assertEquals(name, enzoic.RegisterMBean("management-test"));
+    }
+
+    @Test
+    void tunesTheInstance() {
+        assertEquals(0, mbean.getRequestTimeout());
+        mbean.setRequestTimeout(250);
+        assertEquals(Integer.valueOf(250), enzoic.GetRequestTimeout());
+        assertEquals(250, mbean.getRequestTimeout());
+        assertThrows(IllegalArgumentException.class, () -> mbean.setRequestTimeout(-1));
+
+        mbean.setMaxConcurrentRequests(4);
+        assertEquals(4, enzoic.GetMaxConcurrentRequests());
+        assertEquals(4, mbean.getMaxConcurrentRequests());
+
+        mbean.setMaxConcurrentHashes(2);
+        assertEquals(2, enzoic.GetMaxConcurrentHashes());
+        assertEquals(2, mbean.getMaxConcurrentHashes());
+
+        mbean.setMaxBCryptHashes(1);
+        assertEquals(1, enzoic.GetMaxBCryptHashes());
+        assertThrows(IllegalArgumentException.class, () -> mbean.setMaxBCryptHashes(-1));
+        assertEquals(1, mbean.getMaxBCryptHashes());
+    }
+
+    @Test
+    void reportsCacheStatistics() throws IOException {
+        // without caches
+        assertEquals(0, mbean.getAccountsCacheSize());
+        assertEquals(0, mbean.getAccountsCacheHitRatio());
+        assertEquals(0, mbean.getAccountsCacheTTL());
+        assertThrows(IllegalStateException.class, () -> mbean.setAccountsCacheTTL(1000));
+        assertThrows(IllegalStateException.class, () -> mbean.setExposureDetailsCacheTTL(1000));
+        assertThrows(IllegalStateException.class, () -> mbean.setUserPasswordsCacheTTL(1000));
+        mbean.clearCaches();
+
+        enzoic.EnableAccountsCache(100, 60000);
+        enzoic.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        enzoic.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        enzoic.CheckCredentials(dataset.getUsername(1), dataset.getPassword(1));
+
+        assertEquals(2, mbean.getAccountsCacheSize());
+        assertEquals(1.0 / 3, mbean.getAccountsCacheHitRatio(), 0.0001);
+        assertEquals(0, mbean.getAccountsCacheEvictions());
+        assertEquals(60000, mbean.getAccountsCacheTTL());
+        mbean.setAccountsCacheTTL(1000);
+        assertEquals(1000, enzoic.GetAccountsCache().getTTL());
+        assertEquals(0, mbean.getSharedCacheHits());
+        assertEquals(0, mbean.getSharedCacheErrors());
+
+        mbean.clearCaches();
+        assertEquals(0, mbean.getAccountsCacheSize());
+        enzoic.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        assertEquals(3, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+    }
+
+    @Test
+    void reportsIdlePools() {
+        assertEquals(0, mbean.getInFlightRequests());
+        assertEquals(0, mbean.getRequestPoolActiveThreads());
+        assertEquals(0, mbean.getRequestPoolQueueDepth());
+        assertEquals(0, mbean.getHashPoolActiveThreads());
+        assertEquals(0, mbean.getHashPoolQueueDepth());
+        assertEquals(0, mbean.getHashPoolSaturation());
+        assertEquals(enzoic.GetConcurrencyLimit(), mbean.getConcurrencyLimit());
+    }
+}
@@ -0,0 +1,472 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.enzoic.client.CheckCredentialsResult.HashStatus;
+import com.enzoic.client.CheckCredentialsResult.Outcome;
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.LatencyDistribution;
+import com.enzoic.client.simulator.SyntheticDataset;
+import com.enzoic.client.utilities.Hashing;
+
+/**
+ * Tests of the calls built on top of the API, against the simulator rather than the live API
+ */
+class EnzoicSimulatedTest {
+
+    private SyntheticDataset dataset;
+    private EnzoicSimulator simulator;
+    private Enzoic enzoic;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataset = new SyntheticDataset(20, 3, 0, 0.5, 11);
+        simulator = new EnzoicSimulator(dataset).start();
+        enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    void exposureDetailsForUsersFetchesEachExposureOnce() throws IOException {
+        List<String> usernames = new ArrayList<String>();
+        for (int i = dataset.getUserCount() - 1; i >= 0; i--) {
+            usernames.add(dataset.getUsername(i));
+        }
+        usernames.add("nobody@example.com");
+        usernames.add(dataset.getUsername(0));
+
+        Map<String, ExposureDetails[]> result = enzoic.GetExposureDetailsForUsers(usernames);
+
+        // one entry per distinct user, in the order given
+        assertEquals(new ArrayList<String>(new LinkedHashSet<String>(usernames)),
+                new ArrayList<String>(result.keySet()));
+        assertEquals(0, result.get("nobody@example.com").length);
+
+        Set<String> exposureIDs = new HashSet<String>();
+        for (int i = 0; i < dataset.getUserCount(); i++) {
+            String[] expected = enzoic.GetExposuresForUser(dataset.getUsername(i)).getExposures();
+            ExposureDetails[] details = result.get(dataset.getUsername(i));
+            assertEquals(expected.length, details.length);
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j], details[j].getId());
+            }
+            exposureIDs.addAll(Arrays.asList(expected));
+        }
+        assertTrue(exposureIDs.size() > 0);
+
+        // the batch's lookups, then the checks above
+        long batchRequests = dataset.getUserCount() + 1 + exposureIDs.size();
+        assertEquals(batchRequests + dataset.getUserCount(), simulator.getRequestCount(ApiEndpoint.EXPOSURES));
+    }
+
+    @Test
+    void exposureDetailsForUsersFailsIfALookupFails() throws IOException {
+        String failingID = null;
+        for (int i = 0; i < dataset.getUserCount() && failingID == null; i++) {
+            String[] exposureIDs = enzoic.GetExposuresForUser(dataset.getUsername(i)).getExposures();
+            if (exposureIDs.length > 0) {
+                failingID = exposureIDs[0];
+            }
+        }
+        final String failingQuery = "id=" + failingID;
+        enzoic.SetTransport(request -> {
+            if (request.getURL().endsWith(failingQuery)) {
+                throw new IOException("Simulated failure");
+            }
+            return Transport.DEFAULT.send(request);
+        });
+
+        List<String> usernames = new ArrayList<String>();
+        for (int i = 0; i < dataset.getUserCount(); i++) {
+            usernames.add(dataset.getUsername(i));
+        }
+        IOException ex = assertThrows(IOException.class, () -> enzoic.GetExposureDetailsForUsers(usernames));
+        assertEquals("Simulated failure", ex.getMessage());
+    }
+
+    @Test
+    void exposureDetailsForNoUsers() throws IOException {
+        assertTrue(enzoic.GetExposureDetailsForUsers(new ArrayList<String>()).isEmpty());
+        assertEquals(0, simulator.getRequestCount(ApiEndpoint.EXPOSURES));
+    }
+
+    @Test
+    void userPasswordsWithExposureDetailsSharesLookups() throws IOException {
+        int index = compromisedUserWithExposures();
+        UserPasswords userPasswords = enzoic.GetUserPasswords(dataset.getUsername(index));
+        long requestsBefore = simulator.getRequestCount(ApiEndpoint.EXPOSURES);
+
+        UserPasswordsWithExposureDetails result =
+                enzoic.GetUserPasswordsWithExposureDetailsEx(dataset.getUsername(index), false);
+
+        assertEquals(userPasswords.getLastBreachDate(), result.getLastBreachDate());
+        assertEquals(userPasswords.getPasswords().length, result.getPasswords().length);
+        Set<String> exposureIDs = new HashSet<String>();
+        for (int i = 0; i < result.getPasswords().length; i++) {
+            UserPasswordDetails expected = userPasswords.getPasswords()[i];
+            UserPasswordDetailsWithExposureDetails actual = result.getPasswords()[i];
+            assertEquals(expected.getHashType(), actual.getHashType());
+            assertEquals(expected.getPassword(), actual.getPassword());
+            assertEquals(expected.getExposures().length, actual.getExposures().length);
+            for (int j = 0; j < expected.getExposures().length; j++) {
+                assertEquals(expected.getExposures()[j], actual.getExposures()[j].getId());
+            }
+            exposureIDs.addAll(Arrays.asList(expected.getExposures()));
+        }
+        assertEquals(requestsBefore + exposureIDs.size(), simulator.getRequestCount(ApiEndpoint.EXPOSURES));
+
+        assertNull(enzoic.GetUserPasswordsWithExposureDetailsEx("nobody@example.com", false));
+        assertNull(enzoic.GetUserPasswordsWithExposureDetailsEx("nobody@example.com", true));
+    }
+
+    @Test
+    void lazyExposureDetailsAreLookedUpOnFirstUse() throws IOException {
+        int index = compromisedUserWithExposures();
+        long requestsBefore = simulator.getRequestCount(ApiEndpoint.EXPOSURES);
+
+        UserPasswordsWithExposureDetails result =
+                enzoic.GetUserPasswordsWithExposureDetailsEx(dataset.getUsername(index), true);
+        assertEquals(requestsBefore, simulator.getRequestCount(ApiEndpoint.EXPOSURES));
+
+        UserPasswordDetailsWithExposureDetails password = result.getPasswords()[0];
+        ExposureDetails[] exposures = password.getExposures();
+        assertTrue(exposures.length > 0);
+        long requestsAfter = simulator.getRequestCount(ApiEndpoint.EXPOSURES);
+        assertTrue(requestsAfter > requestsBefore);
+
+        // resolved once, and shared with the user's other passwords
+        assertSame(exposures, password.getExposures());
+        assertEquals(exposures.length, result.getPasswords()[1].getExposures().length);
+        assertEquals(requestsAfter, simulator.getRequestCount(ApiEndpoint.EXPOSURES));
+    }
+
+    @Test
+    void lazyExposureDetailsFailureIsUnchecked() throws IOException {
+        int index = compromisedUserWithExposures();
+        UserPasswordsWithExposureDetails result =
+                enzoic.GetUserPasswordsWithExposureDetailsEx(dataset.getUsername(index), true);
+
+        simulator.setErrorRate(ApiEndpoint.EXPOSURES, 1.0);
+        UncheckedIOException ex = assertThrows(UncheckedIOException.class,
+                () -> result.getPasswords()[0].getExposures());
+        assertTrue(ex.getCause() instanceof IOException);
+
+        // a failed lookup is not remembered
+        simulator.setErrorRate(ApiEndpoint.EXPOSURES, 0);
+        assertTrue(result.getPasswords()[0].getExposures().length > 0);
+    }
+
+    @Test
+    void userPasswordsForUsersKeepsOrderAndDuplicates() throws IOException {
+        for (boolean usePartialHashMatching : new boolean[] { false, true }) {
+            List<String> usernames = new ArrayList<String>();
+            for (int i = dataset.getUserCount() - 1; i >= 0; i--) {
+                usernames.add(dataset.getUsername(i));
+            }
+            usernames.add("nobody@example.com");
+            usernames.add(dataset.getUsername(3).toUpperCase());
+
+            Map<String, UserPasswords> result = enzoic.GetUserPasswordsForUsers(usernames, usePartialHashMatching);
+
+            assertEquals(usernames, new ArrayList<String>(result.keySet()));
+            assertTrue(result.containsKey("nobody@example.com"));
+            assertNull(result.get("nobody@example.com"));
+            for (int i = 0; i < dataset.getUserCount(); i++) {
+                UserPasswords expected = enzoic.GetUserPasswords(dataset.getUsername(i));
+                UserPasswords actual = result.get(dataset.getUsername(i));
+                assertEquals(expected.getPasswords().length, actual.getPasswords().length);
+                assertEquals(expected.getPasswords()[0].getPassword(), actual.getPasswords()[0].getPassword());
+            }
+            // usernames are matched case-insensitively
+            assertEquals(result.get(dataset.getUsername(3)).getPasswords()[0].getPassword(),
+                    result.get(dataset.getUsername(3).toUpperCase()).getPasswords()[0].getPassword());
+        }
+    }
+
+    @Test
+    void userPasswordsForUsersRequestsEachBucketOnce() throws IOException {
+        List<String> usernames = new ArrayList<String>();
+        Set<String> buckets = new HashSet<String>();
+        for (int i = 0; i < dataset.getUserCount(); i++) {
+            usernames.add(dataset.getUsername(i));
+            usernames.add(dataset.getUsername(i).toUpperCase());
+            buckets.add(Hashing.sha256(dataset.getUsername(i).toLowerCase()).substring(0, 8));
+        }
+
+        enzoic.GetUserPasswordsForUsers(usernames, true);
+        assertEquals(buckets.size(), simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+
+        // one request per distinct username without partial matching
+        enzoic.GetUserPasswordsForUsers(usernames.subList(0, 4), false);
+        assertEquals(buckets.size() + 4, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+    }
+
+    @Test
+    void userPasswordsForUsersFailsIfARequestFails() {
+        simulator.setErrorRate(ApiEndpoint.ACCOUNTS, 1.0);
+        List<String> usernames = Arrays.asList(dataset.getUsername(0), dataset.getUsername(1));
+
+        assertThrows(IOException.class, () -> enzoic.GetUserPasswordsForUsers(usernames, false));
+        assertThrows(IOException.class, () -> enzoic.GetUserPasswordsForUsers(usernames, true));
+    }
+
+    @Test
+    void passwordReuseMatchesTheUsersPasswords() throws IOException {
+        for (int i = 0; i < dataset.getUserCount(); i++) {
+            String username = dataset.getUsername(i);
+            assertTrue(enzoic.CheckPasswordReuse(username, "Old-" + i));
+            assertEquals(dataset.isCompromised(i), enzoic.CheckPasswordReuse(username, dataset.getPassword(i)));
+            assertFalse(enzoic.CheckPasswordReuse(username, "Old-" + (i + 1)));
+        }
+        assertFalse(enzoic.CheckPasswordReuse("nobody@example.com", "Old-0"));
+    }
+
+    @Test
+    void passwordReuseChecksEachKindOfEntry() throws IOException {
+        String json = "{\"passwords\":["
+                + "{\"hashType\":0,\"password\":\"plain-password\"},"
+                + "{\"hashType\":1,\"password\":\"" + Hashing.md5("md5-password") + "\"},"
+                + "{\"hashType\":2,\"password\":\"" + Hashing.sha1("sha1-password") + "\"},"
+                + "{\"hashType\":3,\"password\":\"" + Hashing.sha256("sha256-password") + "\"},"
+                + "{\"hashType\":1},"
+                + "{\"password\":\"no-hash-type\"}"
+                + "]}";
+        enzoic.SetTransport(request -> new TransportResponse(200, Collections.<String, String>emptyMap(),
+                json.getBytes(StandardCharsets.UTF_8)));
+        UserPasswords userPasswords = enzoic.GetUserPasswords("user@example.com");
+
+        assertTrue(enzoic.CheckPasswordAgainstUserPasswords(userPasswords, "plain-password"));
+        assertTrue(enzoic.CheckPasswordAgainstUserPasswords(userPasswords, "md5-password"));
+        assertTrue(enzoic.CheckPasswordAgainstUserPasswords(userPasswords, "sha1-password"));
+        assertTrue(enzoic.CheckPasswordAgainstUserPasswords(userPasswords, "sha256-password"));
+        assertFalse(enzoic.CheckPasswordAgainstUserPasswords(userPasswords, "no-hash-type"));
+        assertFalse(enzoic.CheckPasswordAgainstUserPasswords(userPasswords, "other-password"));
+
+        enzoic.SetTransport(request -> new TransportResponse(200, Collections.<String, String>emptyMap(),
+                "{}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(enzoic.CheckPasswordAgainstUserPasswords(enzoic.GetUserPasswords("other@example.com"),
+                "plain-password"));
+    }
+
+    @Test
+    void diagnosticsReportEachOutcome() throws IOException {
+        int compromised = 0;
+        while (!dataset.isCompromised(compromised)) {
+            compromised++;
+        }
+        String username = dataset.getUsername(compromised);
+
+        CheckCredentialsResult result = enzoic.CheckCredentialsWithDiagnostics(username,
+                dataset.getPassword(compromised), null, null);
+        assertEquals(Outcome.COMPROMISED, result.getOutcome());
+        assertTrue(result.isCompromised());
+        assertTrue(result.getCandidatesCompared() > 0);
+        assertEquals(3, result.getHashSpecifications().size());
+        for (CheckCredentialsResult.HashSpecificationResult hashSpecification : result.getHashSpecifications()) {
+            assertEquals(HashStatus.COMPUTED, hashSpecification.getStatus());
+        }
+        assertTrue(result.getTotalNanos() >= result.getAccountsLookupNanos() + result.getCredentialsLookupNanos());
+
+        result = enzoic.CheckCredentialsWithDiagnostics(username, "not-the-password", null, null);
+        assertEquals(Outcome.NOT_COMPROMISED, result.getOutcome());
+        assertFalse(result.isCompromised());
+
+        result = enzoic.CheckCredentialsWithDiagnostics("nobody@example.com", "password", null, null);
+        assertEquals(Outcome.ACCOUNT_NOT_FOUND, result.getOutcome());
+        assertTrue(result.getHashSpecifications().isEmpty());
+
+        result = enzoic.CheckCredentialsWithDiagnostics(username, dataset.getPassword(compromised),
+                new Date(System.currentTimeMillis() + 86400000L), null);
+        assertEquals(Outcome.NO_NEW_BREACHES, result.getOutcome());
+        assertFalse(result.isCompromised());
+
+        result = enzoic.CheckCredentialsWithDiagnostics(username, dataset.getPassword(compromised), null,
+                PasswordType.values());
+        assertEquals(Outcome.NO_HASHES_COMPUTED, result.getOutcome());
+        assertFalse(result.isCompromised());
+        for (CheckCredentialsResult.HashSpecificationResult hashSpecification : result.getHashSpecifications()) {
+            assertEquals(HashStatus.EXCLUDED, hashSpecification.getStatus());
+        }
+        assertEquals(0, result.getCredentialsLookupNanos());
+    }
+
+    @Test
+    void diagnosticsReportWhySpecificationsWereSkipped() throws IOException {
+        StringBuilder json = new StringBuilder("{\"salt\":\"0123456789abcdef0123456789abcdef\",\"lastBreachDate\":\"2020-01-01T00:00:00.000Z\","
+                + "\"passwordHashesRequired\":["
+                + "{\"hashType\":1,\"salt\":\"\"},"
+                + "{\"hashType\":2,\"salt\":\"\"},"
+                + "{\"hashType\":8,\"salt\":\"$2a$04$abcdefghijklmnopqrstuu\"},"
+                + "{\"hashType\":999,\"salt\":\"\"},"
+                + "{\"hashType\":5,\"salt\":\"\"}");
+        for (int i = 5; i < 51; i++) {
+            json.append(",{\"hashType\":1,\"salt\":\"\"}");
+        }
+        json.append("]}");
+        enzoic.SetTransport(request -> request.getEndpoint() == ApiEndpoint.ACCOUNTS
+                ? new TransportResponse(200, Collections.<String, String>emptyMap(),
+                        json.toString().getBytes(StandardCharsets.UTF_8))
+                : new TransportResponse(404, Collections.<String, String>emptyMap(), new byte[0]));
+        enzoic.SetMaxBCryptHashes(0);
+
+        CheckCredentialsResult result = enzoic.CheckCredentialsWithDiagnostics("user@example.com", "password", null,
+                new PasswordType[] { PasswordType.SHA1 });
+
+        assertEquals(Outcome.NOT_COMPROMISED, result.getOutcome());
+        List<CheckCredentialsResult.HashSpecificationResult> hashSpecifications = result.getHashSpecifications();
+        assertEquals(51, hashSpecifications.size());
+        assertEquals(HashStatus.COMPUTED, hashSpecifications.get(0).getStatus());
+        assertEquals(HashStatus.EXCLUDED, hashSpecifications.get(1).getStatus());
+        assertEquals(PasswordType.BCrypt, hashSpecifications.get(2).getHashType());
+        assertEquals(HashStatus.BCRYPT_LIMIT, hashSpecifications.get(2).getStatus());
+        assertNull(hashSpecifications.get(3).getHashType());
+        assertEquals(HashStatus.UNSUPPORTED, hashSpecifications.get(3).getStatus());
+        assertEquals(HashStatus.FAILED, hashSpecifications.get(4).getStatus());
+        assertEquals(HashStatus.COMPUTED, hashSpecifications.get(49).getStatus());
+        assertEquals(HashStatus.SPECIFICATION_LIMIT, hashSpecifications.get(50).getStatus());
+    }
+
+    @Test
+    void diagnosticsAreUnknownWhenTheAccountsLookupRunsOutOfTime() throws IOException {
+        simulator.setLatency(ApiEndpoint.ACCOUNTS, LatencyDistribution.fixed(500));
+
+        CheckCredentialsResult result = enzoic.CheckCredentialsWithDiagnostics(dataset.getUsername(0),
+                dataset.getPassword(0), null, null, 100);
+
+        assertEquals(Outcome.UNKNOWN, result.getOutcome());
+        assertFalse(result.isCompromised());
+        assertTrue(result.getHashSpecifications().isEmpty());
+        assertTrue(result.getAccountsLookupNanos() > 0);
+        assertEquals(0, simulator.getRequestCount(ApiEndpoint.CREDENTIALS));
+    }
+
+    @Test
+    void diagnosticsAreUnknownWhenTheCredentialsLookupRunsOutOfTime() throws IOException {
+        simulator.setLatency(ApiEndpoint.CREDENTIALS, LatencyDistribution.fixed(1000));
+
+        CheckCredentialsResult result = enzoic.CheckCredentialsWithDiagnostics(dataset.getUsername(0),
+                dataset.getPassword(0), null, null, 500);
+
+        assertEquals(Outcome.UNKNOWN, result.getOutcome());
+        assertFalse(result.isCompromised());
+        assertEquals(3, result.getHashSpecifications().size());
+        assertEquals(HashStatus.COMPUTED, result.getHashSpecifications().get(0).getStatus());
+        assertTrue(result.getCredentialsLookupNanos() > 0);
+        assertTrue(result.getTotalNanos() < 1000000000L);
+    }
+
+    @Test
+    void diagnosticsAreUnknownWhenHashingRunsOutOfTime() throws IOException {
+        // warm up, so that most of the budget is spent waiting on the accounts lookup
+        enzoic.CheckCredentialsWithDiagnostics(dataset.getUsername(0), dataset.getPassword(0), null, null);
+        simulator.setLatency(ApiEndpoint.ACCOUNTS, LatencyDistribution.fixed(340));
+        long credentialsRequests = simulator.getRequestCount(ApiEndpoint.CREDENTIALS);
+
+        // less than the quarter of the budget kept for the credentials lookup remains once the account is found
+        CheckCredentialsResult result = enzoic.CheckCredentialsWithDiagnostics(dataset.getUsername(1),
+                dataset.getPassword(1), null, null, 400);
+
+        assertEquals(Outcome.UNKNOWN, result.getOutcome());
+        assertEquals(3, result.getHashSpecifications().size());
+        for (CheckCredentialsResult.HashSpecificationResult hashSpecification : result.getHashSpecifications()) {
+            assertEquals(HashStatus.DEADLINE_EXCEEDED, hashSpecification.getStatus());
+        }
+        assertEquals(credentialsRequests, simulator.getRequestCount(ApiEndpoint.CREDENTIALS));
+    }
+
+    @Test
+    void credentialsCheckRecordsEachPhaseAndCall() throws IOException {
+        HistogramMetrics metrics = new HistogramMetrics();
+        enzoic.SetMetrics(metrics);
+        int compromised = 0;
+        while (!dataset.isCompromised(compromised)) {
+            compromised++;
+        }
+
+        assertTrue(enzoic.CheckCredentials(dataset.getUsername(compromised), dataset.getPassword(compromised)));
+        assertEquals(1, metrics.getPhaseLatency(EnzoicMetrics.Phase.ACCOUNTS_LOOKUP).getCount());
+        assertEquals(3, metrics.getPhaseLatency(EnzoicMetrics.Phase.PASSWORD_HASH).getCount());
+        assertEquals(3, metrics.getPhaseLatency(EnzoicMetrics.Phase.ARGON2).getCount());
+        assertEquals(1, metrics.getPhaseLatency(EnzoicMetrics.Phase.CREDENTIALS_LOOKUP).getCount());
+        assertEquals(2, metrics.getPhaseLatency(EnzoicMetrics.Phase.JSON_DECODE).getCount());
+        long passwordHashes = 0;
+        for (PasswordType passwordType : PasswordType.values()) {
+            passwordHashes += metrics.getPasswordHashLatency(passwordType).getCount();
+        }
+        assertEquals(3, passwordHashes);
+        assertEquals(1, metrics.getCallCount(ApiEndpoint.ACCOUNTS, EnzoicMetrics.Outcome.SUCCESS));
+        assertEquals(1, metrics.getCallCount(ApiEndpoint.CREDENTIALS, EnzoicMetrics.Outcome.SUCCESS));
+        assertEquals(1, metrics.getCallLatency(ApiEndpoint.CREDENTIALS).getCount());
+
+        assertFalse(enzoic.CheckCredentials("nobody@example.com", "password"));
+        assertEquals(1, metrics.getCallCount(ApiEndpoint.ACCOUNTS, EnzoicMetrics.Outcome.NOT_FOUND));
+        assertEquals(2, metrics.getPhaseLatency(EnzoicMetrics.Phase.ACCOUNTS_LOOKUP).getCount());
+        assertEquals(1, metrics.getPhaseLatency(EnzoicMetrics.Phase.CREDENTIALS_LOOKUP).getCount());
+
+        simulator.setErrorRate(ApiEndpoint.ACCOUNTS, 1.0);
+        assertThrows(IOException.class, () -> enzoic.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+        assertEquals(1, metrics.getCallCount(ApiEndpoint.ACCOUNTS, EnzoicMetrics.Outcome.ERROR));
+        simulator.setErrorRate(ApiEndpoint.ACCOUNTS, 0);
+
+        simulator.setLatency(ApiEndpoint.ACCOUNTS, LatencyDistribution.fixed(500));
+        enzoic.SetRequestTimeout(50);
+        assertThrows(IOException.class, () -> enzoic.CheckCredentials(dataset.getUsername(1), dataset.getPassword(1)));
+        assertEquals(1, metrics.getCallCount(ApiEndpoint.ACCOUNTS, EnzoicMetrics.Outcome.TIMEOUT));
+        assertEquals(4, metrics.getCallLatency(ApiEndpoint.ACCOUNTS).getCount());
+    }
+
+    @Test
+    void warmUpMakesNoApiRequests() throws IOException {
+        HistogramMetrics metrics = new HistogramMetrics();
+        enzoic.SetMetrics(metrics);
+
+        // preconnecting reaches the base URL, which is not an endpoint, so uses no quota
+        enzoic.WarmUp(true);
+        enzoic.WarmUp();
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            assertEquals(0, simulator.getRequestCount(endpoint));
+            assertEquals(0, metrics.getCallLatency(endpoint).getCount());
+        }
+        for (EnzoicMetrics.Phase phase : EnzoicMetrics.Phase.values()) {
+            assertEquals(0, metrics.getPhaseLatency(phase).getCount());
+        }
+
+        // and the warmed-up paths still give the same answers
+        int compromised = 0;
+        while (!dataset.isCompromised(compromised)) {
+            compromised++;
+        }
+        assertTrue(enzoic.CheckCredentials(dataset.getUsername(compromised), dataset.getPassword(compromised)));
+        assertEquals(1, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+    }
+
+    private int compromisedUserWithExposures() throws IOException {
+        for (int i = 0; i < dataset.getUserCount(); i++) {
+            if (dataset.isCompromised(i)
+                    && enzoic.GetExposuresForUser(dataset.getUsername(i)).getExposures().length > 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No compromised user with Exposures in the dataset");
+    }
+}
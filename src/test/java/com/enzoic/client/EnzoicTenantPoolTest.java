@@ -0,0 +1,160 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.SharedCacheServer;
+import com.enzoic.client.simulator.SyntheticDataset;
+
+class EnzoicTenantPoolTest {
+
+    private SyntheticDataset dataset;
+    private EnzoicSimulator simulator;
+    private EnzoicTenantPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataset = new SyntheticDataset(10, 3, 0, 1.0, 5);
+        simulator = new EnzoicSimulator(dataset).start();
+        pool = new EnzoicTenantPool(simulator.getBaseURL());
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    void tenantsShareSchedulers() {
+        Enzoic tenant1 = pool.addTenant("tenant-1", "key1", "secret1");
+        Enzoic tenant2 = pool.addTenant("tenant-2", "key2", "secret2");
+
+        assertSame(tenant1, pool.getTenant("tenant-1"));
+        assertSame(tenant1.GetRequestScheduler(), tenant2.GetRequestScheduler());
+        assertSame(tenant1.GetHashScheduler(), tenant2.GetHashScheduler());
+        assertThrows(IllegalArgumentException.class, () -> pool.addTenant("tenant-1", "key3", "secret3"));
+
+        // a tenant's limit caps its own share without changing the pool's
+        pool.setMaxConcurrentRequests(32);
+        tenant1.SetMaxConcurrentRequests(4);
+        assertEquals(4, tenant1.GetMaxConcurrentRequests());
+        assertEquals(32, tenant2.GetMaxConcurrentRequests());
+        assertEquals(32, pool.getMaxConcurrentRequests());
+
+        assertSame(tenant2, pool.removeTenant("tenant-2"));
+        assertNull(pool.getTenant("tenant-2"));
+        assertEquals(1, pool.getTenantIds().size());
+    }
+
+    @Test
+    void tenantsSeeOnlyTheirOwnCacheEntries() throws IOException {
+        pool.enableAccountsCache(100, 60000);
+        Enzoic tenant1 = pool.addTenant("tenant-1", "key1", "secret1");
+        Enzoic tenant2 = pool.addTenant("tenant-2", "key2", "secret2");
+
+        assertTrue(tenant1.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+        assertTrue(tenant1.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+        assertEquals(1, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+
+        // the same user is a miss for another tenant, though both are held in one store
+        assertTrue(tenant2.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+        assertEquals(2, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+        assertEquals(1, tenant1.GetAccountsCache().hits());
+        assertEquals(0, tenant2.GetAccountsCache().hits());
+        assertEquals(2, tenant2.GetAccountsCache().size());
+
+        // clearing one tenant's cache leaves the other's entries
+        tenant1.GetAccountsCache().clear();
+        tenant1.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        tenant2.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        assertEquals(3, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+        assertEquals(1, tenant2.GetAccountsCache().hits());
+
+        // tenants added later join the shared cache too
+        Enzoic tenant3 = pool.addTenant("tenant-3", "key3", "secret3");
+        assertNotNull(tenant3.GetAccountsCache());
+        pool.disableAccountsCache();
+        assertNull(tenant1.GetAccountsCache());
+    }
+
+    @Test
+    void tenantSharesEntriesWithItselfOnOtherNodes() throws IOException {
+        try (SharedCacheServer server = new SharedCacheServer().start()) {
+            Enzoic node1 = tenantOnNode(server, "tenant-1");
+            Enzoic node2 = tenantOnNode(server, "tenant-1");
+            Enzoic other = tenantOnNode(server, "tenant-2");
+
+            node1.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+            node2.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+            assertEquals(1, node2.GetAccountsCache().sharedHits());
+            other.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+            assertEquals(0, other.GetAccountsCache().sharedHits());
+            assertEquals(2, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+
+            // nodes cleared as many times as each other still share
+            node1.GetAccountsCache().clear();
+            node2.GetAccountsCache().clear();
+            node1.CheckCredentials(dataset.getUsername(1), dataset.getPassword(1));
+            node2.CheckCredentials(dataset.getUsername(1), dataset.getPassword(1));
+            assertEquals(2, node2.GetAccountsCache().sharedHits());
+            assertEquals(3, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+        }
+    }
+
+    @Test
+    void readdedTenantDoesNotSeeItsOldEntries() throws IOException {
+        pool.enableAccountsCache(100, 60000);
+        Enzoic tenant = pool.addTenant("tenant-1", "key1", "secret1");
+        tenant.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        tenant.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        assertEquals(1, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+
+        // changing the tenant's credentials refetches rather than reusing responses fetched with the old ones
+        pool.removeTenant("tenant-1");
+        tenant = pool.addTenant("tenant-1", "key2", "secret2");
+        tenant.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        assertEquals(2, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+        assertEquals(0, tenant.GetAccountsCache().hits());
+        tenant.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+        assertEquals(1, tenant.GetAccountsCache().hits());
+    }
+
+    @Test
+    void removedTenantStopsItsThreads() throws InterruptedException {
+        Enzoic tenant = pool.addTenant("tenant-1", "key1", "secret1");
+        tenant.EnableEndpointRouting(simulator.getBaseURL());
+        tenant.EnableHedgedRequests(95);
+        int probeThreads = countThreads("enzoic-route-probe");
+        assertTrue(probeThreads > 0);
+
+        pool.removeTenant("tenant-1");
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (countThreads("enzoic-route-probe") >= probeThreads && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertEquals(probeThreads - 1, countThreads("enzoic-route-probe"));
+    }
+
+    private Enzoic tenantOnNode(final SharedCacheServer server, final String tenantId) {
+        EnzoicTenantPool node = new EnzoicTenantPool(simulator.getBaseURL());
+        node.enableAccountsCache(100, 60000);
+        node.setSharedCache(server.client());
+        return node.addTenant(tenantId, "key", "secret");
+    }
+
+    private static int countThreads(final String namePrefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(namePrefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
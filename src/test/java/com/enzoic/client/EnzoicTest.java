@@ -2,6 +2,7 @@ package com.enzoic.client;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
 import java.lang.reflect.*;
 import java.util.Calendar;
 import java.util.Date;
@@ -280,6 +281,21 @@ class EnzoicTest {
         }
     }
 
+    @Test
+    void warmUp() {
+        // the warm-up itself needs no API access, only preconnecting does
+        Enzoic enzoic = new Enzoic("key", "secret", "http://127.0.0.1:1/v1");
+        enzoic.WarmUp();
+
+        try {
+            enzoic.WarmUp(true);
+            fail("WarmUp should fail when preconnecting to an unreachable API");
+        }
+        catch (IOException ex) {
+            // expected
+        }
+    }
+
     // HELPER METHODS
 
     private boolean checkConstructorWithParameters(String apiKey, String secret) {
@@ -0,0 +1,29 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import jdk.jfr.Recording;
+
+class FlightRecorderSupportTest {
+
+    @Test
+    void disabledEventsReturnNoToken() {
+        assertNull(FlightRecorderSupport.beginRestCall());
+        assertNull(FlightRecorderSupport.beginPasswordHash());
+        FlightRecorderSupport.endRestCall(null, ApiEndpoint.ACCOUNTS, 200, 0);
+    }
+
+    @Test
+    void loadsEventsWhenRecording() {
+        try (Recording recording = new Recording()) {
+            recording.enable("com.enzoic.RestCall");
+            recording.start();
+
+            Object token = FlightRecorderSupport.beginRestCall();
+            assertNotNull(token);
+            FlightRecorderSupport.endRestCall(token, ApiEndpoint.ACCOUNTS, 200, 100);
+            assertNull(FlightRecorderSupport.beginPasswordHash());
+        }
+    }
+}
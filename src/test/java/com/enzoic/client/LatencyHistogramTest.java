@@ -0,0 +1,56 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(50, histogram.getCount());
+        assertEquals(25, histogram.getValueAtPercentile(50));
+        assertEquals(50, histogram.getValueAtPercentile(100));
+        assertEquals(50, histogram.getMax());
+        assertEquals(25.5, histogram.getMean(), 0.0001);
+    }
+
+    @Test
+    void percentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(50000000, histogram.getValueAtPercentile(50), 50000000 * 0.035);
+        assertEquals(99000000, histogram.getValueAtPercentile(99), 99000000 * 0.035);
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void outOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertTrue(histogram.getValueAtPercentile(100) > 0);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
@@ -0,0 +1,93 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.LatencyDistribution;
+import com.enzoic.client.simulator.SyntheticDataset;
+
+class ReplayTransportTest {
+
+    @Test
+    void replaysRecordedExchangesWithoutTheServer() throws IOException {
+        SyntheticDataset dataset = new SyntheticDataset(20, 3, 0, 0.5, 11);
+        File cassette = tempFile();
+
+        boolean[] compromised = new boolean[dataset.getUserCount()];
+        EnzoicSimulator simulator = new EnzoicSimulator(dataset).start();
+        try {
+            Enzoic enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+            RecordingTransport recorder = new RecordingTransport(Transport.DEFAULT, cassette);
+            enzoic.SetTransport(recorder);
+            for (int i = 0; i < compromised.length; i++) {
+                compromised[i] = enzoic.CheckCredentialsEx(dataset.getUsername(i), dataset.getPassword(i), null, null);
+            }
+            assertNull(enzoic.CheckPasswordEx("not a compromised password"));
+
+            simulator.setErrorRate(ApiEndpoint.EXPOSURES, 1.0, 500);
+            assertThrows(IOException.class, () -> enzoic.GetExposuresForUser(dataset.getUsername(0)));
+            recorder.close();
+            assertTrue(recorder.getExchangeCount() > compromised.length);
+        } finally {
+            simulator.stop();
+        }
+
+        Enzoic replayed = new Enzoic("other", "credentials", "http://replay.invalid/v1");
+        ReplayTransport replay = new ReplayTransport(cassette, ReplayTransport.Timing.NONE);
+        replayed.SetTransport(replay);
+        for (int i = 0; i < compromised.length; i++) {
+            assertEquals(dataset.isCompromised(i), compromised[i]);
+            assertEquals(compromised[i],
+                    replayed.CheckCredentialsEx(dataset.getUsername(i), dataset.getPassword(i), null, null));
+        }
+        assertNull(replayed.CheckPasswordEx("not a compromised password"));
+        assertThrows(IOException.class, () -> replayed.GetExposuresForUser(dataset.getUsername(0)));
+        assertThrows(IOException.class, () -> replayed.CheckPassword("never recorded"));
+    }
+
+    @Test
+    void replaysOriginalTiming() throws IOException {
+        SyntheticDataset dataset = new SyntheticDataset(5, 1, 0, 0, 3);
+        File cassette = tempFile();
+
+        EnzoicSimulator simulator = new EnzoicSimulator(dataset).start();
+        try {
+            simulator.setLatency(LatencyDistribution.fixed(200));
+            Enzoic enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+            RecordingTransport recorder = new RecordingTransport(Transport.DEFAULT, cassette);
+            enzoic.SetTransport(recorder);
+            enzoic.CheckPassword("password");
+            recorder.close();
+        } finally {
+            simulator.stop();
+        }
+
+        Enzoic replayed = new Enzoic("key", "secret", "http://replay.invalid/v1");
+        replayed.SetTransport(new ReplayTransport(cassette, ReplayTransport.Timing.ORIGINAL));
+        long start = System.nanoTime();
+        assertTrue(replayed.CheckPassword("password"));
+        assertTrue(System.nanoTime() - start >= 200000000L);
+
+        replayed.SetRequestTimeout(50);
+        assertThrows(SocketTimeoutException.class, () -> replayed.CheckPassword("password"));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        File notCassette = tempFile();
+        java.nio.file.Files.write(notCassette.toPath(), new byte[] {1, 2, 3});
+
+        assertThrows(IOException.class, () -> new ReplayTransport(notCassette, ReplayTransport.Timing.NONE));
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("enzoic", ".cassette");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,59 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.LatencyDistribution;
+import com.enzoic.client.simulator.SyntheticDataset;
+
+class RequestHedgingTest {
+
+    private EnzoicSimulator simulator;
+    private Enzoic enzoic;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        simulator = new EnzoicSimulator(new SyntheticDataset(10, 1)).start();
+        enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+        enzoic.EnableHedgedRequests(50);
+
+        // a fast baseline, then a slow request which is past the hedge delay
+        for (int i = 0; i < 20; i++) {
+            enzoic.CheckPassword("123456");
+        }
+        simulator.setLatency(LatencyDistribution.fixed(200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    void hedgesSlowRequests() throws IOException {
+        assertTrue(enzoic.CheckPassword("123456"));
+        assertEquals(22, simulator.getRequestCount(ApiEndpoint.PASSWORDS));
+    }
+
+    @Test
+    void hedgeNeedsRoomInConcurrencyLimit() throws IOException {
+        enzoic.EnableAdaptiveConcurrencyLimit(1, 1, 1);
+
+        assertTrue(enzoic.CheckPassword("123456"));
+        assertEquals(21, simulator.getRequestCount(ApiEndpoint.PASSWORDS));
+        assertEquals(1, enzoic.GetConcurrencyLimit());
+    }
+
+    @Test
+    void hedgeNeedsRateLimitToken() throws IOException {
+        enzoic.SetRateLimit(0.01, 1);
+
+        assertTrue(enzoic.CheckPassword("123456"));
+        assertEquals(21, simulator.getRequestCount(ApiEndpoint.PASSWORDS));
+    }
+}
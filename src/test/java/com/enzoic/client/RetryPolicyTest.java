@@ -0,0 +1,80 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import javax.net.ssl.SSLException;
+
+class RetryPolicyTest {
+
+    @Test
+    void classifiesStatuses() {
+        RetryPolicy policy = new RetryPolicy(3, 10, 100);
+
+        assertTrue(policy.isRetryable(429));
+        assertTrue(policy.isRetryable(503));
+        assertTrue(policy.isRetryable(504));
+        assertFalse(policy.isRetryable(400));
+        assertFalse(policy.isRetryable(401));
+        assertFalse(policy.isRetryable(501));
+    }
+
+    @Test
+    void classifiesExceptions() {
+        RetryPolicy policy = new RetryPolicy(3, 10, 100);
+
+        assertTrue(policy.isRetryable(new SocketTimeoutException()));
+        assertTrue(policy.isRetryable(new ConnectException()));
+        assertFalse(policy.isRetryable(new InterruptedIOException()));
+        assertFalse(policy.isRetryable(new UnknownHostException()));
+        assertFalse(policy.isRetryable(new SSLException("handshake")));
+        assertFalse(policy.isRetryable(new IOException()));
+    }
+
+    @Test
+    void delaysAreJitteredWithinExponentialCeiling() {
+        RetryPolicy policy = new RetryPolicy(10, 10, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            long first = policy.getDelay(1);
+            assertTrue(first >= 0 && first <= 10);
+            long third = policy.getDelay(3);
+            assertTrue(third >= 0 && third <= 40);
+            long capped = policy.getDelay(50);
+            assertTrue(capped >= 0 && capped <= 100);
+        }
+
+        assertEquals(0, RetryPolicy.NONE.getDelay(1));
+        assertEquals(1, RetryPolicy.NONE.getMaxAttempts());
+    }
+
+    @Test
+    void zeroBaseDelayRetriesImmediately() {
+        RetryPolicy policy = new RetryPolicy(10, 0, 100);
+
+        for (int retry = 1; retry <= 10; retry++) {
+            assertEquals(0, policy.getDelay(retry));
+        }
+    }
+
+    @Test
+    void largeBaseDelayIsCappedAtMaxDelay() {
+        RetryPolicy policy = new RetryPolicy(40, Long.MAX_VALUE / 4, Long.MAX_VALUE / 2);
+
+        for (int retry = 1; retry <= 40; retry++) {
+            long delay = policy.getDelay(retry);
+            assertTrue(delay >= 0 && delay <= Long.MAX_VALUE / 2, "retry " + retry + " delay " + delay);
+        }
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(0, 10, 100));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(3, 100, 10));
+    }
+}
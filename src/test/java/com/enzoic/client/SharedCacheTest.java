@@ -0,0 +1,246 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.enzoic.client.simulator.EnzoicSimulator;
+import com.enzoic.client.simulator.SharedCacheServer;
+import com.enzoic.client.simulator.SyntheticDataset;
+import com.enzoic.client.utilities.Hashing;
+
+class SharedCacheTest {
+
+    private SyntheticDataset dataset;
+    private EnzoicSimulator simulator;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataset = new SyntheticDataset(10, 3, 0, 1.0, 5);
+        simulator = new EnzoicSimulator(dataset).start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    void instancesShareResponses() throws IOException {
+        try (SharedCacheServer server = new SharedCacheServer().start()) {
+            Enzoic node1 = node(server.client());
+            Enzoic node2 = node(server.client());
+
+            assertTrue(node1.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+            assertEquals(1, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+
+            // a miss in node2's own cache is a hit in the shared cache, which is then kept locally
+            assertTrue(node2.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+            assertTrue(node2.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+            assertEquals(1, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+            assertEquals(1, node2.GetAccountsCache().sharedHits());
+            assertEquals(2, node2.GetAccountsCache().hits());
+            assertEquals(1, server.getHitCount());
+
+            UserPasswords passwords = node1.GetUserPasswords(dataset.getUsername(1));
+            assertEquals(passwords.getPasswords().length,
+                    node2.GetUserPasswords(dataset.getUsername(1)).getPasswords().length);
+            assertEquals(2, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+        }
+    }
+
+    @Test
+    void ignoresOtherEncodingVersions() throws IOException {
+        try (SharedCacheServer server = new SharedCacheServer().start()) {
+            SharedCache shared = server.client();
+            Enzoic node1 = node(shared);
+            node1.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+
+            byte[] key = Hashing.sha256Binary(dataset.getUsername(0).toLowerCase());
+            byte[] value = shared.get("accounts", key);
+            assertNotNull(value);
+            value[0] = (byte) (ResponseCache.ENCODING_VERSION + 1);
+            shared.put("accounts", key, value, 60000);
+
+            Enzoic node2 = node(shared);
+            node2.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0));
+            assertEquals(0, node2.GetAccountsCache().sharedHits());
+            assertEquals(2, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+        }
+    }
+
+    @Test
+    void treatsFailuresAsMisses() throws IOException {
+        Enzoic enzoic = node(new SharedCache() {
+            @Override
+            public byte[] get(final String namespace, final byte[] key) throws IOException {
+                throw new IOException("unreachable");
+            }
+
+            @Override
+            public void put(final String namespace, final byte[] key, final byte[] value, final long ttlInMs)
+                    throws IOException {
+                throw new IOException("unreachable");
+            }
+        });
+
+        assertTrue(enzoic.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+        assertEquals(2, enzoic.GetAccountsCache().sharedErrors());
+        assertTrue(enzoic.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+        assertEquals(1, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+    }
+
+    @Test
+    void treatsRuntimeExceptionsAsMisses() throws IOException {
+        Enzoic enzoic = node(new SharedCache() {
+            @Override
+            public byte[] get(final String namespace, final byte[] key) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public void put(final String namespace, final byte[] key, final byte[] value, final long ttlInMs) {
+                throw new IllegalStateException("broken");
+            }
+        });
+
+        assertTrue(enzoic.CheckCredentials(dataset.getUsername(0), dataset.getPassword(0)));
+        assertEquals(2, enzoic.GetAccountsCache().sharedErrors());
+    }
+
+    @Test
+    void instancesInOneProcessShareTheMapping() throws Exception {
+        File file = File.createTempFile("enzoic", ".cache");
+        file.deleteOnExit();
+
+        byte[] key = Hashing.sha256Binary("someone@example.com");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (MappedFileSharedCache cache1 = new MappedFileSharedCache(file, 16, 64);
+             MappedFileSharedCache cache2 = new MappedFileSharedCache(file, 16, 64)) {
+            // each would throw OverlappingFileLockException if they locked the same bucket separately
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    cache1.put("accounts", key, new byte[]{(byte) i}, 60000);
+                }
+                return null;
+            });
+            Future<?> reader = executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    cache2.get("accounts", key);
+                }
+                return null;
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            reader.get(30, TimeUnit.SECONDS);
+            assertArrayEquals(cache1.get("accounts", key), cache2.get("accounts", key));
+        } finally {
+            executor.shutdown();
+        }
+
+        // still usable by an instance opened after the others were closed
+        try (MappedFileSharedCache reopened = new MappedFileSharedCache(file, 16, 64)) {
+            assertNotNull(reopened.get("accounts", key));
+        }
+    }
+
+    @Test
+    void mappedFileIsSharedBetweenInstances() throws IOException, InterruptedException {
+        File file = File.createTempFile("enzoic", ".cache");
+        file.deleteOnExit();
+
+        byte[] key = Hashing.sha256Binary("someone@example.com");
+        byte[] otherKey = Hashing.sha256Binary("someone-else@example.com");
+        try (MappedFileSharedCache writer = new MappedFileSharedCache(file, 1000, 256);
+             MappedFileSharedCache reader = new MappedFileSharedCache(file, 1000, 256)) {
+            writer.put("accounts", key, new byte[]{1, 2, 3}, 60000);
+            writer.put("accounts", otherKey, new byte[]{4}, 60000);
+            writer.put("accounts", key, new byte[]{5, 6}, 60000);
+            writer.put("short", key, new byte[]{7}, 50);
+            writer.put("accounts", otherKey, new byte[257], 60000);
+
+            assertArrayEquals(new byte[]{5, 6}, reader.get("accounts", key));
+            assertArrayEquals(new byte[]{4}, reader.get("accounts", otherKey));
+            assertArrayEquals(new byte[]{7}, reader.get("short", key));
+            assertNull(reader.get("user-passwords", key));
+
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertNull(reader.get("short", key));
+        }
+
+        assertThrows(IOException.class, () -> new MappedFileSharedCache(file, 2000, 256));
+        try (MappedFileSharedCache reopened = new MappedFileSharedCache(file, 1000, 256)) {
+            assertTrue(Arrays.equals(new byte[]{5, 6}, reopened.get("accounts", key)));
+        }
+    }
+
+    @Test
+    void mappedFileIsCreatedOwnerOnly() throws IOException {
+        File directory = Files.createTempDirectory("enzoic").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, "enzoic.cache");
+        file.deleteOnExit();
+
+        try (MappedFileSharedCache cache = new MappedFileSharedCache(file, 16, 64)) {
+            assertTrue(file.length() > 0);
+            if (Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) != null) {
+                assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+            }
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        File file = File.createTempFile("enzoic", ".cache");
+        file.deleteOnExit();
+        new MappedFileSharedCache(file, 1000, 256).close();
+        long length = file.length();
+
+        try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+            truncate.setLength(length / 2);
+        }
+        IOException ex = assertThrows(IOException.class, () -> new MappedFileSharedCache(file, 1000, 256));
+        assertTrue(ex.getMessage().contains("truncated"), ex.getMessage());
+        assertEquals(length / 2, file.length());
+
+        try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+            truncate.setLength(10);
+        }
+        assertThrows(IOException.class, () -> new MappedFileSharedCache(file, 1000, 256));
+    }
+
+    @Test
+    void mappedFileBacksEnzoic() throws IOException {
+        File file = File.createTempFile("enzoic", ".cache");
+        file.deleteOnExit();
+
+        try (MappedFileSharedCache cache1 = new MappedFileSharedCache(file, 1000, 4096);
+             MappedFileSharedCache cache2 = new MappedFileSharedCache(file, 1000, 4096)) {
+            node(cache1).CheckCredentials(dataset.getUsername(2), dataset.getPassword(2));
+            Enzoic node2 = node(cache2);
+            assertTrue(node2.CheckCredentials(dataset.getUsername(2), dataset.getPassword(2)));
+            assertEquals(1, node2.GetAccountsCache().sharedHits());
+            assertEquals(1, simulator.getRequestCount(ApiEndpoint.ACCOUNTS));
+        }
+    }
+
+    private Enzoic node(final SharedCache sharedCache) {
+        Enzoic enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+        enzoic.EnableAccountsCache(100, 60000);
+        enzoic.EnableUserPasswordsCache(100, 60000);
+        enzoic.SetSharedCache(sharedCache);
+        return enzoic;
+    }
+}
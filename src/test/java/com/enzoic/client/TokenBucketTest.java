@@ -0,0 +1,67 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.SocketTimeoutException;
+
+class TokenBucketTest {
+
+    @Test
+    void burstThenSustainedRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 5);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            bucket.acquire(RequestPriority.INTERACTIVE, null);
+        }
+        assertTrue(System.nanoTime() - start < 20000000L, "burst should not wait");
+
+        // the next 10 are released at 100/s
+        start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            bucket.acquire(RequestPriority.INTERACTIVE, null);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        assertTrue(elapsedMs >= 90 && elapsedMs < 300, "elapsed " + elapsedMs);
+    }
+
+    @Test
+    void waitBeyondDeadlineFails() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        bucket.acquire(RequestPriority.INTERACTIVE, null);
+
+        Deadline deadline = new Deadline(50);
+        assertThrows(SocketTimeoutException.class, () -> bucket.acquire(RequestPriority.NORMAL, deadline));
+        assertTrue(deadline.isExpired());
+    }
+
+    @Test
+    void expiredDeadlineTakesNoToken() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        Deadline deadline = new Deadline(1);
+        Thread.sleep(5);
+
+        assertThrows(SocketTimeoutException.class, () -> bucket.acquire(RequestPriority.INTERACTIVE, deadline));
+        // the token is still there
+        bucket.acquire(RequestPriority.INTERACTIVE, new Deadline(20));
+    }
+
+    @Test
+    void lowerPrioritiesLeaveTokensForHigher() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 9);
+
+        // BULK holds back half of the rest of the burst, NORMAL a quarter
+        for (int i = 0; i < 5; i++) {
+            bucket.acquire(RequestPriority.BULK, null);
+        }
+        assertThrows(SocketTimeoutException.class, () -> bucket.acquire(RequestPriority.BULK, new Deadline(20)));
+        for (int i = 0; i < 2; i++) {
+            bucket.acquire(RequestPriority.NORMAL, null);
+        }
+        assertThrows(SocketTimeoutException.class, () -> bucket.acquire(RequestPriority.NORMAL, new Deadline(20)));
+        for (int i = 0; i < 2; i++) {
+            bucket.acquire(RequestPriority.INTERACTIVE, new Deadline(20));
+        }
+    }
+}
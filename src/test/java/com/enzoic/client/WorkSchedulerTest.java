@@ -0,0 +1,138 @@
+package com.enzoic.client;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class WorkSchedulerTest {
+
+    @Test
+    void runsHigherPrioritiesFirst() throws Exception {
+        WorkScheduler scheduler = new WorkScheduler("test", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<RequestPriority> order = new CopyOnWriteArrayList<RequestPriority>();
+
+        scheduler.execute(RequestPriority.BULK, () -> awaitQuietly(release));
+        waitForActive(scheduler, 1);
+
+        Future<?> last = null;
+        for (RequestPriority priority : new RequestPriority[] {
+                RequestPriority.BULK, RequestPriority.NORMAL, RequestPriority.INTERACTIVE }) {
+            last = scheduler.submit(priority, () -> order.add(PriorityContext.current(null)));
+        }
+        assertEquals(3, scheduler.getQueueDepth());
+        release.countDown();
+        last.get(5, TimeUnit.SECONDS);
+        waitForActive(scheduler, 0);
+
+        assertEquals(3, order.size());
+        assertEquals(RequestPriority.INTERACTIVE, order.get(0));
+        assertEquals(RequestPriority.NORMAL, order.get(1));
+        assertEquals(RequestPriority.BULK, order.get(2));
+    }
+
+    @Test
+    void reservesThreadsForInteractive() throws Exception {
+        WorkScheduler scheduler = new WorkScheduler("test", 4);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.execute(RequestPriority.BULK, () -> awaitQuietly(release));
+        }
+        waitForActive(scheduler, 3);
+        Thread.sleep(20);
+        assertEquals(3, scheduler.getActiveCount());
+        assertEquals(2, scheduler.getQueueDepth(RequestPriority.BULK));
+
+        // runs straight away on the reserved thread
+        scheduler.submit(RequestPriority.INTERACTIVE, () -> true).get(5, TimeUnit.SECONDS);
+        release.countDown();
+    }
+
+    @Test
+    void fullLaneRunsOnSubmitter() throws Exception {
+        WorkScheduler scheduler = new WorkScheduler("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        scheduler.execute(RequestPriority.NORMAL, () -> awaitQuietly(release));
+        waitForActive(scheduler, 1);
+        scheduler.execute(RequestPriority.NORMAL, () -> { });
+
+        Thread caller = Thread.currentThread();
+        Future<Thread> overflow = scheduler.submit(RequestPriority.NORMAL, () -> Thread.currentThread());
+        assertTrue(overflow.isDone());
+        assertSame(caller, overflow.get());
+        release.countDown();
+    }
+
+    @Test
+    void tenantsTakeTurns() throws Exception {
+        WorkScheduler scheduler = new WorkScheduler("test", 1);
+        WorkScheduler.Tenant noisy = scheduler.newTenant();
+        WorkScheduler.Tenant quiet = scheduler.newTenant();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<String>();
+
+        scheduler.execute(noisy, RequestPriority.BULK, () -> awaitQuietly(release));
+        waitForActive(scheduler, 1);
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.execute(noisy, RequestPriority.BULK, () -> order.add("noisy"));
+        }
+        Future<?> last = null;
+        for (int i = 0; i < 2; i++) {
+            last = scheduler.submit(quiet, RequestPriority.BULK, () -> order.add("quiet"));
+        }
+        release.countDown();
+        last.get(5, TimeUnit.SECONDS);
+
+        // the quiet tenant's work is interleaved with the batch rather than queued behind it
+        assertEquals("quiet", order.get(1));
+        assertEquals("quiet", order.get(3));
+    }
+
+    @Test
+    void limitsTenantConcurrency() throws Exception {
+        WorkScheduler scheduler = new WorkScheduler("test", 4);
+        WorkScheduler.Tenant limited = scheduler.newTenant();
+        WorkScheduler.Tenant other = scheduler.newTenant();
+        scheduler.setConcurrency(limited, 1);
+        assertEquals(1, scheduler.getConcurrency(limited));
+        assertEquals(4, scheduler.getConcurrency(other));
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.execute(limited, RequestPriority.NORMAL, () -> awaitQuietly(release));
+        }
+        waitForActive(scheduler, 1);
+
+        // the limited tenant's queued work does not hold up the other tenant's
+        assertTrue(scheduler.submit(other, RequestPriority.NORMAL, () -> true).get(5, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.getQueueDepth());
+
+        scheduler.setConcurrency(limited, 3);
+        waitForActive(scheduler, 3);
+        release.countDown();
+    }
+
+    private static void waitForActive(final WorkScheduler scheduler, final int active) throws InterruptedException {
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getActiveCount() != active && System.nanoTime() < giveUp) {
+            Thread.sleep(1);
+        }
+        assertEquals(active, scheduler.getActiveCount());
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
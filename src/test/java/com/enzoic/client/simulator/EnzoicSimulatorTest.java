@@ -0,0 +1,84 @@
+package com.enzoic.client.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import com.enzoic.client.ApiEndpoint;
+import com.enzoic.client.Enzoic;
+import com.enzoic.client.ExposureDetails;
+import com.enzoic.client.ExposuresResponse;
+import com.enzoic.client.UserPasswords;
+
+class EnzoicSimulatorTest {
+
+    private SyntheticDataset dataset;
+    private EnzoicSimulator simulator;
+    private Enzoic enzoic;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataset = new SyntheticDataset(20, 3, 0, 0.5, 7);
+        simulator = new EnzoicSimulator(dataset).start();
+        enzoic = new Enzoic("key", "secret", simulator.getBaseURL());
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    void servesSyntheticUsers() throws IOException {
+        int compromised = 0;
+        for (int i = 0; i < dataset.getUserCount(); i++) {
+            boolean expected = dataset.isCompromised(i);
+            assertEquals(expected, enzoic.CheckCredentialsEx(dataset.getUsername(i), dataset.getPassword(i), null, null));
+            assertEquals(expected, enzoic.CheckPassword(dataset.getPassword(i)));
+            assertFalse(enzoic.CheckCredentialsEx(dataset.getUsername(i), "not-the-password", null, null));
+
+            UserPasswords passwords = enzoic.GetUserPasswords(dataset.getUsername(i));
+            assertEquals(expected ? 2 : 1, passwords.getPasswords().length);
+
+            ExposuresResponse exposures = enzoic.GetExposuresForUser(dataset.getUsername(i));
+            for (String exposureID : exposures.getExposures() == null ? new String[0] : exposures.getExposures()) {
+                ExposureDetails details = enzoic.GetExposureDetails(exposureID);
+                assertEquals(exposureID, details.getId());
+            }
+            if (expected) {
+                compromised++;
+            }
+        }
+        assertTrue(compromised > 0 && compromised < dataset.getUserCount());
+
+        assertFalse(enzoic.CheckCredentialsEx("nobody@example.com", "password", null, null));
+        assertTrue(enzoic.CheckPassword("123456"));
+    }
+
+    @Test
+    void injectsErrorsAndThrottles() throws IOException {
+        simulator.setErrorRate(ApiEndpoint.PASSWORDS, 1.0);
+        assertThrows(IOException.class, () -> enzoic.CheckPassword("123456"));
+        assertEquals(1, simulator.getErrorCount());
+        simulator.setErrorRate(ApiEndpoint.PASSWORDS, 0);
+
+        simulator.setRateLimit(1, 1);
+        enzoic.CheckPassword("123456");
+        assertThrows(IOException.class, () -> enzoic.CheckPassword("123456"));
+        assertEquals(1, simulator.getThrottledCount());
+    }
+
+    @Test
+    void loadGeneratorReportsLatency() throws InterruptedException {
+        simulator.setLatency(LatencyDistribution.fixed(5));
+
+        LoadReport report = new LoadGenerator(8).run(() -> enzoic.CheckPassword("password"), 200, 500);
+
+        assertEquals(100, report.getRequests(), 2);
+        assertEquals(0, report.getErrors());
+        assertTrue(report.getLatency().getValueAtPercentile(50) >= 5000000L);
+    }
+}
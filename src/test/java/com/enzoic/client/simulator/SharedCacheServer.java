@@ -0,0 +1,219 @@
+package com.enzoic.client.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+import com.enzoic.client.SharedCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for a networked cache such as Redis or Memcached, for testing Enzoic.SetSharedCache across
+ * several Enzoic instances as if they were on different nodes.  Entries are held in memory and served over HTTP on a
+ * loopback port, so every lookup pays a real round trip:
+ * <pre>
+ * try (SharedCacheServer server = new SharedCacheServer().start()) {
+ *     enzoic1.SetSharedCache(server.client());
+ *     enzoic2.SetSharedCache(server.client());
+ *     ...
+ * }
+ * </pre>
+ */
+public class SharedCacheServer implements Closeable {
+
+    private static final String BASE_PATH = "/cache/";
+
+    private static final class Entry {
+        final long expiry;
+        final byte[] value;
+
+        Entry(final long expiry, final byte[] value) {
+            this.expiry = expiry;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService handlers;
+
+    /**
+     * Starts serving on a free loopback port
+     *
+     * @return this
+     * @throws IOException the server could not be started
+     */
+    public synchronized SharedCacheServer start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Shared cache server is already started");
+        }
+
+        handlers = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+                new EnzoicSimulator.SimulatorThreadFactory("enzoic-shared-cache"));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext(BASE_PATH, new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                SharedCacheServer.this.handle(exchange);
+            }
+        });
+        server.setExecutor(handlers);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Stops serving and discards the entries
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            handlers.shutdownNow();
+            server = null;
+        }
+        entries.clear();
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Creates a SharedCache which reads and writes this server's entries over the network
+     *
+     * @param timeoutInMs the connect and read timeout for each lookup
+     * @return SharedCache
+     */
+    public synchronized SharedCache client(final int timeoutInMs) {
+        if (server == null) {
+            throw new IllegalStateException("Shared cache server is not started");
+        }
+        final String baseURL = "http://" + server.getAddress().getAddress().getHostAddress() + ":" +
+                server.getAddress().getPort() + BASE_PATH;
+
+        return new SharedCache() {
+            @Override
+            public byte[] get(final String namespace, final byte[] key) throws IOException {
+                HttpURLConnection conn = open(baseURL, namespace, key, timeoutInMs);
+                int status = conn.getResponseCode();
+                if (status == 404) {
+                    InputStream error = conn.getErrorStream();
+                    if (error != null) {
+                        error.close();
+                    }
+                    return null;
+                }
+                if (status != 200) {
+                    throw new IOException("Shared cache server responded with " + status);
+                }
+                InputStream in = conn.getInputStream();
+                try {
+                    return IOUtils.toByteArray(in);
+                } finally {
+                    in.close();
+                }
+            }
+
+            @Override
+            public void put(final String namespace, final byte[] key, final byte[] value, final long ttlInMs)
+                    throws IOException {
+                HttpURLConnection conn = open(baseURL, namespace, key, timeoutInMs);
+                conn.setRequestMethod("PUT");
+                conn.setRequestProperty("X-TTL", Long.toString(ttlInMs));
+                conn.setDoOutput(true);
+                // not streamed, so HttpURLConnection can retry if the server has closed the pooled connection
+                OutputStream out = conn.getOutputStream();
+                try {
+                    out.write(value);
+                } finally {
+                    out.close();
+                }
+                if (conn.getResponseCode() != 204) {
+                    throw new IOException("Shared cache server responded with " + conn.getResponseCode());
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a SharedCache client with a 1 second timeout
+     *
+     * @return SharedCache
+     */
+    public SharedCache client() {
+        return client(1000);
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            String key = exchange.getRequestURI().getPath().substring(BASE_PATH.length());
+            if ("PUT".equals(exchange.getRequestMethod())) {
+                long ttlInMs = Long.parseLong(exchange.getRequestHeaders().getFirst("X-TTL"));
+                byte[] value = IOUtils.toByteArray(exchange.getRequestBody());
+                entries.put(key, new Entry(System.currentTimeMillis() + ttlInMs, value));
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiry <= System.currentTimeMillis()) {
+                entries.remove(key, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                missCount.incrementAndGet();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            hitCount.incrementAndGet();
+            exchange.sendResponseHeaders(200, entry.value.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(entry.value);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static HttpURLConnection open(final String baseURL, final String namespace, final byte[] key,
+                                          final int timeoutInMs) throws IOException {
+        StringBuilder url = new StringBuilder(baseURL).append(namespace).append('/');
+        for (byte b : key) {
+            url.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        HttpURLConnection conn = (HttpURLConnection) new URL(url.toString()).openConnection();
+        conn.setConnectTimeout(timeoutInMs);
+        conn.setReadTimeout(timeoutInMs);
+        return conn;
+    }
+}
@@ -3,6 +3,8 @@ package com.enzoic.client.utilities;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.concurrent.CancellationException;
+
 class HashingTest {
     @Test
     void md5() {
@@ -58,6 +60,16 @@ class HashingTest {
         assertEquals("$H$993WP3hbzy0N22X06wxrCc3800D2p41", Hashing.phpbb3("123456789", "$H$993WP3hbz"));
     }
 
+    @Test void phpbb3StopsWhenInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            // 2^30 rounds would take minutes
+            assertThrows(CancellationException.class, () -> Hashing.phpbb3("123456789", "$H$S93WP3hbz"));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
     @Test void argon2() {
         assertEquals("$argon2d$v=19$m=1024,t=3,p=2$c2FsdHlzYWx0$EklGIPtCSWb3IS+q4IQ7rwrwm2o", Hashing.argon2("123456", "saltysalt"));
         assertEquals("$argon2d$v=19$m=1024,t=3,p=2$c2FsdHlzYWx0$EklGIPtCSWb3IS+q4IQ7rwrwm2o", Hashing.argon2("123456", "$argon2d$v=19$m=1024,t=3,p=2,l=20$c2FsdHlzYWx0"));
@@ -68,6 +80,24 @@ class HashingTest {
         assertEquals("$argon2d$v=19$m=1024,t=3,p=2$c2FsdHlzYWx0$EklGIPtCSWb3IS+q4IQ7rwrwm2o", Hashing.argon2("123456", "$argon2d$v=19$m=10d4,t=ejw,p=2$c2FsdHlzYWx0"));
     }
 
+    @Test
+    void argon2JavaMatchesNative() {
+        byte[] salt = "saltysalt".getBytes();
+        assertEquals("$argon2d$v=19$m=1024,t=3,p=2$c2FsdHlzYWx0$EklGIPtCSWb3IS+q4IQ7rwrwm2o",
+                Hashing.argon2Java(false, 3, 1024, 2, 20, "123456".getBytes(), salt));
+        assertEquals("$argon2i$v=19$m=4096,t=2,p=4$c29tZXNhbHQ$M2X6yo+ZZ8ROwC7MB6/+1yMhGytTzDczBMgo3Is7ptY",
+                Hashing.argon2Java(true, 2, 4096, 4, 32, "password".getBytes(), "somesalt".getBytes()));
+
+        for (int length = 1; length <= 64; length *= 2) {
+            byte[] password = new byte[length];
+            java.util.Arrays.fill(password, (byte) ('a' + length % 26));
+            assertEquals(Hashing.argon2Native(false, 3, 1024, 2, 20, password, salt),
+                    Hashing.argon2Java(false, 3, 1024, 2, 20, password, salt));
+            assertEquals(Hashing.argon2Native(true, 2, 1024, 1, 24, password, salt),
+                    Hashing.argon2Java(true, 2, 1024, 1, 24, password, salt));
+        }
+    }
+
     @Test
     void crc32() {
         assertEquals("972d361", Hashing.crc32("123456"));
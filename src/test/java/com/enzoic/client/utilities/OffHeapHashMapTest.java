@@ -0,0 +1,123 @@
+package com.enzoic.client.utilities;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+class OffHeapHashMapTest {
+
+    @Test
+    void putAndGet() {
+        OffHeapHashMap map = new OffHeapHashMap(100, 16);
+
+        assertNull(map.get(key("a")));
+        assertTrue(map.put(key("a"), new byte[] { 1, 2, 3 }));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, map.get(key("a")));
+        assertEquals(1, map.size());
+
+        // overwrite
+        assertTrue(map.put(key("a"), new byte[] { 4 }));
+        assertArrayEquals(new byte[] { 4 }, map.get(key("a")));
+        assertEquals(1, map.size());
+
+        // empty values are allowed, values over the maximum length are rejected
+        assertTrue(map.put(key("b"), new byte[0]));
+        assertArrayEquals(new byte[0], map.get(key("b")));
+        assertFalse(map.put(key("c"), new byte[17]));
+        assertNull(map.get(key("c")));
+    }
+
+    @Test
+    void remove() {
+        OffHeapHashMap map = new OffHeapHashMap(100, 16);
+
+        map.put(key("a"), new byte[] { 1 });
+        assertTrue(map.remove(key("a")));
+        assertFalse(map.remove(key("a")));
+        assertNull(map.get(key("a")));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void invalidKey() {
+        OffHeapHashMap map = new OffHeapHashMap(100, 16);
+
+        assertThrows(IllegalArgumentException.class, () -> map.get(new byte[31]));
+        assertThrows(IllegalArgumentException.class, () -> map.put(null, new byte[1]));
+    }
+
+    @Test
+    void matchesHashMap() {
+        // random puts and removes with heavy collisions in a small table should behave exactly like a HashMap
+        OffHeapHashMap map = new OffHeapHashMap(2000, 8);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            int k = random.nextInt(1500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(k) != null, map.remove(key(Integer.toString(k))));
+            } else {
+                expected.put(k, i);
+                map.put(key(Integer.toString(k)), intBytes(i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int k = 0; k < 1500; k++) {
+            byte[] value = map.get(key(Integer.toString(k)));
+            if (expected.containsKey(k)) {
+                assertArrayEquals(intBytes(expected.get(k)), value);
+            } else {
+                assertNull(value);
+            }
+        }
+    }
+
+    @Test
+    void evictsWhenFull() {
+        OffHeapHashMap map = new OffHeapHashMap(1000, 8);
+
+        // keep reading a hot key while filling the map well past capacity
+        map.put(key("hot"), intBytes(-1));
+        for (int i = 0; i < 10000; i++) {
+            map.put(key(Integer.toString(i)), intBytes(i));
+            assertNotNull(map.get(key("hot")));
+        }
+
+        assertTrue(map.size() <= map.capacity());
+        assertTrue(map.evictions() > 0);
+        assertArrayEquals(intBytes(-1), map.get(key("hot")));
+        assertArrayEquals(intBytes(9999), map.get(key("9999")));
+    }
+
+    @Test
+    void mappedFile() throws Exception {
+        File file = File.createTempFile("offheap", ".map");
+        file.deleteOnExit();
+
+        OffHeapHashMap map = OffHeapHashMap.mapFile(file, 1000, 8);
+        for (int i = 0; i < 500; i++) {
+            map.put(key(Integer.toString(i)), intBytes(i));
+        }
+        for (int i = 0; i < 500; i++) {
+            assertArrayEquals(intBytes(i), map.get(key(Integer.toString(i))));
+        }
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(key("1")));
+    }
+
+    private static byte[] key(final String value) {
+        return Hashing.sha256Binary(value);
+    }
+
+    private static byte[] intBytes(final int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+}